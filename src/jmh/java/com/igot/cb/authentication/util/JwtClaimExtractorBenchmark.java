@@ -0,0 +1,141 @@
+package com.igot.cb.authentication.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.authentication.model.KeyData;
+import com.igot.cb.pores.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link JwtClaimExtractor} with the split, {@link Base64Util} and
+ * {@code Map<String, Object>} path that validateToken used before, on an RS256 token shaped
+ * like the ones issued by Keycloak. {@code roles} sets the number of realm roles in the body,
+ * the claims both paths skip. The parse benchmarks read the claims only; the validate
+ * benchmarks also verify the signature. Run with {@code -prof gc} for the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtClaimExtractorBenchmark {
+
+  private static final int BASE64_URL_SAFE_NO_WRAP_NO_PADDING = 11;
+
+  @Param({"5", "50"})
+  private int roles;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private KeyData keyData;
+  private String token;
+
+  @Setup
+  public void setUp() throws IOException, GeneralSecurityException {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    KeyPair keyPair = generator.generateKeyPair();
+    keyData = new KeyData("bench-key", keyPair.getPublic());
+
+    Map<String, Object> header = new LinkedHashMap<>();
+    header.put("alg", "RS256");
+    header.put("typ", "JWT");
+    header.put("kid", keyData.getKeyId());
+    List<String> realmRoles = new ArrayList<>();
+    for (int i = 0; i < roles; i++) {
+      realmRoles.add("role-" + i);
+    }
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("exp", 4102444800L);
+    body.put("iat", 1700000000L);
+    body.put("jti", "6b1d2c3e-4f5a-4b6c-8d7e-9f0a1b2c3d4e");
+    body.put("iss", "https://sso.example.org/auth/realms/sunbird");
+    body.put("aud", List.of("account", "realm-management"));
+    body.put(Constants.SUB, "f:5a8a3f2b-3409-42e0-9001-f913bc0fde31:7d2c1e4f-8a9b-4c3d-a2e1-0f9e8d7c6b5a");
+    body.put("typ", "Bearer");
+    body.put("azp", "portal");
+    body.put("realm_access", Map.of("roles", realmRoles));
+    body.put("scope", "openid profile email");
+    body.put("email_verified", true);
+    body.put("preferred_username", "bench.user");
+
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    String payload = encoder.encodeToString(mapper.writeValueAsBytes(header))
+        + Constants.DOT_SEPARATOR + encoder.encodeToString(mapper.writeValueAsBytes(body));
+    Signature signer = Signature.getInstance(Constants.SHA_256_WITH_RSA);
+    signer.initSign(keyPair.getPrivate());
+    signer.update(payload.getBytes(StandardCharsets.US_ASCII));
+    token = payload + Constants.DOT_SEPARATOR + encoder.encodeToString(signer.sign());
+    System.out.printf("%n%d roles: token %d chars%n", roles, token.length());
+  }
+
+  @Benchmark
+  public Object parseWithMaps() throws IOException {
+    String[] tokenElements = token.split("\\.");
+    Map<String, Object> headerData = readMap(tokenElements[0]);
+    Map<String, Object> tokenBody = readMap(tokenElements[1]);
+    return new Object[]{headerData.get("kid"), ((Number) tokenBody.get("exp")).longValue(),
+        tokenBody.get("iss"), tokenBody.get(Constants.SUB)};
+  }
+
+  @Benchmark
+  public JwtClaimExtractor.ParsedToken parseWithExtractor() throws IOException {
+    return JwtClaimExtractor.parse(token);
+  }
+
+  @Benchmark
+  public boolean validateWithMaps() throws IOException, GeneralSecurityException {
+    String[] tokenElements = token.split("\\.");
+    String payload = tokenElements[0] + Constants.DOT_SEPARATOR + tokenElements[1];
+    Map<String, Object> headerData = readMap(tokenElements[0]);
+    if (!keyData.getKeyId().equals(headerData.get("kid"))) {
+      return false;
+    }
+    Signature sign = keyData.getVerifier();
+    sign.update(payload.getBytes(StandardCharsets.US_ASCII));
+    if (!sign.verify(Base64Util.decode(tokenElements[2], BASE64_URL_SAFE_NO_WRAP_NO_PADDING))) {
+      return false;
+    }
+    Map<String, Object> tokenBody = readMap(tokenElements[1]);
+    return ((Number) tokenBody.get("exp")).longValue() > 0 && tokenBody.get(Constants.SUB) != null;
+  }
+
+  @Benchmark
+  public boolean validateWithExtractor() throws IOException {
+    JwtClaimExtractor.ParsedToken parsedToken = JwtClaimExtractor.parse(token);
+    if (!keyData.getKeyId().equals(parsedToken.getKeyId())) {
+      return false;
+    }
+    return JwtClaimExtractor.verifySignature(parsedToken, keyData)
+        && parsedToken.getExpiration() > 0 && parsedToken.getSubject() != null;
+  }
+
+  private Map<String, Object> readMap(String segment) throws IOException {
+    return mapper.readValue(new String(Base64Util.decode(segment, BASE64_URL_SAFE_NO_WRAP_NO_PADDING)),
+        new TypeReference<Map<String, Object>>() {
+        });
+  }
+}
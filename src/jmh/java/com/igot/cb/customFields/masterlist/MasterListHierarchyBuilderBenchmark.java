@@ -0,0 +1,154 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.igot.cb.pores.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link MasterListHierarchyBuilder} with the composite String keys and per-level maps
+ * of Jackson nodes it replaced, on synthetic rows of five levels. Each level but the last has a
+ * fan out of 10, the last one takes the rest of {@code rows}. Every cell is a fresh String, as
+ * the sheet readers give them. Values are unique within a level, so the old keys, which only
+ * held the parent, give the same tree. Both sides build the forward hierarchy only. Run with
+ * {@code -prof gc} for the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MasterListHierarchyBuilderBenchmark {
+
+  private static final int LEVELS = 5;
+  private static final int FAN_OUT = 10;
+  private static final String[] HEADERS = {"country", "state", "district", "block", "village"};
+
+  @Param({"100000", "1000000"})
+  private int rows;
+
+  private int[] fanOuts;
+  // Values of each level numbered across the level, so no two nodes share a value
+  private String[][] values;
+
+  @Setup
+  public void setUp() {
+    int lastFanOut = Math.max(1, rows / (int) Math.pow(FAN_OUT, LEVELS - 1));
+    fanOuts = new int[LEVELS];
+    values = new String[LEVELS][];
+    int count = 1;
+    for (int level = 0; level < LEVELS; level++) {
+      fanOuts[level] = level == LEVELS - 1 ? lastFanOut : FAN_OUT;
+      count *= fanOuts[level];
+      values[level] = new String[count];
+      for (int i = 0; i < count; i++) {
+        values[level][i] = HEADERS[level] + "-" + i;
+      }
+    }
+  }
+
+  @Benchmark
+  public ArrayNode nodeTree() {
+    MasterListHierarchyBuilder builder = new MasterListHierarchyBuilder(LEVELS);
+    builder.setHeaders(HEADERS);
+    String[] cells = new String[LEVELS];
+    for (int row = 0; row < rows; row++) {
+      fillRow(row, cells);
+      builder.addRow(cells);
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public ArrayNode compositeKeys() {
+    CompositeKeyBuilder builder = new CompositeKeyBuilder(LEVELS, HEADERS);
+    String[] cells = new String[LEVELS];
+    for (int row = 0; row < rows; row++) {
+      fillRow(row, cells);
+      builder.addRow(cells);
+    }
+    return builder.root;
+  }
+
+  private void fillRow(int row, String[] cells) {
+    int index = row % values[LEVELS - 1].length;
+    for (int level = LEVELS - 1; level >= 0; level--) {
+      cells[level] = new String(values[level][index]);
+      index /= fanOuts[level];
+    }
+  }
+
+  /**
+   * The former row handling: a key of field name, value and parent per cell, looked up in a map
+   * of Jackson nodes per level.
+   */
+  private static final class CompositeKeyBuilder {
+
+    private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+
+    private final int levels;
+    private final String[] headers;
+    private final ArrayNode root = NODE_FACTORY.arrayNode();
+    private final List<Map<String, ObjectNode>> levelMaps = new ArrayList<>();
+
+    CompositeKeyBuilder(int levels, String[] headers) {
+      this.levels = levels;
+      this.headers = headers;
+      for (int i = 0; i < levels; i++) {
+        levelMaps.add(new HashMap<>());
+      }
+    }
+
+    void addRow(String[] cells) {
+      ArrayNode currentArray = root;
+      String parentFieldName = null;
+      String parentFieldValue = null;
+
+      for (int j = 0; j < levels && j < cells.length; j++) {
+        String value = cells[j] != null ? cells[j].trim() : null;
+        if (value == null || value.isEmpty()) break;
+        String fieldName = headers[j];
+        String key = fieldName + ":" + value + (parentFieldName != null ? "|" + parentFieldName + ":" + parentFieldValue : "");
+
+        Map<String, ObjectNode> currentLevelMap = levelMaps.get(j);
+        ObjectNode foundNode = currentLevelMap.get(key);
+
+        if (foundNode == null) {
+          ObjectNode newNode = NODE_FACTORY.objectNode();
+          newNode.put(Constants.FIELD_NAME, fieldName);
+          newNode.put(Constants.FIELD_VALUE, value);
+          newNode.put(Constants.FIELD_ATTRIBUTE, fieldName);
+          if (parentFieldName != null) {
+            newNode.put(Constants.PARENT_FIELD_NAME, parentFieldName);
+            newNode.put(Constants.PARENT_FIELD_VALUE, parentFieldValue);
+          }
+          newNode.set(Constants.FIELD_VALUES, NODE_FACTORY.arrayNode());
+          currentArray.add(newNode);
+          currentLevelMap.put(key, newNode);
+          foundNode = newNode;
+        }
+        parentFieldName = fieldName;
+        parentFieldValue = value;
+        currentArray = (ArrayNode) foundNode.get(Constants.FIELD_VALUES);
+      }
+    }
+  }
+}
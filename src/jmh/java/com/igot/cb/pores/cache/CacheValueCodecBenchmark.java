@@ -0,0 +1,109 @@
+package com.igot.cb.pores.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link CacheValueCodec} with the JSON strings the cache stored before, on a custom
+ * field holding a master list of {@code fanOut}^4 leaves. The encoded sizes are printed once
+ * per trial; run with {@code -prof gc} for the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheValueCodecBenchmark {
+
+  private static final int LEVELS = 4;
+
+  @Param({"JSON", "SMILE", "CBOR"})
+  private String format;
+
+  @Param({"5", "15"})
+  private int fanOut;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private CacheValueCodec codec;
+  private Map<String, Object> value;
+  private String jsonString;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    codec = new CacheValueCodec();
+    ReflectionTestUtils.setField(codec, "objectMapper", objectMapper);
+    ReflectionTestUtils.setField(codec, "format", format);
+    ReflectionTestUtils.setField(codec, "compressionThreshold", 2048);
+    codec.init();
+
+    value = new LinkedHashMap<>();
+    value.put(Constants.CUSTOM_FIELD_ID, "3f1c2e9a-5b7d-4c1e-9a2b-7d6e5f4a3b2c");
+    value.put("name", "Locations");
+    value.put("type", "masterList");
+    value.put(Constants.CUSTOM_FIELD_DATA, children(0, ""));
+    jsonString = objectMapper.writeValueAsString(value);
+    encoded = codec.encode(value);
+    System.out.printf("%n%s, fan out %d: json string %d bytes, encoded %d bytes%n",
+        format, fanOut, jsonString.getBytes(StandardCharsets.UTF_8).length, encoded.length);
+  }
+
+  private List<Map<String, Object>> children(int level, String parentValue) {
+    List<Map<String, Object>> nodes = new ArrayList<>(fanOut);
+    if (level == LEVELS) {
+      return nodes;
+    }
+    String fieldName = "level" + (level + 1);
+    for (int i = 0; i < fanOut; i++) {
+      String fieldValue = parentValue + fieldName + "-value-" + i;
+      Map<String, Object> node = new LinkedHashMap<>();
+      node.put(Constants.FIELD_NAME, fieldName);
+      node.put(Constants.FIELD_VALUE, fieldValue);
+      node.put(Constants.FIELD_ATTRIBUTE, fieldName);
+      node.put(Constants.FIELD_VALUES, children(level + 1, fieldValue + "/"));
+      nodes.add(node);
+    }
+    return nodes;
+  }
+
+  @Benchmark
+  public String encodeJsonString() throws IOException {
+    return objectMapper.writeValueAsString(value);
+  }
+
+  @Benchmark
+  public Map<?, ?> decodeJsonString() throws IOException {
+    return objectMapper.readValue(jsonString, Map.class);
+  }
+
+  @Benchmark
+  public byte[] encodeWithCodec() throws IOException {
+    return codec.encode(value);
+  }
+
+  @Benchmark
+  public Map<?, ?> decodeWithCodec() throws IOException {
+    return codec.decode(encoded, Map.class);
+  }
+}
@@ -1,13 +1,18 @@
 package com.igot.cb.authentication.model;
 
+import com.igot.cb.pores.util.Constants;
+
+import java.security.GeneralSecurityException;
 import java.security.PublicKey;
+import java.security.Signature;
 
 /**
  * @author Shankaragouda
  */
 public class KeyData {
     private String keyId;
-    private PublicKey publicKey;
+    private volatile PublicKey publicKey;
+    private final ThreadLocal<BoundVerifier> verifier = new ThreadLocal<>();
 
     public KeyData(String keyId, PublicKey publicKey) {
         this.keyId = keyId;
@@ -29,4 +34,44 @@ public class KeyData {
     public void setPublicKey(PublicKey publicKey) {
         this.publicKey = publicKey;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a {@link Signature} of the calling thread already initialized for verification
+     * with this key. {@link Signature#verify(byte[])} resets the object to its initialized
+     * state, so the same instance can be reused for every token verified on the thread. Each
+     * thread remembers the key its verifier was initialized with, so after
+     * {@link #setPublicKey(PublicKey)} every thread initializes a new one on its next use.
+     *
+     * @return The verifier bound to this key for the calling thread.
+     * @throws GeneralSecurityException If the algorithm is not available or the key is invalid.
+     */
+    public Signature getVerifier() throws GeneralSecurityException {
+        PublicKey key = publicKey;
+        BoundVerifier bound = verifier.get();
+        if (bound == null || bound.key != key) {
+            Signature signature = Signature.getInstance(Constants.SHA_256_WITH_RSA);
+            signature.initVerify(key);
+            bound = new BoundVerifier(key, signature);
+            verifier.set(bound);
+        }
+        return bound.signature;
+    }
+
+    /**
+     * Discards the verifier of the calling thread, e.g. after it failed mid-verification
+     * and may hold partial state.
+     */
+    public void resetVerifier() {
+        verifier.remove();
+    }
+
+    private static final class BoundVerifier {
+        private final PublicKey key;
+        private final Signature signature;
+
+        private BoundVerifier(PublicKey key, Signature signature) {
+            this.key = key;
+            this.signature = signature;
+        }
+    }
+}
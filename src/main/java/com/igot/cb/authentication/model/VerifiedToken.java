@@ -0,0 +1,35 @@
+package com.igot.cb.authentication.model;
+
+/**
+ * Claims of an access token whose signature has already been verified, along with
+ * the key it was verified against.
+ */
+public class VerifiedToken {
+    private final String subject;
+    private final String issuer;
+    private final long expiration;
+    private final KeyData keyData;
+
+    public VerifiedToken(String subject, String issuer, long expiration, KeyData keyData) {
+        this.subject = subject;
+        this.issuer = issuer;
+        this.expiration = expiration;
+        this.keyData = keyData;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public long getExpiration() {
+        return expiration;
+    }
+
+    public KeyData getKeyData() {
+        return keyData;
+    }
+}
@@ -1,9 +1,15 @@
 package com.igot.cb.authentication.util;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.igot.cb.authentication.model.KeyData;
+import com.igot.cb.authentication.model.VerifiedToken;
 import com.igot.cb.pores.util.Constants;
 import com.igot.cb.pores.util.PropertiesCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
 import org.keycloak.common.util.Time;
 import org.slf4j.Logger;
@@ -12,8 +18,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Shankaragouda
@@ -25,53 +36,142 @@ public class AccessTokenValidator {
     KeyManager keyManager;
 
     private static Logger logger = LoggerFactory.getLogger(AccessTokenValidator.class.getName());
-    private static final ObjectMapper mapper = new ObjectMapper();
     private static PropertiesCache cache = PropertiesCache.getInstance();
     private static final String REALM_URL = cache.getProperty(Constants.SSO_URL) + "realms/" + cache.getProperty(Constants.SSO_REALM);
 
+    /**
+     * Tokens whose signature has been verified, keyed by the SHA-256 digest of the token
+     * and kept until the token's own expiry.
+     */
+    private final Cache<String, VerifiedToken> verifiedTokenCache = Caffeine.newBuilder()
+            .maximumSize(Long.parseLong(cache.getProperty(Constants.ACCESS_TOKEN_CACHE_MAX_SIZE)))
+            .expireAfter(new Expiry<String, VerifiedToken>() {
+                @Override
+                public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                    return TimeUnit.SECONDS.toNanos(Math.max(0, value.getExpiration() - Time.currentTime()));
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+
+    private ScheduledExecutorService statsLogger;
+
+    /**
+     * Logs the verified token cache statistics every
+     * {@value Constants#ACCESS_TOKEN_CACHE_STATS_LOG_INTERVAL} seconds, unless the interval is 0.
+     */
+    @PostConstruct
+    public void scheduleCacheStatsLogging() {
+        long interval = Long.parseLong(cache.getProperty(Constants.ACCESS_TOKEN_CACHE_STATS_LOG_INTERVAL));
+        if (interval <= 0) {
+            return;
+        }
+        statsLogger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "access-token-cache-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        statsLogger.scheduleAtFixedRate(this::logVerifiedTokenCacheStats, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (statsLogger != null) {
+            statsLogger.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns hit, miss and eviction counts of the verified token cache.
+     *
+     * @return The statistics of the verified token cache.
+     */
+    public CacheStats getVerifiedTokenCacheStats() {
+        return verifiedTokenCache.stats();
+    }
+
+    private void logVerifiedTokenCacheStats() {
+        CacheStats stats = verifiedTokenCache.stats();
+        logger.info("Verified token cache: size={}, hits={}, misses={}, hitRate={}, evictions={}",
+                verifiedTokenCache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                String.format("%.3f", stats.hitRate()), stats.evictionCount());
+    }
+
 
     /**
      * Validates the provided JWT token.
      *
      * @param token The JWT token to be validated.
-     * @return A map containing the token body if the token is valid and not expired, otherwise an empty map.
+     * @return The verified claims if the token is valid and not expired, otherwise null.
      */
-    private Map<String, Object> validateToken(String token) {
+    private VerifiedToken validateToken(String token) {
         try {
-            // Split the token into its elements
-            String[] tokenElements = token.split("\\.");
-            // Check if the token has at least three elements
-            if (tokenElements.length < 3) {
-                throw new IllegalArgumentException("Invalid token format");
+            // Locate the segments and read kid, exp, iss and sub without splitting the token
+            JwtClaimExtractor.ParsedToken parsedToken = JwtClaimExtractor.parse(token);
+            KeyData keyData = parsedToken.getKeyId() == null ? null : keyManager.getPublicKey(parsedToken.getKeyId());
+            if (keyData == null) {
+                throw new IllegalArgumentException("Unknown key id: " + parsedToken.getKeyId());
             }
-            // Extract header, body, and signature from token elements
-            String header = tokenElements[0];
-            String body = tokenElements[1];
-            String signature = tokenElements[2];
-            // Concatenate header and body to form the payload
-            String payload = header + Constants.DOT_SEPARATOR + body;
-            // Parse header data from base64 encoded header
-            Map<String, Object> headerData = mapper.readValue(new String(decodeFromBase64(header)), new TypeReference<Map<String, Object>>() {
-            });
-            String keyId = headerData.get("kid").toString();
             // Verify the token signature
-            boolean isValid = CryptoUtil.verifyRSASign(payload, decodeFromBase64(signature), keyManager.getPublicKey(keyId).getPublicKey(), Constants.SHA_256_WITH_RSA);
-            // If token signature is valid, parse token body and check expiration
+            boolean isValid = JwtClaimExtractor.verifySignature(parsedToken, keyData);
+            // If token signature is valid, check expiration
             if (isValid) {
-                Map<String, Object> tokenBody = mapper.readValue(new String(decodeFromBase64(body)), new TypeReference<Map<String, Object>>() {
-                });
-                if (isExpired((Integer) tokenBody.get("exp"))) {
+                if (parsedToken.getExpiration() == null) {
+                    throw new IllegalArgumentException("Token has no expiration");
+                }
+                long expiration = parsedToken.getExpiration();
+                if (isExpired(expiration)) {
                     logger.error("Token expired: {}", token);
-                    return Collections.emptyMap();
+                    return null;
                 }
-                return tokenBody;
+                return new VerifiedToken(parsedToken.getSubject(), parsedToken.getIssuer(), expiration, keyData);
             }
         } catch (IOException | IllegalArgumentException e) {
             logger.error("Error validating token: {}", e.getMessage());
         } catch (Exception ex) {
             logger.error("Unexpected error validating token: {}", ex.getMessage());
         }
-        return Collections.emptyMap();
+        return null;
+    }
+
+    /**
+     * Returns the verified claims of the token, verifying the signature only when the token
+     * is not already cached. A cached entry is dropped when its key is no longer the one
+     * held by {@link KeyManager}, so revoked or rotated keys take effect immediately.
+     *
+     * @param token The JWT token to be validated.
+     * @return The verified claims, or null if the token is invalid or expired.
+     */
+    private VerifiedToken getVerifiedToken(String token) throws NoSuchAlgorithmException {
+        String tokenDigest = digest(token);
+        VerifiedToken verifiedToken = verifiedTokenCache.getIfPresent(tokenDigest);
+        if (verifiedToken != null) {
+            KeyData currentKey = keyManager.getPublicKey(verifiedToken.getKeyData().getKeyId());
+            if (currentKey == verifiedToken.getKeyData() && !isExpired(verifiedToken.getExpiration())) {
+                return verifiedToken;
+            }
+            verifiedTokenCache.invalidate(tokenDigest);
+        }
+        verifiedToken = validateToken(token);
+        if (verifiedToken != null) {
+            verifiedTokenCache.put(tokenDigest, verifiedToken);
+        }
+        return verifiedToken;
+    }
+
+    private String digest(String token) throws NoSuchAlgorithmException {
+        MessageDigest messageDigest = MessageDigest.getInstance(Constants.SHA_256);
+        return HexFormat.of().formatHex(messageDigest.digest(token.getBytes(StandardCharsets.US_ASCII)));
     }
 
 
@@ -85,12 +185,12 @@ public class AccessTokenValidator {
         // Initialize user ID to UNAUTHORIZED
         String userId = Constants.UNAUTHORIZED;
         try {
-            // Validate the token and obtain its payload
-            Map<String, Object> payload = validateToken(token);
-            // Check if payload is not empty and issuer is valid
-            if (!payload.isEmpty() && checkIss((String) payload.get("iss"))) {
-                // Extract user ID from payload
-                userId = (String) payload.get(Constants.SUB);
+            // Validate the token and obtain its verified claims
+            VerifiedToken verifiedToken = getVerifiedToken(token);
+            // Check if the token is valid and issuer is valid
+            if (verifiedToken != null && checkIss(verifiedToken.getIssuer())) {
+                // Extract user ID from the claims
+                userId = verifiedToken.getSubject();
                 // If user ID is not blank, extract the actual user ID
                 if (StringUtils.isNotBlank(userId)) {
                     userId = userId.substring(userId.lastIndexOf(":") + 1);
@@ -119,14 +219,10 @@ public class AccessTokenValidator {
     }
 
 
-    private boolean isExpired(Integer expiration) {
+    private boolean isExpired(long expiration) {
         return (Time.currentTime() > expiration);
     }
 
-    private byte[] decodeFromBase64(String data) {
-        return Base64Util.decode(data, 11);
-    }
-
     /**
      * Fetches the user ID from the provided access token.
      *
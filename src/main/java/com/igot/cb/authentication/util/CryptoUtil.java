@@ -1,5 +1,6 @@
 package com.igot.cb.authentication.util;
 
+import com.igot.cb.authentication.model.KeyData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,4 +43,27 @@ public class CryptoUtil {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Verifies an RSA signature over the first {@code payLoadLength} bytes of {@code payLoad}
+     * with the thread's reusable verifier of the given key.
+     *
+     * @param payLoad          The buffer holding the payload to be verified.
+     * @param payLoadLength    The number of payload bytes.
+     * @param signature        The buffer holding the signature to be verified.
+     * @param signatureLength  The number of signature bytes.
+     * @param keyData          The key used for verification.
+     * @return true if the signature is valid, false otherwise.
+     */
+    public static boolean verifyRSASign(byte[] payLoad, int payLoadLength, byte[] signature, int signatureLength, KeyData keyData) {
+        try {
+            Signature sign = keyData.getVerifier();
+            sign.update(payLoad, 0, payLoadLength);
+            return sign.verify(signature, 0, signatureLength);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            keyData.resetVerifier();
+            logger.error("An error occurred during RSA signature verification: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.igot.cb.authentication.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.igot.cb.authentication.model.KeyData;
+import com.igot.cb.pores.util.Constants;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the claims needed for access token validation straight from the token bytes. Segment
+ * boundaries are found by offset rather than by splitting, each segment is Base64URL decoded
+ * into a buffer reused by the calling thread, and only {@code kid}, {@code exp}, {@code iss}
+ * and {@code sub} are read with a streaming parser; all other claims are skipped.
+ */
+public class JwtClaimExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int INITIAL_BUFFER_SIZE = 2048;
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+    private static final int[] DECODE_TABLE = new int[256];
+
+    static {
+        Arrays.fill(DECODE_TABLE, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = i;
+        }
+        // Accept both the URL safe and the standard alphabet for the last two symbols
+        DECODE_TABLE['-'] = 62;
+        DECODE_TABLE['+'] = 62;
+        DECODE_TABLE['_'] = 63;
+        DECODE_TABLE['/'] = 63;
+    }
+
+    private JwtClaimExtractor() {
+    }
+
+    /**
+     * Parses the header and body of the token.
+     *
+     * @param token The JWT token to be parsed.
+     * @return The claims read from the token; the signature is not verified yet.
+     * @throws IOException If a segment is not valid JSON.
+     */
+    public static ParsedToken parse(String token) throws IOException {
+        int headerEnd = token.indexOf('.');
+        int bodyEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (headerEnd <= 0 || bodyEnd < 0) {
+            throw new IllegalArgumentException("Invalid token format");
+        }
+        int signatureEnd = token.indexOf('.', bodyEnd + 1);
+        ParsedToken parsedToken = new ParsedToken(token.getBytes(StandardCharsets.US_ASCII), bodyEnd,
+                signatureEnd < 0 ? token.length() : signatureEnd);
+        int length = decode(parsedToken.tokenBytes, 0, headerEnd);
+        readClaims(length, parsedToken, true);
+        length = decode(parsedToken.tokenBytes, headerEnd + 1, bodyEnd);
+        readClaims(length, parsedToken, false);
+        return parsedToken;
+    }
+
+    /**
+     * Verifies the signature of a parsed token against the given key.
+     *
+     * @param parsedToken The token returned by {@link #parse(String)}.
+     * @param keyData     The key identified by the token's {@code kid}.
+     * @return true if the signature is valid, false otherwise.
+     */
+    public static boolean verifySignature(ParsedToken parsedToken, KeyData keyData) {
+        int length = decode(parsedToken.tokenBytes, parsedToken.bodyEnd + 1, parsedToken.signatureEnd);
+        return CryptoUtil.verifyRSASign(parsedToken.tokenBytes, parsedToken.bodyEnd, BUFFER.get(), length, keyData);
+    }
+
+    /**
+     * Reads {@code kid} from the header, or {@code exp}, {@code iss} and {@code sub} from the body.
+     */
+    private static void readClaims(int length, ParsedToken parsedToken, boolean header) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(BUFFER.get(), 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Invalid token format");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                if (header) {
+                    if ("kid".equals(fieldName)) {
+                        parsedToken.keyId = scalarValue(parser, valueToken, fieldName);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    continue;
+                }
+                switch (fieldName) {
+                    case "exp":
+                        requireScalar(parser, valueToken, fieldName);
+                        parsedToken.expiration = valueToken.isNumeric() ? parser.getLongValue() : null;
+                        break;
+                    case "iss":
+                        parsedToken.issuer = scalarValue(parser, valueToken, fieldName);
+                        break;
+                    case Constants.SUB:
+                        parsedToken.subject = scalarValue(parser, valueToken, fieldName);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static String scalarValue(JsonParser parser, JsonToken valueToken, String claim) throws IOException {
+        requireScalar(parser, valueToken, claim);
+        return parser.getValueAsString();
+    }
+
+    /**
+     * Rejects an object or array where a claim must hold a single value. The structure is
+     * skipped first so the parser is never left inside it.
+     */
+    private static void requireScalar(JsonParser parser, JsonToken valueToken, String claim) throws IOException {
+        if (valueToken.isStructStart()) {
+            parser.skipChildren();
+            throw new IllegalArgumentException("Invalid value of claim " + claim);
+        }
+    }
+
+    /**
+     * Decodes {@code src[from, to)} from Base64URL into the thread's buffer, growing it if needed.
+     *
+     * @return The number of decoded bytes.
+     */
+    private static int decode(byte[] src, int from, int to) {
+        int end = to;
+        while (end > from && src[end - 1] == '=') {
+            end--;
+        }
+        int symbols = end - from;
+        if (symbols % 4 == 1) {
+            throw new IllegalArgumentException("Invalid base64 segment length");
+        }
+        int decodedLength = symbols / 4 * 3 + Math.max(0, symbols % 4 - 1);
+        byte[] buffer = BUFFER.get();
+        if (buffer.length < decodedLength) {
+            buffer = new byte[Math.max(decodedLength, buffer.length * 2)];
+            BUFFER.set(buffer);
+        }
+        int accumulator = 0;
+        int bits = 0;
+        int position = 0;
+        for (int i = from; i < end; i++) {
+            int value = DECODE_TABLE[src[i] & 0xff];
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid base64 character in token");
+            }
+            accumulator = (accumulator << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                buffer[position++] = (byte) (accumulator >> bits);
+                accumulator &= (1 << bits) - 1;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Claims read from a token together with the raw token bytes needed to verify its signature.
+     */
+    public static class ParsedToken {
+        private final byte[] tokenBytes;
+        private final int bodyEnd;
+        private final int signatureEnd;
+        private String keyId;
+        private Long expiration;
+        private String issuer;
+        private String subject;
+
+        private ParsedToken(byte[] tokenBytes, int bodyEnd, int signatureEnd) {
+            this.tokenBytes = tokenBytes;
+            this.bodyEnd = bodyEnd;
+            this.signatureEnd = signatureEnd;
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+
+        public Long getExpiration() {
+            return expiration;
+        }
+
+        public String getIssuer() {
+            return issuer;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+    }
+}
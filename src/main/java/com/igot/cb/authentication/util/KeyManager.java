@@ -9,34 +9,78 @@ import org.springframework.stereotype.Component;
 
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.security.KeyFactory;
 import java.security.PublicKey;
 import java.security.spec.X509EncodedKeySpec;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * @author Shankaragouda
+ * <p>
+ * Holds the public keys found under {@code accesstoken.publickey.basepath}. The key directory
+ * is watched and the whole key map is rebuilt and swapped in atomically when it changes, so a
+ * Keycloak key rotation is picked up without a restart.
  */
 @Component
 public class KeyManager {
 
   private static final Logger logger = LoggerFactory.getLogger(KeyManager.class.getName());
   private static final PropertiesCache propertiesCache = PropertiesCache.getInstance();
+  private static final long RELOAD_DEBOUNCE_MILLIS = 500;
 
-  private static final Map<String, KeyData> keyMap = new HashMap<>();
+  private volatile Map<String, KeyData> keyMap = Collections.emptyMap();
+  private WatchService watchService;
 
   @PostConstruct
   public void init() {
-    // Read the content of the file and load it as a PublicKey
     String basePath = propertiesCache.getProperty(Constants.ACCESS_TOKEN_PUBLICKEY_BASEPATH);
+    loadKeys(basePath);
+    watchKeyDirectory(basePath);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        logger.error("KeyManager:destroy: exception in closing key directory watcher ", e);
+      }
+    }
+  }
+
+  public KeyData getPublicKey(String keyId) {
+    return keyMap.get(keyId);
+  }
+
+  /**
+   * Reads every key file under the base path into a new map and publishes it in one step.
+   * A key whose content did not change keeps its existing {@link KeyData}, so verifiers and
+   * verified tokens bound to it stay valid across reloads.
+   *
+   * @param basePath The directory holding one public key file per key id
+   */
+  private void loadKeys(String basePath) {
+    Map<String, KeyData> currentKeys = keyMap;
+    Map<String, KeyData> loadedKeys = new ConcurrentHashMap<>();
+    // Read the content of the file and load it as a PublicKey
     try (Stream<Path> walk = Files.walk(Paths.get(basePath))) {
       List<String> result =
               walk.filter(Files::isRegularFile).map(Path::toString).collect(Collectors.toList());
@@ -45,22 +89,66 @@ public class KeyManager {
           Path path = Paths.get(file);
           List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
           String content = String.join("", lines);
-          KeyData keyData = new KeyData(path.getFileName().toString(), loadPublicKey(content));
+          String keyId = path.getFileName().toString();
+          PublicKey publicKey = loadPublicKey(content);
+          KeyData existing = currentKeys.get(keyId);
+          KeyData keyData = existing != null && existing.getPublicKey().equals(publicKey)
+                  ? existing : new KeyData(keyId, publicKey);
           // Store the KeyData object in the keyMap
-          keyMap.put(path.getFileName().toString(), keyData);
+          loadedKeys.put(keyId, keyData);
         } catch (Exception e) {
           logger.error("KeyManager:init: exception in reading public keys ", e);
         }
       });
+      keyMap = loadedKeys;
+      logger.info("KeyManager:loadKeys: loaded {} public keys", loadedKeys.size());
     } catch (Exception e) {
       logger.error("KeyManager:init: exception in loading publickeys ", e);
     }
   }
 
-  public KeyData getPublicKey(String keyId) {
-    return keyMap.get(keyId);
+  private void watchKeyDirectory(String basePath) {
+    try {
+      Path directory = Paths.get(basePath);
+      if (!Files.isDirectory(directory)) {
+        logger.warn("KeyManager:watchKeyDirectory: {} is not a directory, key rotation will need a restart", basePath);
+        return;
+      }
+      watchService = FileSystems.getDefault().newWatchService();
+      try (Stream<Path> walk = Files.walk(directory)) {
+        for (Path dir : walk.filter(Files::isDirectory).collect(Collectors.toList())) {
+          dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                  StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+      }
+      Thread watcherThread = new Thread(() -> watchLoop(basePath), "public-key-watcher");
+      watcherThread.setDaemon(true);
+      watcherThread.start();
+    } catch (Exception e) {
+      logger.error("KeyManager:watchKeyDirectory: exception in watching key directory ", e);
+    }
   }
 
+  private void watchLoop(String basePath) {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        WatchKey watchKey = watchService.take();
+        // Let a rotation that touches several files settle before reloading once
+        TimeUnit.MILLISECONDS.sleep(RELOAD_DEBOUNCE_MILLIS);
+        do {
+          watchKey.pollEvents();
+          watchKey.reset();
+          watchKey = watchService.poll();
+        } while (watchKey != null);
+        logger.info("KeyManager:watchLoop: key directory changed, reloading public keys");
+        loadKeys(basePath);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      logger.info("KeyManager:watchLoop: key directory watcher closed");
+    }
+  }
 
   /**
    * Loads a public key from a string representation.
@@ -82,4 +170,4 @@ public class KeyManager {
     KeyFactory kf = KeyFactory.getInstance("RSA");
     return kf.generatePublic(x509publicKey);
   }
-}
\ No newline at end of file
+}
@@ -9,10 +9,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -28,11 +30,19 @@ public class CustomFieldsController {
         return new ResponseEntity<>(response, response.getResponseCode());
     }
 
+    @PostMapping("/bulk/create")
+    public ResponseEntity<ApiResponse> bulkCreateCustomFields(@RequestBody JsonNode customFieldsData,
+                                                              @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
+        ApiResponse response = customFieldsService.bulkCreateCustomFields(customFieldsData, token);
+        return new ResponseEntity<>(response, response.getResponseCode());
+    }
+
     @GetMapping("/read/{customFieldId}")
     public ResponseEntity<ApiResponse> readCustomField(
             @PathVariable String customFieldId,
+            @RequestParam(value = "format", required = false) String format,
             @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
-        ApiResponse response = customFieldsService.readCustomField(customFieldId, token);
+        ApiResponse response = customFieldsService.readCustomField(customFieldId, format, token);
         return new ResponseEntity<>(response, response.getResponseCode());
     }
 
@@ -64,8 +74,12 @@ public class CustomFieldsController {
     public ResponseEntity<ApiResponse> uploadCustomFieldHierarchy(
             @RequestParam("file") MultipartFile multipartFile,
             @RequestParam("metadata") String customFieldsMasterDataJson,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "sheets", required = false) List<String> sheets,
+            @RequestParam(value = "separateSheets", defaultValue = "false") boolean separateSheets,
             @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
-        ApiResponse response = customFieldsService.uploadMasterListCustomField(multipartFile, customFieldsMasterDataJson, token);
+        ApiResponse response = customFieldsService.uploadMasterListCustomField(multipartFile, customFieldsMasterDataJson, token, async,
+                sheets, separateSheets);
         return new ResponseEntity<>(response, response.getResponseCode());
     }
 
@@ -73,8 +87,67 @@ public class CustomFieldsController {
     public ResponseEntity<ApiResponse> updateMasterListCustomField(
             @RequestParam("file") MultipartFile file,
             @RequestParam("metadata") String customFieldsMasterDataJson,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "sheets", required = false) List<String> sheets,
+            @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
+        ApiResponse response = customFieldsService.updateMasterListCustomField(file, customFieldsMasterDataJson, token, async, sheets);
+        return new ResponseEntity<>(response, response.getResponseCode());
+    }
+
+    @GetMapping("/masterList/jobs/{jobId}")
+    public ResponseEntity<ApiResponse> getMasterListImportJob(
+            @PathVariable String jobId,
+            @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
+        ApiResponse response = customFieldsService.getMasterListImportJob(jobId, token);
+        return new ResponseEntity<>(response, response.getResponseCode());
+    }
+
+    @GetMapping("/masterList/{customFieldId}/ancestors")
+    public ResponseEntity<ApiResponse> getMasterListAncestors(
+            @PathVariable String customFieldId,
+            @RequestParam("fieldValue") String fieldValue,
+            @RequestParam(value = "fieldName", required = false) String fieldName,
+            @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
+        ApiResponse response = customFieldsService.getMasterListAncestors(customFieldId, fieldValue, fieldName, token);
+        return new ResponseEntity<>(response, response.getResponseCode());
+    }
+
+    /**
+     * Pages through the children of the node at {@code path}, given as one {@code path} parameter
+     * per level so that values containing commas are not split.
+     */
+    @GetMapping("/masterList/{customFieldId}/children")
+    public ResponseEntity<ApiResponse> getMasterListChildren(
+            @PathVariable String customFieldId,
+            @RequestParam MultiValueMap<String, String> params,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
+        ApiResponse response = customFieldsService.getMasterListChildren(customFieldId, params.get(Constants.PATH), cursor, limit, token);
+        return new ResponseEntity<>(response, response.getResponseCode());
+    }
+
+    /**
+     * Suggests master list values starting with or containing {@code q}, optionally only those
+     * of the level whose field name is {@code level}.
+     */
+    @GetMapping("/masterList/{customFieldId}/suggest")
+    public ResponseEntity<ApiResponse> suggestMasterListValues(
+            @PathVariable String customFieldId,
+            @RequestParam("q") String query,
+            @RequestParam(value = "level", required = false) String level,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
+        ApiResponse response = customFieldsService.suggestMasterListValues(customFieldId, query, level, limit, token);
+        return new ResponseEntity<>(response, response.getResponseCode());
+    }
+
+    @PatchMapping("/masterList/{customFieldId}/nodes")
+    public ResponseEntity<ApiResponse> patchMasterListNodes(
+            @PathVariable String customFieldId,
+            @RequestBody JsonNode patchRequest,
             @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
-        ApiResponse response = customFieldsService.updateMasterListCustomField(file, customFieldsMasterDataJson, token);
+        ApiResponse response = customFieldsService.patchMasterListNodes(customFieldId, patchRequest, token);
         return new ResponseEntity<>(response, response.getResponseCode());
     }
 
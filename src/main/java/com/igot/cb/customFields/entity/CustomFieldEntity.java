@@ -1,14 +1,19 @@
 package com.igot.cb.customFields.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.vladmihalcea.hibernate.type.json.JsonType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.*;
 import org.hibernate.annotations.Type;
+import org.springframework.data.domain.Persistable;
 
 import java.sql.Timestamp;
 
@@ -19,7 +24,7 @@ import java.sql.Timestamp;
 @Table(name = "custom_fields")
 @JsonIgnoreProperties(ignoreUnknown = true)
 @Entity
-public class CustomFieldEntity {
+public class CustomFieldEntity implements Persistable<String> {
     @Id
     private String customFiledId;
 
@@ -34,4 +39,30 @@ public class CustomFieldEntity {
     private Timestamp createdOn;
 
     private Timestamp updatedOn;
+
+    /**
+     * Set for a freshly created entity so that saving it persists directly instead of first
+     * selecting by the assigned id.
+     */
+    @Transient
+    @JsonIgnore
+    private boolean newEntity;
+
+    @Override
+    @JsonIgnore
+    public String getId() {
+        return customFiledId;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newEntity = false;
+    }
 }
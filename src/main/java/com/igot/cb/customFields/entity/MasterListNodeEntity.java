@@ -0,0 +1,64 @@
+package com.igot.cb.customFields.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * One node of a master list hierarchy stored in the node layout. A node keeps its id across
+ * saves and new nodes take ids above every stored one, so a parent always has a lower id than
+ * its children, and reading the rows in (parentId, ordinal) order meets every parent before its
+ * children. Names and values are ids into the {@link MasterListValueEntity} dictionary of the
+ * same custom field.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "master_list_nodes",
+        indexes = @Index(name = "idx_master_list_nodes_parent", columnList = "customFieldId, parentId, ordinal"))
+@IdClass(MasterListNodeEntity.Key.class)
+@Entity
+public class MasterListNodeEntity {
+
+    @Id
+    private String customFieldId;
+
+    @Id
+    private int nodeId;
+
+    /**
+     * -1 for first level nodes.
+     */
+    private int parentId;
+
+    /**
+     * 1 for first level nodes.
+     */
+    private int level;
+
+    /**
+     * Position among the children of the parent, from 0 without gaps.
+     */
+    private int ordinal;
+
+    private int nameId;
+
+    private int valueId;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String customFieldId;
+        private int nodeId;
+    }
+}
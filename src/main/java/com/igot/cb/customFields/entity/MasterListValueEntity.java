@@ -0,0 +1,46 @@
+package com.igot.cb.customFields.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Dictionary of the distinct field names and values of one master list stored in the node
+ * layout, so that each string is stored once however many nodes share it.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "master_list_values",
+        indexes = @Index(name = "idx_master_list_values_value", columnList = "customFieldId, value"))
+@IdClass(MasterListValueEntity.Key.class)
+@Entity
+public class MasterListValueEntity {
+
+    @Id
+    private String customFieldId;
+
+    @Id
+    private int valueId;
+
+    @Column(columnDefinition = "text")
+    private String value;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String customFieldId;
+        private int valueId;
+    }
+}
@@ -0,0 +1,135 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.igot.cb.pores.util.Constants;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The compact (v2) shape of a master list hierarchy:
+ * <pre>
+ * {"levels": ["state", "district"], "nodes": [{"v": "Karnataka", "c": [{"v": "Mysore"}]}]}
+ * </pre>
+ * Field names are kept once per level, and everything else a node of the expanded shape
+ * repeats, its field attribute and its parent's name and value, follows from its position.
+ * Leaves carry no children array. Only hierarchies that use one field name per level can be
+ * compacted, which is the case for every hierarchy built from an upload.
+ */
+public final class MasterListCompactFormat {
+
+    private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+    // Stands in for the missing parent of first level nodes, as the deques hold no nulls
+    private static final ObjectNode NO_PARENT = NODE_FACTORY.objectNode();
+
+    private MasterListCompactFormat() {
+    }
+
+    public static boolean isCompact(JsonNode customFieldData) {
+        return customFieldData != null && customFieldData.isObject()
+                && customFieldData.has(Constants.LEVELS) && customFieldData.has(Constants.NODES);
+    }
+
+    /**
+     * @param hierarchy the expanded hierarchy, as built for {@link Constants#CUSTOM_FIELD_DATA}
+     * @return the compact shape, or null when a level mixes field names
+     */
+    public static ObjectNode compact(JsonNode hierarchy) {
+        List<String> levels = new ArrayList<>();
+        ObjectNode compact = NODE_FACTORY.objectNode();
+        ArrayNode levelNames = compact.putArray(Constants.LEVELS);
+        ArrayNode roots = compact.putArray(Constants.NODES);
+
+        Deque<JsonNode> nodes = new ArrayDeque<>();
+        Deque<ArrayNode> targets = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        pushChildren(hierarchy, roots, 0, nodes, targets, depths);
+        while (!nodes.isEmpty()) {
+            JsonNode node = nodes.pop();
+            ArrayNode target = targets.pop();
+            int depth = depths.pop();
+            String fieldName = node.path(Constants.FIELD_NAME).asText();
+            if (depth == levels.size()) {
+                levels.add(fieldName);
+                levelNames.add(fieldName);
+            } else if (!levels.get(depth).equals(fieldName)) {
+                return null;
+            }
+            ObjectNode compactNode = target.addObject();
+            compactNode.set(Constants.COMPACT_VALUE, node.path(Constants.FIELD_VALUE));
+            JsonNode children = node.get(Constants.FIELD_VALUES);
+            if (children != null && children.isArray() && !children.isEmpty()) {
+                pushChildren(children, compactNode.putArray(Constants.COMPACT_CHILDREN), depth + 1, nodes, targets, depths);
+            }
+        }
+        return compact;
+    }
+
+    /**
+     * @param compact a hierarchy in the compact shape
+     * @return the expanded hierarchy, as built for {@link Constants#CUSTOM_FIELD_DATA}
+     */
+    public static ArrayNode expand(JsonNode compact) {
+        List<TextNode> levels = new ArrayList<>();
+        compact.path(Constants.LEVELS).forEach(level -> levels.add(NODE_FACTORY.textNode(level.asText())));
+        ArrayNode hierarchy = NODE_FACTORY.arrayNode();
+
+        Deque<JsonNode> nodes = new ArrayDeque<>();
+        Deque<ArrayNode> targets = new ArrayDeque<>();
+        Deque<ObjectNode> parents = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        pushCompactChildren(compact.path(Constants.NODES), hierarchy, NO_PARENT, 0, nodes, targets, parents, depths);
+        while (!nodes.isEmpty()) {
+            JsonNode node = nodes.pop();
+            ArrayNode target = targets.pop();
+            ObjectNode parent = parents.pop();
+            int depth = depths.pop();
+            TextNode fieldName = depth < levels.size() ? levels.get(depth) : NODE_FACTORY.textNode("");
+
+            ObjectNode expanded = target.addObject();
+            expanded.set(Constants.FIELD_NAME, fieldName);
+            expanded.set(Constants.FIELD_VALUE, node.path(Constants.COMPACT_VALUE));
+            expanded.set(Constants.FIELD_ATTRIBUTE, fieldName);
+            if (parent != NO_PARENT) {
+                expanded.set(Constants.PARENT_FIELD_NAME, parent.get(Constants.FIELD_NAME));
+                expanded.set(Constants.PARENT_FIELD_VALUE, parent.get(Constants.FIELD_VALUE));
+            }
+            ArrayNode children = expanded.putArray(Constants.FIELD_VALUES);
+            pushCompactChildren(node.path(Constants.COMPACT_CHILDREN), children, expanded, depth + 1, nodes, targets, parents, depths);
+        }
+        return hierarchy;
+    }
+
+    // Children are pushed in reverse so that each array keeps its order
+    private static void pushChildren(JsonNode children, ArrayNode target, int depth,
+                                     Deque<JsonNode> nodes, Deque<ArrayNode> targets, Deque<Integer> depths) {
+        if (children == null || !children.isArray()) {
+            return;
+        }
+        for (int i = children.size() - 1; i >= 0; i--) {
+            nodes.push(children.get(i));
+            targets.push(target);
+            depths.push(depth);
+        }
+    }
+
+    private static void pushCompactChildren(JsonNode children, ArrayNode target, ObjectNode parent, int depth,
+                                            Deque<JsonNode> nodes, Deque<ArrayNode> targets,
+                                            Deque<ObjectNode> parents, Deque<Integer> depths) {
+        if (!children.isArray()) {
+            return;
+        }
+        for (int i = children.size() - 1; i >= 0; i--) {
+            nodes.push(children.get(i));
+            targets.push(target);
+            parents.push(parent);
+            depths.push(depth);
+        }
+    }
+}
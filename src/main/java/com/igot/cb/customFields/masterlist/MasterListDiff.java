@@ -0,0 +1,200 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.igot.cb.pores.util.Constants;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Differences between two master list hierarchies. Children are matched under their parent by
+ * field name and value. Among the children that do not match, an old and a new child at the
+ * same position are reported as a rename and compared further, the others as removed or added
+ * subtrees. See {@link #matchChildren}.
+ */
+public class MasterListDiff {
+
+    public enum ChangeType {
+        ADDED, REMOVED, RENAMED
+    }
+
+    private long added;
+    private long removed;
+    private long renamed;
+    private final List<Map<String, Object>> changes = new ArrayList<>();
+    private boolean truncated;
+    private final int maxReportedChanges;
+
+    private MasterListDiff(int maxReportedChanges) {
+        this.maxReportedChanges = maxReportedChanges;
+    }
+
+    /**
+     * @param oldTree            the stored hierarchy
+     * @param newTree            the hierarchy read from the new upload
+     * @param maxReportedChanges how many changes to list individually, all are counted
+     */
+    public static MasterListDiff compare(JsonNode oldTree, JsonNode newTree, int maxReportedChanges) {
+        MasterListDiff diff = new MasterListDiff(maxReportedChanges);
+        Deque<JsonNode[]> pending = new ArrayDeque<>();
+        Deque<List<String>> paths = new ArrayDeque<>();
+        pending.push(new JsonNode[]{oldTree, newTree});
+        paths.push(Collections.emptyList());
+        while (!pending.isEmpty()) {
+            JsonNode[] pair = pending.pop();
+            diff.compareChildren(pair[0], pair[1], paths.pop(), pending, paths);
+        }
+        return diff;
+    }
+
+    /**
+     * @return the diff of a hierarchy with itself
+     */
+    public static MasterListDiff none() {
+        return new MasterListDiff(0);
+    }
+
+    public boolean isEmpty() {
+        return added == 0 && removed == 0 && renamed == 0;
+    }
+
+    public Map<String, Object> toSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put(Constants.UNCHANGED, isEmpty());
+        summary.put(Constants.ADDED, added);
+        summary.put(Constants.REMOVED, removed);
+        summary.put(Constants.RENAMED, renamed);
+        summary.put(Constants.CHANGES, changes);
+        summary.put(Constants.TRUNCATED, truncated);
+        return summary;
+    }
+
+    private void compareChildren(JsonNode oldChildren, JsonNode newChildren, List<String> path,
+                                 Deque<JsonNode[]> pending, Deque<List<String>> paths) {
+        int oldSize = size(oldChildren);
+        int newSize = size(newChildren);
+        int[] matched = matchChildren(oldSize, newSize, i -> key(oldChildren.get(i)), i -> key(newChildren.get(i)));
+
+        boolean[] oldMatched = new boolean[oldSize];
+        for (int i = 0; i < newSize; i++) {
+            JsonNode newChild = newChildren.get(i);
+            if (matched[i] < 0) {
+                long nodes = countNodes(newChild);
+                added += nodes;
+                record(ChangeType.ADDED, path, newChild, null, nodes);
+                continue;
+            }
+            oldMatched[matched[i]] = true;
+            JsonNode oldChild = oldChildren.get(matched[i]);
+            if (!key(oldChild).equals(key(newChild))) {
+                renamed++;
+                record(ChangeType.RENAMED, path, newChild, oldChild.path(Constants.FIELD_VALUE).asText(), 1);
+            }
+            push(oldChild, newChild, path, pending, paths);
+        }
+        for (int i = 0; i < oldSize; i++) {
+            if (!oldMatched[i]) {
+                JsonNode oldChild = oldChildren.get(i);
+                long nodes = countNodes(oldChild);
+                removed += nodes;
+                record(ChangeType.REMOVED, path, oldChild, null, nodes);
+            }
+        }
+    }
+
+    /**
+     * Pairs the new children of a parent with its old ones: first by key, then, among the
+     * children left on both sides, by position. A pair whose keys differ is a rename. The node
+     * layout pairs stored rows the same way, so the changes reported are the rows it writes.
+     *
+     * @param oldKey the key of the old child at an index, equal keys meaning the same node
+     * @param newKey the key of the new child at an index
+     * @return the index of the old child paired with each new child, or -1 for an added child
+     */
+    public static int[] matchChildren(int oldSize, int newSize, IntFunction<Object> oldKey, IntFunction<Object> newKey) {
+        Map<Object, Integer> oldByKey = new HashMap<>(oldSize * 4 / 3 + 1);
+        for (int i = 0; i < oldSize; i++) {
+            oldByKey.putIfAbsent(oldKey.apply(i), i);
+        }
+
+        boolean[] oldMatched = new boolean[oldSize];
+        int[] matched = new int[newSize];
+        for (int i = 0; i < newSize; i++) {
+            Integer oldIndex = oldByKey.get(newKey.apply(i));
+            if (oldIndex != null && !oldMatched[oldIndex]) {
+                oldMatched[oldIndex] = true;
+                matched[i] = oldIndex;
+            } else {
+                matched[i] = -1;
+            }
+        }
+        for (int i = 0; i < newSize && i < oldSize; i++) {
+            if (matched[i] < 0 && !oldMatched[i]) {
+                oldMatched[i] = true;
+                matched[i] = i;
+            }
+        }
+        return matched;
+    }
+
+    private static void push(JsonNode oldChild, JsonNode newChild, List<String> path,
+                             Deque<JsonNode[]> pending, Deque<List<String>> paths) {
+        JsonNode oldGrandChildren = oldChild.path(Constants.FIELD_VALUES);
+        JsonNode newGrandChildren = newChild.path(Constants.FIELD_VALUES);
+        if (size(oldGrandChildren) == 0 && size(newGrandChildren) == 0) {
+            return;
+        }
+        List<String> childPath = new ArrayList<>(path.size() + 1);
+        childPath.addAll(path);
+        childPath.add(newChild.path(Constants.FIELD_VALUE).asText());
+        pending.push(new JsonNode[]{oldGrandChildren, newGrandChildren});
+        paths.push(childPath);
+    }
+
+    private void record(ChangeType type, List<String> path, JsonNode node, String previousValue, long nodes) {
+        if (changes.size() >= maxReportedChanges) {
+            truncated = true;
+            return;
+        }
+        Map<String, Object> change = new LinkedHashMap<>();
+        change.put(Constants.TYPE, type.name());
+        change.put(Constants.PATH, path);
+        change.put(Constants.FIELD_NAME, node.path(Constants.FIELD_NAME).asText());
+        change.put(Constants.FIELD_VALUE, node.path(Constants.FIELD_VALUE).asText());
+        if (previousValue != null) {
+            change.put(Constants.PREVIOUS_FIELD_VALUE, previousValue);
+        }
+        change.put(Constants.NODES, nodes);
+        changes.add(change);
+    }
+
+    private static String key(JsonNode node) {
+        return node.path(Constants.FIELD_NAME).asText() + '\u0000' + node.path(Constants.FIELD_VALUE).asText();
+    }
+
+    private static int size(JsonNode children) {
+        return children == null || !children.isArray() ? 0 : children.size();
+    }
+
+    private static long countNodes(JsonNode node) {
+        long count = 0;
+        Deque<JsonNode> nodes = new ArrayDeque<>();
+        nodes.push(node);
+        while (!nodes.isEmpty()) {
+            JsonNode current = nodes.pop();
+            count++;
+            JsonNode children = current.path(Constants.FIELD_VALUES);
+            for (int i = 0; i < size(children); i++) {
+                nodes.push(children.get(i));
+            }
+        }
+        return count;
+    }
+}
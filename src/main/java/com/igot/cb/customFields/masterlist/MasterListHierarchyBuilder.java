@@ -0,0 +1,179 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.igot.cb.pores.util.Constants;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the master list hierarchy one sheet row at a time, so rows never need to be held
+ * in memory; only the tree itself is kept. Each row holds the values of one path from the
+ * first level down, an empty cell ends the path.
+ * <p>
+ * Rows are added to a plain tree of {@link Node}s: each node finds its children by value, so
+ * adding a row that repeats an existing path allocates nothing, and equal values share one
+ * String through a dictionary. Jackson nodes are only created by {@link #build()}, which walks
+ * the tree iteratively. The reversed view is no longer materialized, see {@link MasterListIndex}.
+ */
+public class MasterListHierarchyBuilder {
+
+    private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+
+    private final int levels;
+    private String[] headers;
+    private TextNode[] headerNodes;
+    private final Node root = new Node(null, -1, null);
+    private final Map<String, String> dictionary = new HashMap<>();
+
+    public MasterListHierarchyBuilder(int levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * @param headers the attribute name of each level, must be set before the first row is added
+     */
+    public void setHeaders(String[] headers) {
+        this.headers = headers;
+        this.headerNodes = new TextNode[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            headerNodes[i] = TextNode.valueOf(headers[i]);
+        }
+    }
+
+    public boolean hasHeaders() {
+        return headers != null;
+    }
+
+    public void addRow(String[] cells) {
+        Node current = root;
+        for (int j = 0; j < levels && j < cells.length; j++) {
+            String value = cells[j];
+            if (value == null) break;
+            value = value.trim();
+            if (value.isEmpty()) break;
+
+            Node child = current.child(value);
+            if (child == null) {
+                String canonical = dictionary.putIfAbsent(value, value);
+                child = current.addChild(canonical != null ? canonical : value, j);
+            }
+            current = child;
+        }
+    }
+
+    /**
+     * Adds the rows of another builder over the same levels, as if they followed the rows added
+     * here. Paths already present are matched by value and subtrees missing here are moved over
+     * rather than copied, so the other builder must not be used afterwards. Field names are the
+     * headers of this builder.
+     */
+    public void merge(MasterListHierarchyBuilder other) {
+        Deque<Node[]> pending = new ArrayDeque<>();
+        pending.push(new Node[]{root, other.root});
+        while (!pending.isEmpty()) {
+            Node[] pair = pending.pop();
+            Node target = pair[0];
+            for (Node child : pair[1].children) {
+                Node existing = target.child(child.value);
+                if (existing == null) {
+                    target.adopt(child);
+                } else {
+                    pending.push(new Node[]{existing, child});
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the hierarchy, as stored under {@link Constants#CUSTOM_FIELD_DATA}
+     */
+    public ArrayNode build() {
+        ArrayNode customFieldData = NODE_FACTORY.arrayNode(root.children.size());
+
+        // Depth first, children pushed in reverse so that each array keeps the row order
+        Deque<Node> nodes = new ArrayDeque<>();
+        Deque<ArrayNode> targets = new ArrayDeque<>();
+        pushChildren(root, customFieldData, nodes, targets);
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            ArrayNode target = targets.pop();
+            ObjectNode objectNode = toObjectNode(node);
+            ArrayNode children = NODE_FACTORY.arrayNode(node.children.size());
+            objectNode.set(Constants.FIELD_VALUES, children);
+            target.add(objectNode);
+            pushChildren(node, children, nodes, targets);
+        }
+        return customFieldData;
+    }
+
+    private static void pushChildren(Node node, ArrayNode target, Deque<Node> nodes, Deque<ArrayNode> targets) {
+        for (int i = node.children.size() - 1; i >= 0; i--) {
+            nodes.push(node.children.get(i));
+            targets.push(target);
+        }
+    }
+
+    private ObjectNode toObjectNode(Node node) {
+        ObjectNode objectNode = NODE_FACTORY.objectNode();
+        objectNode.set(Constants.FIELD_NAME, headerNodes[node.level]);
+        objectNode.set(Constants.FIELD_VALUE, node.valueNode());
+        objectNode.set(Constants.FIELD_ATTRIBUTE, headerNodes[node.level]);
+        if (node.parent != root) {
+            objectNode.set(Constants.PARENT_FIELD_NAME, headerNodes[node.parent.level]);
+            objectNode.set(Constants.PARENT_FIELD_VALUE, node.parent.valueNode());
+        }
+        return objectNode;
+    }
+
+    private static final class Node {
+        private Node parent;
+        private final int level;
+        private final String value;
+        // Leaves make up most of the tree, so both collections are only created for the first child
+        private List<Node> children = Collections.emptyList();
+        private Map<String, Node> childrenByValue;
+        private TextNode valueNode;
+
+        private Node(Node parent, int level, String value) {
+            this.parent = parent;
+            this.level = level;
+            this.value = value;
+        }
+
+        private Node child(String value) {
+            return childrenByValue == null ? null : childrenByValue.get(value);
+        }
+
+        private Node addChild(String value, int level) {
+            Node child = new Node(this, level, value);
+            adopt(child);
+            return child;
+        }
+
+        private void adopt(Node child) {
+            if (childrenByValue == null) {
+                childrenByValue = new HashMap<>();
+                children = new ArrayList<>();
+            }
+            child.parent = this;
+            childrenByValue.put(child.value, child);
+            children.add(child);
+        }
+
+        private TextNode valueNode() {
+            if (valueNode == null) {
+                valueNode = TextNode.valueOf(value);
+            }
+            return valueNode;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.igot.cb.customFields.masterlist;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Status of an asynchronous master list import, as reported by the job status API.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class MasterListImportJob {
+
+    public enum Operation {
+        CREATE, UPDATE
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    public enum Phase {
+        WAITING_FOR_MEMORY, PARSING, SAVING, DONE
+    }
+
+    private String jobId;
+    private Operation operation;
+    private Status status;
+    private Phase phase;
+    private String fileName;
+    private long fileSize;
+    private long rowsProcessed;
+    private String customFieldId;
+    private Map<String, Object> changes;
+    private String error;
+    private String createdBy;
+    private long createdOn;
+    private long updatedOn;
+}
@@ -0,0 +1,270 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.exceptions.CustomException;
+import com.igot.cb.pores.upload.UploadFormat;
+import com.igot.cb.pores.upload.UploadedFileReader;
+import com.igot.cb.pores.util.Constants;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs master list imports off the request thread. The upload is spooled to disk and the
+ * parse and persist run on a bounded worker pool. Besides the worker count, concurrent imports
+ * are limited by a memory budget: each job reserves an estimate of its heap use, derived from
+ * the file size and format. Jobs wait in a pending queue and are handed to a worker only once
+ * both a worker and their reservation are free, so workers never block on memory. A job that
+ * does not fit yet is passed by later, smaller jobs that do, rather than holding them back.
+ * Job status is kept in Redis so that any node can answer a status request.
+ */
+@Service
+@Slf4j
+public class MasterListImportJobService {
+
+    private static final long KIB = 1024L;
+
+    @Autowired
+    private UploadedFileReader uploadedFileReader;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${masterList.import.workers}")
+    private int workers;
+
+    @Value("${masterList.import.queue.capacity}")
+    private int queueCapacity;
+
+    @Value("${masterList.import.memory.budget.mb}")
+    private int memoryBudgetMb;
+
+    @Value("${masterList.import.memory.excel.expansion.factor}")
+    private int excelExpansionFactor;
+
+    @Value("${masterList.import.memory.text.expansion.factor}")
+    private int textExpansionFactor;
+
+    @Value("${masterList.import.progress.interval.rows}")
+    private long progressIntervalRows;
+
+    @Value("${masterList.import.job.ttl.seconds}")
+    private long jobTtlSeconds;
+
+    private ThreadPoolExecutor executor;
+
+    // Jobs not handed to a worker yet, in submission order; guards the fields below too
+    private final Deque<PendingImport> pending = new ArrayDeque<>();
+    private long availableKib;
+    private int runningJobs;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        // Never more jobs than workers are handed over, so nothing waits in the executor's queue
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "master-list-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        availableKib = budgetKib();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (pending) {
+            pending.forEach(pendingImport -> uploadedFileReader.deleteSpoolFile(pendingImport.spoolFile()));
+            pending.clear();
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Spools the upload and queues the import.
+     *
+     * @return the queued job
+     * @throws CustomException if the file alone would exceed the memory budget or the queue is full
+     */
+    public MasterListImportJob submit(MasterListImportJob.Operation operation, MultipartFile file, UploadFormat format,
+                                      String userId, MasterListImportTask task) throws IOException {
+        int reservation = estimateMemoryKib(file.getSize(), format);
+        if (reservation > budgetKib()) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_IMPORT_TOO_LARGE, memoryBudgetMb),
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        Path spoolFile = uploadedFileReader.spool(file);
+        long now = System.currentTimeMillis();
+        MasterListImportJob job = new MasterListImportJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setOperation(operation);
+        job.setStatus(MasterListImportJob.Status.QUEUED);
+        job.setFileName(file.getOriginalFilename());
+        job.setFileSize(file.getSize());
+        job.setCreatedBy(userId);
+        job.setCreatedOn(now);
+        publish(job);
+
+        PendingImport pendingImport = new PendingImport(job, spoolFile, reservation, task,
+                new MasterListImportProgress(job, this::publish, progressIntervalRows));
+        List<PendingImport> waiting;
+        synchronized (pending) {
+            if (pending.size() >= queueCapacity) {
+                uploadedFileReader.deleteSpoolFile(spoolFile);
+                redisTemplate.delete(Constants.MASTER_LIST_IMPORT_JOB + job.getJobId());
+                throw new CustomException(Constants.FAILED, Constants.MASTER_LIST_IMPORT_QUEUE_FULL, HttpStatus.TOO_MANY_REQUESTS);
+            }
+            pending.add(pendingImport);
+            waiting = dispatch();
+        }
+        reportWaiting(waiting);
+        log.info("MasterListImportJobService::submit: Queued {} job {} for {} ({} bytes)",
+                operation, job.getJobId(), job.getFileName(), job.getFileSize());
+        return job;
+    }
+
+    /**
+     * @return the job, or null when it does not exist or has expired
+     */
+    public MasterListImportJob getJob(String jobId) throws IOException {
+        String json = redisTemplate.opsForValue().get(Constants.MASTER_LIST_IMPORT_JOB + jobId);
+        return json == null ? null : objectMapper.readValue(json, MasterListImportJob.class);
+    }
+
+    /**
+     * Hands pending jobs to free workers, in submission order, as long as their reservation fits
+     * in the memory left. Must be called holding the {@link #pending} lock.
+     *
+     * @return the jobs that now wait for memory, to report outside the lock
+     */
+    private List<PendingImport> dispatch() {
+        List<PendingImport> waiting = new ArrayList<>();
+        Iterator<PendingImport> iterator = pending.iterator();
+        while (runningJobs < workers && iterator.hasNext()) {
+            PendingImport next = iterator.next();
+            if (next.reservation() > availableKib) {
+                if (next.job().getPhase() != MasterListImportJob.Phase.WAITING_FOR_MEMORY) {
+                    next.job().setPhase(MasterListImportJob.Phase.WAITING_FOR_MEMORY);
+                    waiting.add(next);
+                }
+                continue;
+            }
+            iterator.remove();
+            availableKib -= next.reservation();
+            runningJobs++;
+            try {
+                executor.execute(() -> runJob(next));
+            } catch (RejectedExecutionException e) {
+                // Only when shutting down
+                availableKib += next.reservation();
+                runningJobs--;
+                uploadedFileReader.deleteSpoolFile(next.spoolFile());
+            }
+        }
+        return waiting;
+    }
+
+    private void reportWaiting(List<PendingImport> waiting) {
+        for (PendingImport pendingImport : waiting) {
+            // Progress publishes phase changes under its own lock; skipped once the job has started
+            synchronized (pendingImport.progress()) {
+                if (pendingImport.job().getPhase() == MasterListImportJob.Phase.WAITING_FOR_MEMORY) {
+                    publish(pendingImport.job());
+                }
+            }
+        }
+    }
+
+    private void runJob(PendingImport pendingImport) {
+        MasterListImportJob job = pendingImport.job();
+        MasterListImportProgress progress = pendingImport.progress();
+        try {
+            job.setStatus(MasterListImportJob.Status.RUNNING);
+            progress.phase(MasterListImportJob.Phase.PARSING);
+            String customFieldId = pendingImport.task().run(pendingImport.spoolFile(), progress);
+            job.setCustomFieldId(customFieldId);
+            job.setStatus(MasterListImportJob.Status.COMPLETED);
+            job.setPhase(MasterListImportJob.Phase.DONE);
+        } catch (CustomException e) {
+            job.setStatus(MasterListImportJob.Status.FAILED);
+            job.setError(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.setStatus(MasterListImportJob.Status.FAILED);
+            job.setError(Constants.MASTER_LIST_IMPORT_INTERRUPTED);
+        } catch (Exception e) {
+            log.error("MasterListImportJobService::runJob: Job {} failed: {}", job.getJobId(), e.getMessage(), e);
+            job.setStatus(MasterListImportJob.Status.FAILED);
+            job.setError(String.format(Constants.MASTER_LIST_IMPORT_FAILED, e.getMessage()));
+        } finally {
+            uploadedFileReader.deleteSpoolFile(pendingImport.spoolFile());
+            job.setRowsProcessed(progress.getRowsProcessed());
+            publish(job);
+            List<PendingImport> waiting;
+            synchronized (pending) {
+                availableKib += pendingImport.reservation();
+                runningJobs--;
+                waiting = dispatch();
+            }
+            reportWaiting(waiting);
+        }
+        log.info("MasterListImportJobService::runJob: Job {} finished with status {} after {} rows",
+                job.getJobId(), job.getStatus(), job.getRowsProcessed());
+    }
+
+    private void publish(MasterListImportJob job) {
+        job.setUpdatedOn(System.currentTimeMillis());
+        try {
+            redisTemplate.opsForValue().set(Constants.MASTER_LIST_IMPORT_JOB + job.getJobId(),
+                    objectMapper.writeValueAsString(job), jobTtlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("MasterListImportJobService::publish: Unable to save status of job {}: {}", job.getJobId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Workbooks expand far more than text once parsed, the factors are configured per family.
+     */
+    private int estimateMemoryKib(long fileSize, UploadFormat format) {
+        int factor = format == UploadFormat.EXCEL ? excelExpansionFactor : textExpansionFactor;
+        long kib = (fileSize * factor + KIB - 1) / KIB;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, kib));
+    }
+
+    private int budgetKib() {
+        return (int) Math.min(Integer.MAX_VALUE, memoryBudgetMb * KIB);
+    }
+
+    private record PendingImport(MasterListImportJob job, Path spoolFile, int reservation, MasterListImportTask task,
+                                 MasterListImportProgress progress) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.igot.cb.customFields.masterlist;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Tracks the progress of a running import. Row counts are published every
+ * {@code reportInterval} rows rather than on each row, phase changes are published at once.
+ * Rows may be counted from several threads when the sheets of a workbook are read in parallel.
+ */
+public class MasterListImportProgress {
+
+    private final MasterListImportJob job;
+    private final Consumer<MasterListImportJob> publisher;
+    private final long reportInterval;
+    private final AtomicLong rowsProcessed = new AtomicLong();
+
+    MasterListImportProgress(MasterListImportJob job, Consumer<MasterListImportJob> publisher, long reportInterval) {
+        this.job = job;
+        this.publisher = publisher;
+        this.reportInterval = Math.max(1, reportInterval);
+    }
+
+    public void rowProcessed() {
+        long rows = rowsProcessed.incrementAndGet();
+        if (rows % reportInterval == 0) {
+            publish(rows);
+        }
+    }
+
+    private synchronized void publish(long rows) {
+        // A later count may already have been published by another thread
+        if (rows > job.getRowsProcessed()) {
+            job.setRowsProcessed(rows);
+            publisher.accept(job);
+        }
+    }
+
+    public synchronized void phase(MasterListImportJob.Phase phase) {
+        job.setRowsProcessed(rowsProcessed.get());
+        job.setPhase(phase);
+        publisher.accept(job);
+    }
+
+    /**
+     * @param changes the change summary of an update, reported with the final status
+     */
+    public void changes(Map<String, Object> changes) {
+        job.setChanges(changes);
+    }
+
+    long getRowsProcessed() {
+        return rowsProcessed.get();
+    }
+}
@@ -0,0 +1,18 @@
+package com.igot.cb.customFields.masterlist;
+
+import java.nio.file.Path;
+
+/**
+ * The parse and persist work of one master list import, run on an import worker thread.
+ */
+@FunctionalInterface
+public interface MasterListImportTask {
+
+    /**
+     * @param file     the spooled upload, removed once the task returns
+     * @param progress receives the rows read and the current phase
+     * @return the id of the custom field that was created or updated, comma separated when an
+     * import creates one master list per sheet
+     */
+    String run(Path file, MasterListImportProgress progress) throws Exception;
+}
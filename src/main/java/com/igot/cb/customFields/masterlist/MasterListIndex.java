@@ -0,0 +1,351 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.igot.cb.pores.util.Constants;
+
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory index over a master list hierarchy. Nodes are numbered in depth first order and
+ * stored in flat arrays: parent pointers, so the ancestors of any node are found in O(depth),
+ * and the children of each node in one shared array, so a level can be paged without touching
+ * the rest of the tree. The index takes O(nodes) space, where the materialized reversed data
+ * took O(leaves x depth).
+ * <p>
+ * All arrays and the strings, kept once each in a {@link MasterListStringTable}, live in direct
+ * buffers, so a hot master list costs the heap a few objects whatever its size. Strings are only
+ * decoded for the nodes a request returns.
+ */
+public final class MasterListIndex {
+
+    /**
+     * Node id of the virtual root, whose children are the first level nodes.
+     */
+    public static final int ROOT = -1;
+    public static final int NOT_FOUND = -2;
+
+    private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+
+    private final int size;
+    private final MasterListStringTable strings;
+    private final IntBuffer names;
+    private final IntBuffer values;
+    private final IntBuffer parents;
+    // Children of node i are childIds[childOffsets[i] .. childOffsets[i + 1]), the root uses slot size
+    private final IntBuffer childOffsets;
+    private final IntBuffer childIds;
+    // Nodes whose value is string s are valueNodes[valueOffsets[s] .. valueOffsets[s + 1])
+    private final IntBuffer valueOffsets;
+    private final IntBuffer valueNodes;
+    private volatile MasterListTypeahead typeahead;
+
+    private MasterListIndex(List<String> fieldNames, List<String> fieldValues, int[] parentIds) {
+        size = parentIds.length;
+        List<String> all = new ArrayList<>(fieldNames);
+        all.addAll(fieldValues);
+        strings = MasterListStringTable.of(all);
+
+        // Strings repeat across nodes, so each distinct one is looked up once
+        Map<String, Integer> ids = new HashMap<>();
+        int[] nameIds = new int[size];
+        int[] valueIds = new int[size];
+        for (int node = 0; node < size; node++) {
+            nameIds[node] = ids.computeIfAbsent(fieldNames.get(node), strings::find);
+            valueIds[node] = ids.computeIfAbsent(fieldValues.get(node), strings::find);
+        }
+        names = OffHeapBuffers.ints(nameIds);
+        values = OffHeapBuffers.ints(valueIds);
+        parents = OffHeapBuffers.ints(parentIds);
+
+        int[] offsets = new int[size + 2];
+        for (int parent : parentIds) {
+            offsets[slot(parent) + 1]++;
+        }
+        for (int i = 0; i <= size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] children = new int[size];
+        int[] filled = new int[size + 1];
+        // Ids are in depth first order, so each parent's children come out in tree order
+        for (int id = 0; id < size; id++) {
+            int slot = slot(parentIds[id]);
+            children[offsets[slot] + filled[slot]++] = id;
+        }
+        childOffsets = OffHeapBuffers.ints(offsets);
+        childIds = OffHeapBuffers.ints(children);
+
+        int[] byValueOffsets = new int[strings.size() + 1];
+        for (int valueId : valueIds) {
+            byValueOffsets[valueId + 1]++;
+        }
+        for (int i = 0; i < strings.size(); i++) {
+            byValueOffsets[i + 1] += byValueOffsets[i];
+        }
+        int[] byValue = new int[size];
+        int[] next = Arrays.copyOf(byValueOffsets, strings.size());
+        for (int id = 0; id < size; id++) {
+            byValue[next[valueIds[id]]++] = id;
+        }
+        valueOffsets = OffHeapBuffers.ints(byValueOffsets);
+        valueNodes = OffHeapBuffers.ints(byValue);
+    }
+
+    /**
+     * @param customFieldData the forward hierarchy, as stored under {@link Constants#CUSTOM_FIELD_DATA}
+     */
+    public static MasterListIndex of(JsonNode customFieldData) {
+        List<String> names = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        int[] parentIds = new int[64];
+
+        Deque<JsonNode> nodes = new ArrayDeque<>();
+        Deque<Integer> nodeParents = new ArrayDeque<>();
+        pushChildren(customFieldData, ROOT, nodes, nodeParents);
+        while (!nodes.isEmpty()) {
+            JsonNode node = nodes.pop();
+            int parent = nodeParents.pop();
+            int id = names.size();
+            names.add(node.path(Constants.FIELD_NAME).asText());
+            values.add(node.path(Constants.FIELD_VALUE).asText());
+            if (id == parentIds.length) {
+                parentIds = Arrays.copyOf(parentIds, id * 2);
+            }
+            parentIds[id] = parent;
+            pushChildren(node.get(Constants.FIELD_VALUES), id, nodes, nodeParents);
+        }
+        return new MasterListIndex(names, values, Arrays.copyOf(parentIds, names.size()));
+    }
+
+    private static void pushChildren(JsonNode children, int parent, Deque<JsonNode> nodes, Deque<Integer> nodeParents) {
+        if (children == null || !children.isArray()) {
+            return;
+        }
+        for (int i = children.size() - 1; i >= 0; i--) {
+            nodes.push(children.get(i));
+            nodeParents.push(parent);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the direct memory held by the index, in bytes, including the typeahead once built
+     */
+    public long memoryBytes() {
+        long bytes = strings.memoryBytes() + OffHeapBuffers.bytes(names) + OffHeapBuffers.bytes(values)
+                + OffHeapBuffers.bytes(parents) + OffHeapBuffers.bytes(childOffsets) + OffHeapBuffers.bytes(childIds)
+                + OffHeapBuffers.bytes(valueOffsets) + OffHeapBuffers.bytes(valueNodes);
+        MasterListTypeahead built = typeahead;
+        return built == null ? bytes : bytes + built.memoryBytes();
+    }
+
+    MasterListStringTable strings() {
+        return strings;
+    }
+
+    int nameId(int node) {
+        return names.get(node);
+    }
+
+    int valueId(int node) {
+        return values.get(node);
+    }
+
+    String fieldName(int node) {
+        return strings.get(names.get(node));
+    }
+
+    String fieldValue(int node) {
+        return strings.get(values.get(node));
+    }
+
+    /**
+     * @return the nodes whose value is the string, in node order
+     */
+    int[] nodesWithValue(int valueId) {
+        int from = valueOffsets.get(valueId);
+        int[] nodes = new int[valueOffsets.get(valueId + 1) - from];
+        valueNodes.get(from, nodes);
+        return nodes;
+    }
+
+    /**
+     * @return the values of the ancestors of the node, from the first level down
+     */
+    List<String> path(int node) {
+        List<String> path = new ArrayList<>();
+        for (int ancestor = parents.get(node); ancestor >= 0; ancestor = parents.get(ancestor)) {
+            path.add(fieldValue(ancestor));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    public boolean hasTypeahead() {
+        return typeahead != null;
+    }
+
+    /**
+     * The typeahead index is built on first use and lives as long as this index.
+     */
+    public MasterListTypeahead typeahead() {
+        MasterListTypeahead result = typeahead;
+        if (result == null) {
+            synchronized (this) {
+                result = typeahead;
+                if (result == null) {
+                    result = new MasterListTypeahead(this);
+                    typeahead = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private int slot(int node) {
+        return node == ROOT ? size : node;
+    }
+
+    /**
+     * @param path field values from the first level down
+     * @return the node at the path, {@link #ROOT} for an empty path or {@link #NOT_FOUND}
+     */
+    public int findNode(List<String> path) {
+        int node = ROOT;
+        for (String value : path) {
+            int valueId = strings.find(value);
+            if (valueId < 0) {
+                return NOT_FOUND;
+            }
+            int slot = slot(node);
+            int match = NOT_FOUND;
+            for (int i = childOffsets.get(slot); i < childOffsets.get(slot + 1); i++) {
+                if (values.get(childIds.get(i)) == valueId) {
+                    match = childIds.get(i);
+                    break;
+                }
+            }
+            if (match == NOT_FOUND) {
+                return NOT_FOUND;
+            }
+            node = match;
+        }
+        return node;
+    }
+
+    public int childCount(int node) {
+        int slot = slot(node);
+        return childOffsets.get(slot + 1) - childOffsets.get(slot);
+    }
+
+    /**
+     * @return up to {@code limit} children of the node starting at {@code offset}, in tree order
+     */
+    public List<Map<String, Object>> children(int node, int offset, int limit) {
+        int slot = slot(node);
+        int from = childOffsets.get(slot) + offset;
+        int to = Math.min(childOffsets.get(slot + 1), from + limit);
+        List<Map<String, Object>> children = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            int child = childIds.get(i);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(Constants.FIELD_NAME, fieldName(child));
+            entry.put(Constants.FIELD_VALUE, fieldValue(child));
+            entry.put(Constants.CHILD_COUNT, childCount(child));
+            children.add(entry);
+        }
+        return children;
+    }
+
+    /**
+     * Finds every node with the given value and returns its chain of ancestors.
+     *
+     * @param fieldValue the value of the node
+     * @param fieldName  restricts the match to one level, may be null
+     * @return one chain per matching node, each running from the node up to its first level
+     * ancestor, in hierarchy order
+     */
+    public List<List<Map<String, Object>>> ancestors(String fieldValue, String fieldName) {
+        List<List<Map<String, Object>>> chains = new ArrayList<>();
+        int valueId = strings.find(fieldValue);
+        int nameId = fieldName == null ? -1 : strings.find(fieldName);
+        if (valueId < 0 || (fieldName != null && nameId < 0)) {
+            return chains;
+        }
+        for (int id : nodesWithValue(valueId)) {
+            if (fieldName != null && names.get(id) != nameId) {
+                continue;
+            }
+            List<Map<String, Object>> chain = new ArrayList<>();
+            for (int node = id; node >= 0; node = parents.get(node)) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put(Constants.FIELD_NAME, fieldName(node));
+                entry.put(Constants.FIELD_VALUE, fieldValue(node));
+                chain.add(entry);
+            }
+            chains.add(chain);
+        }
+        return chains;
+    }
+
+    /**
+     * Produces the legacy reversed view: for every leaf, in hierarchy order, a chain from the
+     * leaf up to its first level ancestor where each node holds its parent as its only field value.
+     */
+    public ArrayNode toReversedOrderCustomFieldData() {
+        ArrayNode reversedOrderCustomFieldData = NODE_FACTORY.arrayNode();
+        int[] path = new int[16];
+        for (int leaf = 0; leaf < size; leaf++) {
+            if (childCount(leaf) > 0) {
+                continue;
+            }
+            int depth = 0;
+            for (int node = leaf; node >= 0; node = parents.get(node)) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth++] = node;
+            }
+            ObjectNode reversed = null;
+            for (int i = depth - 1; i >= 0; i--) {
+                ObjectNode current = toObjectNode(path[i]);
+                ArrayNode values = NODE_FACTORY.arrayNode(1);
+                if (reversed != null) {
+                    values.add(reversed);
+                }
+                current.set(Constants.FIELD_VALUES, values);
+                reversed = current;
+            }
+            reversedOrderCustomFieldData.add(reversed);
+        }
+        return reversedOrderCustomFieldData;
+    }
+
+    private ObjectNode toObjectNode(int node) {
+        ObjectNode objectNode = NODE_FACTORY.objectNode();
+        String fieldName = fieldName(node);
+        objectNode.put(Constants.FIELD_NAME, fieldName);
+        objectNode.put(Constants.FIELD_VALUE, fieldValue(node));
+        objectNode.put(Constants.FIELD_ATTRIBUTE, fieldName);
+        int parent = parents.get(node);
+        if (parent >= 0) {
+            objectNode.put(Constants.PARENT_FIELD_NAME, fieldName(parent));
+            objectNode.put(Constants.PARENT_FIELD_VALUE, fieldValue(parent));
+        }
+        return objectNode;
+    }
+}
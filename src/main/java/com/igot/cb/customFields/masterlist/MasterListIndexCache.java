@@ -0,0 +1,107 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Keeps recently used master list indexes in memory, bounded by the direct memory they hold.
+ * Entries are keyed by custom field id and version, so an update simply stops matching the old
+ * entry. An entry is weighed again once its typeahead is built, since that adds buffers of its
+ * own.
+ * <p>
+ * Direct buffers are only released when an evicted index is garbage collected, so the bound can
+ * be exceeded until the next collection. -XX:MaxDirectMemorySize has to leave room for the
+ * bound and the buffers still waiting for a collection on top of what the rest of the service
+ * uses; reaching the limit triggers a full collection before an OutOfMemoryError is raised.
+ */
+@Component
+public class MasterListIndexCache {
+
+    @Value("${masterList.index.cache.max.bytes}")
+    private long maxBytes;
+
+    private Cache<String, Entry> indexes;
+
+    /**
+     * The hierarchy of a custom field as read from its row, with the updatedOn time of that same
+     * row in millis.
+     *
+     * @param customFieldData the forward hierarchy, or null when the custom field holds none
+     */
+    public record Snapshot(long version, JsonNode customFieldData) {
+    }
+
+    /**
+     * An index with the version of the hierarchy it was built from. Custom fields holding no
+     * hierarchy are cached too, with a null index, so their row is not read on every request.
+     */
+    public record Entry(long version, MasterListIndex index) {
+    }
+
+    @PostConstruct
+    public void init() {
+        indexes = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                // An entry without an index only holds heap, weighed by its key so it still counts
+                .weigher((String key, Entry entry) -> entry.index() == null ? key.length()
+                        : (int) Math.min(Integer.MAX_VALUE, entry.index().memoryBytes()))
+                .build();
+    }
+
+    /**
+     * Returns the entry of the version, building it from a snapshot when there is none. The row
+     * may have been updated after the version was read, so the entry carries the version of the
+     * snapshot it was built from, and callers answer with that one. It is then cached under that
+     * version instead.
+     *
+     * @param version  the updatedOn time of the custom field in millis, which every write moves
+     *                 past the stored one
+     * @param snapshot reads the custom field row, or returns null when there is no active row
+     * @return the entry, or null when the custom field no longer exists
+     */
+    public Entry get(String customFieldId, long version, Supplier<Snapshot> snapshot) {
+        String key = key(customFieldId, version);
+        Entry entry = indexes.get(key, ignored -> {
+            Snapshot loaded = snapshot.get();
+            if (loaded == null) {
+                return null;
+            }
+            JsonNode tree = loaded.customFieldData();
+            return new Entry(loaded.version(), tree == null ? null : MasterListIndex.of(tree));
+        });
+        if (entry != null && entry.version() != version) {
+            indexes.asMap().putIfAbsent(key(customFieldId, entry.version()), entry);
+            indexes.invalidate(key);
+        }
+        return entry;
+    }
+
+    /**
+     * @return the cached entry of the version, or null when none has been built
+     */
+    public Entry getIfPresent(String customFieldId, long version) {
+        return indexes.getIfPresent(key(customFieldId, version));
+    }
+
+    /**
+     * Builds the typeahead of a cached index on first use and weighs the entry again.
+     */
+    public MasterListTypeahead typeahead(String customFieldId, Entry entry) {
+        boolean built = entry.index().hasTypeahead();
+        MasterListTypeahead typeahead = entry.index().typeahead();
+        if (!built) {
+            indexes.asMap().replace(key(customFieldId, entry.version()), entry, entry);
+        }
+        return typeahead;
+    }
+
+    private static String key(String customFieldId, long version) {
+        return customFieldId + "|" + version;
+    }
+}
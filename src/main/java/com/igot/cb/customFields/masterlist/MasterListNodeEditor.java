@@ -0,0 +1,249 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.igot.cb.pores.exceptions.CustomException;
+import com.igot.cb.pores.util.Constants;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies path addressed edits to a stored master list hierarchy in place. A path is the list of
+ * field values from the first level down. Only the nodes along the path and the direct children
+ * of the edited node are visited, the rest of the tree is left untouched. The hierarchy is
+ * reached through a {@link Tree}, so the same edits apply to a document or to the node tables.
+ */
+public final class MasterListNodeEditor {
+
+    public static final String ADD = "add";
+    public static final String REMOVE = "remove";
+    public static final String RENAME = "rename";
+
+    /**
+     * A hierarchy under edit, whose nodes are addressed by handles of type {@code N}.
+     */
+    public interface Tree<N> {
+
+        /**
+         * @return the handle of the parent of the first level nodes
+         */
+        N root();
+
+        /**
+         * @return the child of the node with this field value, or null when there is none
+         */
+        N child(N parent, String fieldValue);
+
+        /**
+         * @return the field name of the node's children, or null when it has none
+         */
+        String childFieldName(N parent);
+
+        /**
+         * Adds a node after the last child of the parent.
+         *
+         * @param level the level of the new node, 1 for the first level
+         */
+        void add(N parent, int level, String fieldName, String fieldValue);
+
+        /**
+         * Removes the node with everything under it.
+         */
+        void remove(N parent, N node);
+
+        void rename(N node, String fieldValue);
+    }
+
+    private MasterListNodeEditor() {
+    }
+
+    /**
+     * @param tree      the hierarchy stored under {@link Constants#CUSTOM_FIELD_DATA}
+     * @param operation an operation of the nodes patch request
+     * @param maxLevel  the maximum depth of the hierarchy
+     * @throws CustomException if the operation does not apply to the tree
+     */
+    public static void apply(ArrayNode tree, JsonNode operation, int maxLevel) {
+        apply(new JsonTree(tree), operation, maxLevel);
+    }
+
+    /**
+     * @see #apply(ArrayNode, JsonNode, int)
+     */
+    public static <N> void apply(Tree<N> tree, JsonNode operation, int maxLevel) {
+        String op = operation.path(Constants.OP).asText();
+        List<String> path = new ArrayList<>();
+        operation.path(Constants.PATH).forEach(value -> path.add(value.asText().trim()));
+        String fieldValue = operation.hasNonNull(Constants.FIELD_VALUE) ? operation.get(Constants.FIELD_VALUE).asText().trim() : null;
+
+        switch (op) {
+            case ADD:
+                add(tree, path, operation.hasNonNull(Constants.FIELD_NAME) ? operation.get(Constants.FIELD_NAME).asText() : null,
+                        requireValue(op, fieldValue), maxLevel);
+                break;
+            case REMOVE:
+                remove(tree, requirePath(op, path));
+                break;
+            case RENAME:
+                rename(tree, requirePath(op, path), requireValue(op, fieldValue));
+                break;
+            default:
+                throw new CustomException(Constants.FAILED, String.format(Constants.UNSUPPORTED_MASTER_LIST_OPERATION, op), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private static <N> void add(Tree<N> tree, List<String> parentPath, String fieldName, String fieldValue, int maxLevel) {
+        if (parentPath.size() >= maxLevel) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_PATH_TOO_DEEP, maxLevel), HttpStatus.BAD_REQUEST);
+        }
+        N parent = resolve(tree, parentPath, parentPath.size());
+        if (tree.child(parent, fieldValue) != null) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_DUPLICATE_VALUE, fieldValue, parentPath), HttpStatus.CONFLICT);
+        }
+
+        String siblingFieldName = tree.childFieldName(parent);
+        if (fieldName == null) {
+            if (siblingFieldName == null) {
+                throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_FIELD_NAME_REQUIRED, parentPath), HttpStatus.BAD_REQUEST);
+            }
+            fieldName = siblingFieldName;
+        } else if (siblingFieldName != null && !siblingFieldName.equals(fieldName)) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_FIELD_NAME_MISMATCH, fieldName, siblingFieldName, parentPath), HttpStatus.BAD_REQUEST);
+        }
+        tree.add(parent, parentPath.size() + 1, fieldName, fieldValue);
+    }
+
+    private static <N> void remove(Tree<N> tree, List<String> path) {
+        N parent = resolve(tree, path, path.size() - 1);
+        N node = tree.child(parent, path.get(path.size() - 1));
+        if (node == null) {
+            throw pathNotFound(path);
+        }
+        tree.remove(parent, node);
+    }
+
+    private static <N> void rename(Tree<N> tree, List<String> path, String fieldValue) {
+        N parent = resolve(tree, path, path.size() - 1);
+        N node = tree.child(parent, path.get(path.size() - 1));
+        if (node == null) {
+            throw pathNotFound(path);
+        }
+        N existing = tree.child(parent, fieldValue);
+        if (existing != null && !existing.equals(node)) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_DUPLICATE_VALUE, fieldValue, path.subList(0, path.size() - 1)), HttpStatus.CONFLICT);
+        }
+        tree.rename(node, fieldValue);
+    }
+
+    /**
+     * @return the node at the first {@code depth} values of the path
+     */
+    private static <N> N resolve(Tree<N> tree, List<String> path, int depth) {
+        N node = tree.root();
+        for (int i = 0; i < depth; i++) {
+            node = tree.child(node, path.get(i));
+            if (node == null) {
+                throw pathNotFound(path.subList(0, i + 1));
+            }
+        }
+        return node;
+    }
+
+    /**
+     * The hierarchy held as a document. Nodes are their objects; the root is a holder of the
+     * first level array.
+     */
+    private static class JsonTree implements Tree<ObjectNode> {
+        private final ObjectNode root = JsonNodeFactory.instance.objectNode();
+
+        private JsonTree(ArrayNode tree) {
+            root.set(Constants.FIELD_VALUES, tree);
+        }
+
+        @Override
+        public ObjectNode root() {
+            return root;
+        }
+
+        @Override
+        public ObjectNode child(ObjectNode parent, String fieldValue) {
+            ArrayNode siblings = children(parent);
+            int index = indexOf(siblings, fieldValue);
+            return index < 0 ? null : (ObjectNode) siblings.get(index);
+        }
+
+        @Override
+        public String childFieldName(ObjectNode parent) {
+            ArrayNode siblings = children(parent);
+            return siblings.isEmpty() ? null : siblings.get(siblings.size() - 1).path(Constants.FIELD_NAME).asText();
+        }
+
+        @Override
+        public void add(ObjectNode parent, int level, String fieldName, String fieldValue) {
+            ObjectNode node = children(parent).addObject();
+            node.put(Constants.FIELD_NAME, fieldName);
+            node.put(Constants.FIELD_VALUE, fieldValue);
+            node.put(Constants.FIELD_ATTRIBUTE, fieldName);
+            if (parent != root) {
+                node.set(Constants.PARENT_FIELD_NAME, parent.get(Constants.FIELD_NAME));
+                node.set(Constants.PARENT_FIELD_VALUE, parent.get(Constants.FIELD_VALUE));
+            }
+            node.putArray(Constants.FIELD_VALUES);
+        }
+
+        @Override
+        public void remove(ObjectNode parent, ObjectNode node) {
+            ArrayNode siblings = children(parent);
+            for (int i = 0; i < siblings.size(); i++) {
+                if (siblings.get(i) == node) {
+                    siblings.remove(i);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void rename(ObjectNode node, String fieldValue) {
+            node.put(Constants.FIELD_VALUE, fieldValue);
+            for (JsonNode child : children(node)) {
+                ((ObjectNode) child).put(Constants.PARENT_FIELD_VALUE, fieldValue);
+            }
+        }
+    }
+
+    private static ArrayNode children(ObjectNode node) {
+        JsonNode children = node.get(Constants.FIELD_VALUES);
+        return children instanceof ArrayNode ? (ArrayNode) children : node.putArray(Constants.FIELD_VALUES);
+    }
+
+    private static int indexOf(ArrayNode siblings, String fieldValue) {
+        for (int i = 0; i < siblings.size(); i++) {
+            if (fieldValue.equals(siblings.get(i).path(Constants.FIELD_VALUE).asText())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<String> requirePath(String op, List<String> path) {
+        if (path.isEmpty()) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_PATH_REQUIRED, op), HttpStatus.BAD_REQUEST);
+        }
+        return path;
+    }
+
+    private static String requireValue(String op, String fieldValue) {
+        if (fieldValue == null || fieldValue.isEmpty()) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_FIELD_VALUE_REQUIRED, op), HttpStatus.BAD_REQUEST);
+        }
+        return fieldValue;
+    }
+
+    private static CustomException pathNotFound(List<String> path) {
+        return new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_PATH_NOT_FOUND, path), HttpStatus.NOT_FOUND);
+    }
+}
@@ -0,0 +1,134 @@
+package com.igot.cb.customFields.masterlist;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Distinct strings stored off heap as UTF-8, sorted by their bytes. A string is identified by
+ * its position in that order, so ids compare like the strings and lookups are binary searches
+ * over the bytes, without decoding. Since UTF-8 preserves prefixes, all strings with a given
+ * prefix have consecutive ids.
+ */
+final class MasterListStringTable {
+
+    private final int count;
+    private final ByteBuffer bytes;
+    private final IntBuffer offsets;
+
+    private MasterListStringTable(byte[][] sorted) {
+        count = sorted.length;
+        int[] starts = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            starts[i + 1] = starts[i] + sorted[i].length;
+        }
+        bytes = ByteBuffer.allocateDirect(Math.max(1, starts[count]));
+        for (byte[] value : sorted) {
+            bytes.put(value);
+        }
+        offsets = OffHeapBuffers.ints(starts);
+    }
+
+    /**
+     * @param strings the strings to store, duplicates are allowed
+     */
+    static MasterListStringTable of(Collection<String> strings) {
+        byte[][] encoded = strings.stream().distinct().map(MasterListStringTable::encode).toArray(byte[][]::new);
+        Arrays.sort(encoded, Arrays::compareUnsigned);
+        return new MasterListStringTable(encoded);
+    }
+
+    static byte[] encode(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return the direct memory held by the table, in bytes
+     */
+    long memoryBytes() {
+        return bytes.capacity() + OffHeapBuffers.bytes(offsets);
+    }
+
+    String get(int id) {
+        int start = offsets.get(id);
+        byte[] value = new byte[offsets.get(id + 1) - start];
+        bytes.get(start, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the id of the string, or -1 when it is not in the table
+     */
+    int find(byte[] key) {
+        int id = lowerBound(key);
+        return id < count && compare(id, key) == 0 ? id : -1;
+    }
+
+    int find(String value) {
+        return find(encode(value));
+    }
+
+    /**
+     * @return the id of the first string not less than the key, or {@link #size()}
+     */
+    int lowerBound(byte[] key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compare(int id, byte[] key) {
+        int start = offsets.get(id);
+        int length = offsets.get(id + 1) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = Byte.toUnsignedInt(bytes.get(start + i)) - Byte.toUnsignedInt(key[i]);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    boolean startsWith(int id, byte[] prefix) {
+        int start = offsets.get(id);
+        if (offsets.get(id + 1) - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean contains(int id, byte[] infix) {
+        int start = offsets.get(id);
+        int last = offsets.get(id + 1) - infix.length;
+        for (int from = start; from <= last; from++) {
+            int i = 0;
+            while (i < infix.length && bytes.get(from + i) == infix[i]) {
+                i++;
+            }
+            if (i == infix.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,240 @@
+package com.igot.cb.customFields.masterlist;
+
+import com.igot.cb.pores.util.Constants;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Typeahead lookups over the values of a master list. Values are lower cased into a sorted
+ * {@link MasterListStringTable}, so prefix matches are a binary search followed by a walk over
+ * consecutive entries. Infix matches come from trigram postings: the candidates are the values
+ * holding the rarest trigram of the query, each checked against the whole query, so a lookup
+ * never scans the full list of values. Like the index, everything lives in direct buffers.
+ */
+public final class MasterListTypeahead {
+
+    /**
+     * Queries shorter than this only match as a prefix.
+     */
+    public static final int GRAM_LENGTH = 3;
+
+    private final MasterListIndex index;
+    private final MasterListStringTable normalizedValues;
+    // Nodes whose lower cased value is entry v are nodes[nodeOffsets[v] .. nodeOffsets[v + 1])
+    private final IntBuffer nodeOffsets;
+    private final IntBuffer nodes;
+    // Entries holding trigram grams[g] are postings[postingOffsets[g] .. postingOffsets[g + 1])
+    private final LongBuffer grams;
+    private final IntBuffer postingOffsets;
+    private final IntBuffer postings;
+    private final int gramCount;
+
+    MasterListTypeahead(MasterListIndex index) {
+        this.index = index;
+        MasterListStringTable strings = index.strings();
+        int size = index.size();
+
+        // Lower case each distinct value once and map every node to its normalized entry
+        Map<Integer, String> normalizedById = new HashMap<>();
+        for (int node = 0; node < size; node++) {
+            normalizedById.computeIfAbsent(index.valueId(node), valueId -> normalize(strings.get(valueId)));
+        }
+        normalizedValues = MasterListStringTable.of(normalizedById.values());
+        Map<Integer, Integer> entryById = new HashMap<>(normalizedById.size() * 4 / 3 + 1);
+        normalizedById.forEach((valueId, normalized) -> entryById.put(valueId, normalizedValues.find(normalized)));
+
+        int entries = normalizedValues.size();
+        int[] entryOfNode = new int[size];
+        int[] offsets = new int[entries + 1];
+        for (int node = 0; node < size; node++) {
+            entryOfNode[node] = entryById.get(index.valueId(node));
+            offsets[entryOfNode[node] + 1]++;
+        }
+        for (int i = 0; i < entries; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] byEntry = new int[size];
+        int[] next = Arrays.copyOf(offsets, entries);
+        for (int node = 0; node < size; node++) {
+            byEntry[next[entryOfNode[node]]++] = node;
+        }
+        nodeOffsets = OffHeapBuffers.ints(offsets);
+        nodes = OffHeapBuffers.ints(byEntry);
+
+        // Pairs of (trigram, entry) sorted by trigram then entry, deduplicated
+        long[][] pairs = new long[entries][];
+        int pairCount = 0;
+        for (int entry = 0; entry < entries; entry++) {
+            pairs[entry] = distinctGrams(normalizedValues.get(entry));
+            pairCount += pairs[entry].length;
+        }
+        long[] gramOfPair = new long[pairCount];
+        int[] entryOfPair = new int[pairCount];
+        Integer[] order = new Integer[pairCount];
+        int p = 0;
+        for (int entry = 0; entry < entries; entry++) {
+            for (long gram : pairs[entry]) {
+                gramOfPair[p] = gram;
+                entryOfPair[p] = entry;
+                order[p] = p;
+                p++;
+            }
+        }
+        // Stable, so the entries of each trigram stay sorted
+        Arrays.sort(order, (a, b) -> Long.compare(gramOfPair[a], gramOfPair[b]));
+        long[] distinct = new long[pairCount];
+        int[] starts = new int[pairCount + 1];
+        int[] postingEntries = new int[pairCount];
+        int count = 0;
+        for (int i = 0; i < pairCount; i++) {
+            long gram = gramOfPair[order[i]];
+            if (count == 0 || distinct[count - 1] != gram) {
+                distinct[count] = gram;
+                starts[count++] = i;
+            }
+            postingEntries[i] = entryOfPair[order[i]];
+        }
+        starts[count] = pairCount;
+        gramCount = count;
+        grams = OffHeapBuffers.longs(Arrays.copyOf(distinct, count));
+        postingOffsets = OffHeapBuffers.ints(starts, count + 1);
+        postings = OffHeapBuffers.ints(postingEntries);
+    }
+
+    /**
+     * @return the direct memory held by the typeahead, in bytes
+     */
+    long memoryBytes() {
+        return normalizedValues.memoryBytes() + OffHeapBuffers.bytes(nodeOffsets) + OffHeapBuffers.bytes(nodes)
+                + OffHeapBuffers.bytes(grams) + OffHeapBuffers.bytes(postingOffsets) + OffHeapBuffers.bytes(postings);
+    }
+
+    /**
+     * @return the trigrams of the value packed into longs, sorted and without duplicates
+     */
+    private static long[] distinctGrams(String value) {
+        int count = Math.max(0, value.length() - GRAM_LENGTH + 1);
+        long[] grams = new long[count];
+        for (int i = 0; i < count; i++) {
+            grams[i] = gram(value, i);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || grams[distinct - 1] != grams[i]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static long gram(String value, int start) {
+        return ((long) value.charAt(start) << 32) | ((long) value.charAt(start + 1) << 16) | value.charAt(start + 2);
+    }
+
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Finds values starting with the query, then values containing it, ignoring case.
+     *
+     * @param query     the text typed so far
+     * @param fieldName restricts the matches to one level, may be null
+     * @param limit     the maximum number of suggestions
+     * @return the matching nodes with the path of values leading to them
+     */
+    public List<Map<String, Object>> suggest(String query, String fieldName, int limit) {
+        String normalizedQuery = normalize(query);
+        List<Map<String, Object>> suggestions = new ArrayList<>();
+        int nameId = fieldName == null ? -1 : index.strings().find(fieldName);
+        if (normalizedQuery.isEmpty() || limit <= 0 || (fieldName != null && nameId < 0)) {
+            return suggestions;
+        }
+        byte[] key = MasterListStringTable.encode(normalizedQuery);
+
+        for (int entry = normalizedValues.lowerBound(key); entry < normalizedValues.size()
+                && suggestions.size() < limit && normalizedValues.startsWith(entry, key); entry++) {
+            addSuggestions(entry, nameId, limit, suggestions);
+        }
+        if (suggestions.size() >= limit || normalizedQuery.length() < GRAM_LENGTH) {
+            return suggestions;
+        }
+
+        int gram = rarestGram(normalizedQuery);
+        if (gram < 0) {
+            return suggestions;
+        }
+        for (int i = postingOffsets.get(gram); i < postingOffsets.get(gram + 1) && suggestions.size() < limit; i++) {
+            int entry = postings.get(i);
+            // Prefix matches were added above
+            if (!normalizedValues.startsWith(entry, key) && normalizedValues.contains(entry, key)) {
+                addSuggestions(entry, nameId, limit, suggestions);
+            }
+        }
+        return suggestions;
+    }
+
+    private void addSuggestions(int entry, int nameId, int limit, List<Map<String, Object>> suggestions) {
+        for (int i = nodeOffsets.get(entry); i < nodeOffsets.get(entry + 1) && suggestions.size() < limit; i++) {
+            int node = nodes.get(i);
+            if (nameId < 0 || index.nameId(node) == nameId) {
+                suggestions.add(toSuggestion(node));
+            }
+        }
+    }
+
+    /**
+     * @return the position of the query trigram with the fewest postings, or -1 when one of its
+     * trigrams occurs nowhere, in which case nothing contains the query
+     */
+    private int rarestGram(String query) {
+        int rarest = -1;
+        int rarestCount = Integer.MAX_VALUE;
+        for (long gram : distinctGrams(query)) {
+            int position = findGram(gram);
+            if (position < 0) {
+                return -1;
+            }
+            int count = postingOffsets.get(position + 1) - postingOffsets.get(position);
+            if (count < rarestCount) {
+                rarest = position;
+                rarestCount = count;
+            }
+        }
+        return rarest;
+    }
+
+    private int findGram(long gram) {
+        int low = 0;
+        int high = gramCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = grams.get(mid);
+            if (value < gram) {
+                low = mid + 1;
+            } else if (value > gram) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private Map<String, Object> toSuggestion(int node) {
+        Map<String, Object> suggestion = new LinkedHashMap<>();
+        suggestion.put(Constants.FIELD_NAME, index.fieldName(node));
+        suggestion.put(Constants.FIELD_VALUE, index.fieldValue(node));
+        suggestion.put(Constants.PATH, index.path(node));
+        return suggestion;
+    }
+}
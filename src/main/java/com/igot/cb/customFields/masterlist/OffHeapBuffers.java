@@ -0,0 +1,46 @@
+package com.igot.cb.customFields.masterlist;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Copies build time arrays into direct buffers, which live outside the Java heap and are
+ * released when the buffer is collected. Only absolute reads are used on the copies, so they
+ * can be shared between threads.
+ */
+final class OffHeapBuffers {
+
+    private OffHeapBuffers() {
+    }
+
+    static IntBuffer ints(int[] values, int length) {
+        IntBuffer buffer = ByteBuffer.allocateDirect(Math.max(1, length) * Integer.BYTES)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        buffer.put(values, 0, length);
+        return buffer;
+    }
+
+    static IntBuffer ints(int[] values) {
+        return ints(values, values.length);
+    }
+
+    /**
+     * @return the direct memory held by the buffer, in bytes
+     */
+    static long bytes(IntBuffer buffer) {
+        return (long) buffer.capacity() * Integer.BYTES;
+    }
+
+    static long bytes(LongBuffer buffer) {
+        return (long) buffer.capacity() * Long.BYTES;
+    }
+
+    static LongBuffer longs(long[] values) {
+        LongBuffer buffer = ByteBuffer.allocateDirect(Math.max(1, values.length) * Long.BYTES)
+                .order(ByteOrder.nativeOrder()).asLongBuffer();
+        buffer.put(values);
+        return buffer;
+    }
+}
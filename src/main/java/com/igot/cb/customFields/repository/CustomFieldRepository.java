@@ -1,12 +1,37 @@
 package com.igot.cb.customFields.repository;
 
 import com.igot.cb.customFields.entity.CustomFieldEntity;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
 import java.util.Optional;
 
 @Repository
 public interface CustomFieldRepository extends JpaRepository<CustomFieldEntity, String> {
     Optional<CustomFieldEntity> findByCustomFiledIdAndIsActiveTrue(String customFiledId);
+
+    /**
+     * Loads the active custom field and locks its row until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CustomFieldEntity c WHERE c.customFiledId = :customFiledId AND c.isActive = true")
+    Optional<CustomFieldEntity> findActiveForUpdate(@Param("customFiledId") String customFiledId);
+
+    /**
+     * Reads only the updatedOn time of the active custom field, without loading its data.
+     */
+    @Query("SELECT c.updatedOn FROM CustomFieldEntity c WHERE c.customFiledId = :customFiledId AND c.isActive = true")
+    Optional<Timestamp> findActiveUpdatedOn(@Param("customFiledId") String customFiledId);
+
+    /**
+     * Locks the custom field row until the transaction ends and reads its updatedOn time,
+     * without loading its data.
+     */
+    @Query(value = "SELECT updated_on FROM custom_fields WHERE custom_filed_id = :customFiledId FOR UPDATE", nativeQuery = true)
+    Optional<Timestamp> lockUpdatedOn(@Param("customFiledId") String customFiledId);
 }
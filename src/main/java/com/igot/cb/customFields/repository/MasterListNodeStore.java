@@ -0,0 +1,433 @@
+package com.igot.cb.customFields.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.igot.cb.customFields.entity.MasterListNodeEntity;
+import com.igot.cb.customFields.entity.MasterListValueEntity;
+import com.igot.cb.customFields.masterlist.MasterListDiff;
+import com.igot.cb.customFields.masterlist.MasterListIndex;
+import com.igot.cb.customFields.masterlist.MasterListNodeEditor;
+import com.igot.cb.pores.util.Constants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores master list hierarchies in the node layout, as rows of {@link MasterListNodeEntity}
+ * and {@link MasterListValueEntity}, so that the custom field row itself only carries the
+ * metadata. Rows are written with JDBC batches and must be written in the transaction that
+ * saves the custom field.
+ * <p>
+ * Saving compares the hierarchy with the stored rows and only writes the rows that differ.
+ * Children are read a page at a time through the (custom_field_id, parent_id, ordinal) index,
+ * and {@link #editor} edits single nodes without reading the rest of the hierarchy.
+ */
+@Repository
+public class MasterListNodeStore {
+
+    /**
+     * Value of {@link Constants#STORAGE_LAYOUT} for custom fields whose hierarchy is stored here.
+     */
+    public static final String NODES_LAYOUT = "nodes";
+
+    private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+
+    private static final String INSERT_VALUE =
+            "INSERT INTO master_list_values (custom_field_id, value_id, value) VALUES (?, ?, ?)";
+    private static final String DELETE_VALUE =
+            "DELETE FROM master_list_values WHERE custom_field_id = ? AND value_id = ?";
+    private static final String INSERT_NODE =
+            "INSERT INTO master_list_nodes (custom_field_id, node_id, parent_id, level, ordinal, name_id, value_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_NODE =
+            "UPDATE master_list_nodes SET ordinal = ?, name_id = ?, value_id = ? WHERE custom_field_id = ? AND node_id = ?";
+    private static final String DELETE_NODE =
+            "DELETE FROM master_list_nodes WHERE custom_field_id = ? AND node_id = ?";
+    private static final String SELECT_VALUES =
+            "SELECT value_id, value FROM master_list_values WHERE custom_field_id = ?";
+    // In index order, which puts every node after its parent, see MasterListNodeEntity
+    private static final String SELECT_NODES =
+            "SELECT node_id, parent_id, ordinal, name_id, value_id FROM master_list_nodes"
+                    + " WHERE custom_field_id = ? ORDER BY parent_id, ordinal";
+    private static final String SELECT_CHILD =
+            "SELECT n.node_id FROM master_list_nodes n JOIN master_list_values v"
+                    + " ON v.custom_field_id = n.custom_field_id AND v.value_id = n.value_id"
+                    + " WHERE n.custom_field_id = ? AND n.parent_id = ? AND v.value = ? ORDER BY n.ordinal LIMIT 1";
+    private static final String SELECT_CHILD_FIELD_NAME =
+            "SELECT v.value FROM master_list_nodes n JOIN master_list_values v"
+                    + " ON v.custom_field_id = n.custom_field_id AND v.value_id = n.name_id"
+                    + " WHERE n.custom_field_id = ? AND n.parent_id = ? ORDER BY n.ordinal DESC LIMIT 1";
+    private static final String SELECT_VALUE_ID =
+            "SELECT value_id FROM master_list_values WHERE custom_field_id = ? AND value = ?";
+    private static final String NEXT_VALUE_ID =
+            "SELECT COALESCE(MAX(value_id), -1) + 1 FROM master_list_values WHERE custom_field_id = ?";
+    private static final String NEXT_NODE_ID =
+            "SELECT COALESCE(MAX(node_id), -1) + 1 FROM master_list_nodes WHERE custom_field_id = ?";
+    private static final String SELECT_ORDINAL =
+            "SELECT ordinal FROM master_list_nodes WHERE custom_field_id = ? AND node_id = ?";
+    private static final String DELETE_SUBTREE =
+            "WITH RECURSIVE subtree (node_id) AS ("
+                    + " SELECT node_id FROM master_list_nodes WHERE custom_field_id = ? AND node_id = ?"
+                    + " UNION ALL SELECT n.node_id FROM master_list_nodes n JOIN subtree s"
+                    + " ON n.custom_field_id = ? AND n.parent_id = s.node_id)"
+                    + " DELETE FROM master_list_nodes WHERE custom_field_id = ? AND node_id IN (SELECT node_id FROM subtree)";
+    private static final String SHIFT_ORDINALS =
+            "UPDATE master_list_nodes SET ordinal = ordinal - 1 WHERE custom_field_id = ? AND parent_id = ? AND ordinal > ?";
+    private static final String RENAME_NODE =
+            "UPDATE master_list_nodes SET value_id = ? WHERE custom_field_id = ? AND node_id = ?";
+    private static final String COUNT_CHILDREN =
+            "SELECT COUNT(*) FROM master_list_nodes WHERE custom_field_id = ? AND parent_id = ?";
+    private static final String SELECT_CHILDREN =
+            "SELECT name.value, val.value, (SELECT COUNT(*) FROM master_list_nodes c"
+                    + " WHERE c.custom_field_id = n.custom_field_id AND c.parent_id = n.node_id)"
+                    + " FROM master_list_nodes n"
+                    + " JOIN master_list_values name ON name.custom_field_id = n.custom_field_id AND name.value_id = n.name_id"
+                    + " JOIN master_list_values val ON val.custom_field_id = n.custom_field_id AND val.value_id = n.value_id"
+                    + " WHERE n.custom_field_id = ? AND n.parent_id = ? AND n.ordinal >= ? ORDER BY n.ordinal LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${masterList.node.store.batch.size}")
+    private int batchSize;
+
+    /**
+     * Replaces the stored hierarchy of the custom field. Each node is matched to a stored child
+     * of its parent with the same name and value, or failing that to the one left at its
+     * position, as {@link MasterListDiff} matches them, so each rename it reports touches one
+     * row. Matched nodes keep their id and are only updated when they moved or were renamed;
+     * new nodes are inserted and stored nodes left unmatched are deleted with everything under
+     * them. The stored rows are read once to compare them.
+     *
+     * @param hierarchy the forward hierarchy, as built for {@link Constants#CUSTOM_FIELD_DATA}
+     */
+    public void save(String customFieldId, JsonNode hierarchy) {
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] nextValueId = {0};
+        jdbcTemplate.query(SELECT_VALUES, rs -> {
+            dictionary.put(rs.getString(2), rs.getInt(1));
+            nextValueId[0] = Math.max(nextValueId[0], rs.getInt(1) + 1);
+        }, customFieldId);
+        int storedValues = dictionary.size();
+        // Stored children of each parent in ordinal order, as {nodeId, ordinal, nameId, valueId}
+        Map<Integer, List<int[]>> storedChildren = new HashMap<>();
+        int[] storedCount = {0};
+        int[] nextNodeId = {0};
+        jdbcTemplate.query(SELECT_NODES, rs -> {
+            int nodeId = rs.getInt(1);
+            storedChildren.computeIfAbsent(rs.getInt(2), parentId -> new ArrayList<>())
+                    .add(new int[]{nodeId, rs.getInt(3), rs.getInt(4), rs.getInt(5)});
+            storedCount[0]++;
+            nextNodeId[0] = Math.max(nextNodeId[0], nodeId + 1);
+        }, customFieldId);
+
+        List<Object[]> valueInserts = new ArrayList<>();
+        List<int[]> nodeInserts = new ArrayList<>();
+        List<int[]> nodeUpdates = new ArrayList<>();
+        List<Integer> nodeDeletes = new ArrayList<>();
+        BitSet usedValues = new BitSet();
+        // Entries are {parentId, level} of the children on top of the children stack
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        Deque<int[]> parents = new ArrayDeque<>();
+        pending.push(hierarchy);
+        parents.push(new int[]{MasterListIndex.ROOT, 1});
+        while (!pending.isEmpty()) {
+            JsonNode children = pending.pop();
+            int[] parent = parents.pop();
+            int count = children != null && children.isArray() ? children.size() : 0;
+            int[] nameIds = new int[count];
+            int[] valueIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                nameIds[i] = valueId(dictionary, children.get(i).path(Constants.FIELD_NAME).asText(), nextValueId, valueInserts);
+                valueIds[i] = valueId(dictionary, children.get(i).path(Constants.FIELD_VALUE).asText(), nextValueId, valueInserts);
+                usedValues.set(nameIds[i]);
+                usedValues.set(valueIds[i]);
+            }
+            int[][] matched = matchChildren(storedChildren.remove(parent[0]), nameIds, valueIds, nodeDeletes);
+            int[] nodeIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                if (matched[i] == null) {
+                    nodeIds[i] = nextNodeId[0]++;
+                    nodeInserts.add(new int[]{nodeIds[i], parent[0], parent[1], i, nameIds[i], valueIds[i]});
+                } else {
+                    nodeIds[i] = matched[i][0];
+                    if (matched[i][1] != i || matched[i][2] != nameIds[i] || matched[i][3] != valueIds[i]) {
+                        nodeUpdates.add(new int[]{i, nameIds[i], valueIds[i], nodeIds[i]});
+                    }
+                }
+            }
+            for (int i = count - 1; i >= 0; i--) {
+                pending.push(children.get(i).path(Constants.FIELD_VALUES));
+                parents.push(new int[]{nodeIds[i], parent[1] + 1});
+            }
+        }
+        // Children of the deleted nodes were never visited
+        storedChildren.values().forEach(rows -> rows.forEach(row -> nodeDeletes.add(row[0])));
+        List<Integer> valueDeletes = new ArrayList<>();
+        dictionary.values().forEach(valueId -> {
+            if (!usedValues.get(valueId)) {
+                valueDeletes.add(valueId);
+            }
+        });
+
+        if (storedCount[0] > 0 && nodeDeletes.size() == storedCount[0]) {
+            jdbcTemplate.update("DELETE FROM master_list_nodes WHERE custom_field_id = ?", customFieldId);
+        } else {
+            jdbcTemplate.batchUpdate(DELETE_NODE, nodeDeletes, batchSize, (ps, nodeId) -> {
+                ps.setString(1, customFieldId);
+                ps.setInt(2, nodeId);
+            });
+        }
+        if (storedValues > 0 && valueDeletes.size() == storedValues) {
+            jdbcTemplate.update("DELETE FROM master_list_values WHERE custom_field_id = ?", customFieldId);
+        } else {
+            jdbcTemplate.batchUpdate(DELETE_VALUE, valueDeletes, batchSize, (ps, valueId) -> {
+                ps.setString(1, customFieldId);
+                ps.setInt(2, valueId);
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_VALUE, valueInserts, batchSize, (ps, row) -> {
+            ps.setString(1, customFieldId);
+            ps.setInt(2, (Integer) row[0]);
+            ps.setString(3, (String) row[1]);
+        });
+        jdbcTemplate.batchUpdate(UPDATE_NODE, nodeUpdates, batchSize, (ps, row) -> {
+            ps.setInt(1, row[0]);
+            ps.setInt(2, row[1]);
+            ps.setInt(3, row[2]);
+            ps.setString(4, customFieldId);
+            ps.setInt(5, row[3]);
+        });
+        jdbcTemplate.batchUpdate(INSERT_NODE, nodeInserts, batchSize, (ps, row) -> {
+            ps.setString(1, customFieldId);
+            ps.setInt(2, row[0]);
+            ps.setInt(3, row[1]);
+            ps.setInt(4, row[2]);
+            ps.setInt(5, row[3]);
+            ps.setInt(6, row[4]);
+            ps.setInt(7, row[5]);
+        });
+    }
+
+    /**
+     * @return the dictionary id of the string, adding it to the inserts when it is not stored yet
+     */
+    private static int valueId(Map<String, Integer> dictionary, String value, int[] nextValueId, List<Object[]> valueInserts) {
+        return dictionary.computeIfAbsent(value, added -> {
+            int valueId = nextValueId[0]++;
+            valueInserts.add(new Object[]{valueId, added});
+            return valueId;
+        });
+    }
+
+    /**
+     * Pairs the children of a parent with its stored children as {@link MasterListDiff} does,
+     * by name and value, then by position among the stored children left. Stored children left
+     * over are added to the deletes.
+     *
+     * @param stored the stored children in ordinal order, may be null
+     * @return the stored row of each child, or null for a new node
+     */
+    private static int[][] matchChildren(List<int[]> stored, int[] nameIds, int[] valueIds, List<Integer> nodeDeletes) {
+        int[][] matched = new int[valueIds.length][];
+        if (stored == null) {
+            return matched;
+        }
+        int[] storedIndexes = MasterListDiff.matchChildren(stored.size(), valueIds.length,
+                s -> key(stored.get(s)[2], stored.get(s)[3]), i -> key(nameIds[i], valueIds[i]));
+        boolean[] taken = new boolean[stored.size()];
+        for (int i = 0; i < valueIds.length; i++) {
+            if (storedIndexes[i] >= 0) {
+                matched[i] = stored.get(storedIndexes[i]);
+                taken[storedIndexes[i]] = true;
+            }
+        }
+        for (int s = 0; s < stored.size(); s++) {
+            if (!taken[s]) {
+                nodeDeletes.add(stored.get(s)[0]);
+            }
+        }
+        return matched;
+    }
+
+    private static long key(int nameId, int valueId) {
+        return (long) nameId << 32 | valueId & 0xffffffffL;
+    }
+
+    /**
+     * Assembles the stored hierarchy in the shape built for {@link Constants#CUSTOM_FIELD_DATA}.
+     *
+     * @return the hierarchy, empty when nothing is stored for the custom field
+     */
+    public ArrayNode load(String customFieldId) {
+        Map<Integer, TextNode> values = new HashMap<>();
+        jdbcTemplate.query(SELECT_VALUES, rs -> {
+            values.put(rs.getInt(1), NODE_FACTORY.textNode(rs.getString(2)));
+        }, customFieldId);
+
+        ArrayNode hierarchy = NODE_FACTORY.arrayNode();
+        Map<Integer, ObjectNode> nodes = new HashMap<>();
+        jdbcTemplate.query(SELECT_NODES, rs -> {
+            int parentId = rs.getInt(2);
+            TextNode fieldName = values.get(rs.getInt(4));
+            ObjectNode node = NODE_FACTORY.objectNode();
+            node.set(Constants.FIELD_NAME, fieldName);
+            node.set(Constants.FIELD_VALUE, values.get(rs.getInt(5)));
+            node.set(Constants.FIELD_ATTRIBUTE, fieldName);
+            if (parentId < 0) {
+                hierarchy.add(node);
+            } else {
+                ObjectNode parent = nodes.get(parentId);
+                node.set(Constants.PARENT_FIELD_NAME, parent.get(Constants.FIELD_NAME));
+                node.set(Constants.PARENT_FIELD_VALUE, parent.get(Constants.FIELD_VALUE));
+                ((ArrayNode) parent.get(Constants.FIELD_VALUES)).add(node);
+            }
+            node.putArray(Constants.FIELD_VALUES);
+            nodes.put(rs.getInt(1), node);
+        }, customFieldId);
+        return hierarchy;
+    }
+
+    /**
+     * @return whether a hierarchy is stored for the custom field in this layout
+     */
+    public boolean hasNodes(String customFieldId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM master_list_nodes WHERE custom_field_id = ?)", Boolean.class, customFieldId));
+    }
+
+    /**
+     * Follows the path down from the first level, one indexed lookup per level.
+     *
+     * @param path field values from the first level down, empty for the first level itself
+     * @return the node id, {@link MasterListIndex#ROOT} for an empty path, or
+     * {@link MasterListIndex#NOT_FOUND}
+     */
+    public int findNode(String customFieldId, List<String> path) {
+        int node = MasterListIndex.ROOT;
+        for (String value : path) {
+            List<Integer> match = jdbcTemplate.queryForList(SELECT_CHILD, Integer.class, customFieldId, node, value);
+            if (match.isEmpty()) {
+                return MasterListIndex.NOT_FOUND;
+            }
+            node = match.get(0);
+        }
+        return node;
+    }
+
+    public int childCount(String customFieldId, int node) {
+        Integer count = jdbcTemplate.queryForObject(COUNT_CHILDREN, Integer.class, customFieldId, node);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Reads one page of children in the shape of {@link MasterListIndex#children}. Ordinals run
+     * from 0 without gaps, so the offset is looked up in the index rather than skipped over.
+     *
+     * @return up to {@code limit} children of the node starting at {@code offset}, in tree order
+     */
+    public List<Map<String, Object>> children(String customFieldId, int node, int offset, int limit) {
+        return jdbcTemplate.query(SELECT_CHILDREN, (rs, rowNum) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(Constants.FIELD_NAME, rs.getString(1));
+            entry.put(Constants.FIELD_VALUE, rs.getString(2));
+            entry.put(Constants.CHILD_COUNT, rs.getInt(3));
+            return entry;
+        }, customFieldId, node, offset, limit);
+    }
+
+    /**
+     * Returns the stored hierarchy as a tree for {@link MasterListNodeEditor}, whose edits are
+     * written at once, a few indexed statements each: an add inserts one row, a rename updates
+     * one and a remove deletes the subtree and closes the gap it leaves in the ordinals. Values
+     * no longer used are left in the dictionary until the next {@link #save}. Must be used in
+     * the transaction that holds the lock on the custom field row.
+     */
+    public MasterListNodeEditor.Tree<Integer> editor(String customFieldId) {
+        return new NodeTree(customFieldId);
+    }
+
+    private class NodeTree implements MasterListNodeEditor.Tree<Integer> {
+        private final String customFieldId;
+        // Read on the first add, then counted here, as the row lock keeps other writers out
+        private int nextNodeId = -1;
+        private int nextValueId = -1;
+
+        private NodeTree(String customFieldId) {
+            this.customFieldId = customFieldId;
+        }
+
+        @Override
+        public Integer root() {
+            return MasterListIndex.ROOT;
+        }
+
+        @Override
+        public Integer child(Integer parent, String fieldValue) {
+            List<Integer> match = jdbcTemplate.queryForList(SELECT_CHILD, Integer.class, customFieldId, parent, fieldValue);
+            return match.isEmpty() ? null : match.get(0);
+        }
+
+        @Override
+        public String childFieldName(Integer parent) {
+            List<String> names = jdbcTemplate.queryForList(SELECT_CHILD_FIELD_NAME, String.class, customFieldId, parent);
+            return names.isEmpty() ? null : names.get(0);
+        }
+
+        @Override
+        public void add(Integer parent, int level, String fieldName, String fieldValue) {
+            if (nextNodeId < 0) {
+                nextNodeId = jdbcTemplate.queryForObject(NEXT_NODE_ID, Integer.class, customFieldId);
+            }
+            int nameId = valueId(fieldName);
+            int valueId = valueId(fieldValue);
+            jdbcTemplate.update(INSERT_NODE, customFieldId, nextNodeId++, parent, level,
+                    childCount(customFieldId, parent), nameId, valueId);
+        }
+
+        @Override
+        public void remove(Integer parent, Integer node) {
+            Integer ordinal = jdbcTemplate.queryForObject(SELECT_ORDINAL, Integer.class, customFieldId, node);
+            jdbcTemplate.update(DELETE_SUBTREE, customFieldId, node, customFieldId, customFieldId);
+            jdbcTemplate.update(SHIFT_ORDINALS, customFieldId, parent, ordinal);
+        }
+
+        @Override
+        public void rename(Integer node, String fieldValue) {
+            jdbcTemplate.update(RENAME_NODE, valueId(fieldValue), customFieldId, node);
+        }
+
+        /**
+         * @return the dictionary id of the string, inserting it when it is not stored yet
+         */
+        private int valueId(String value) {
+            List<Integer> stored = jdbcTemplate.queryForList(SELECT_VALUE_ID, Integer.class, customFieldId, value);
+            if (!stored.isEmpty()) {
+                return stored.get(0);
+            }
+            if (nextValueId < 0) {
+                nextValueId = jdbcTemplate.queryForObject(NEXT_VALUE_ID, Integer.class, customFieldId);
+            }
+            int valueId = nextValueId++;
+            jdbcTemplate.update(INSERT_VALUE, customFieldId, valueId, value);
+            return valueId;
+        }
+    }
+
+    public void delete(String customFieldId) {
+        jdbcTemplate.update("DELETE FROM master_list_nodes WHERE custom_field_id = ?", customFieldId);
+        jdbcTemplate.update("DELETE FROM master_list_values WHERE custom_field_id = ?", customFieldId);
+    }
+}
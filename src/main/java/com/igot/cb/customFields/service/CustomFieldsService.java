@@ -6,12 +6,16 @@ import com.igot.cb.pores.util.ApiResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
+
 @Service
 public interface CustomFieldsService {
 
     ApiResponse createCustomFields(JsonNode customFieldsData, String token);
 
-    ApiResponse readCustomField(String customFieldId, String token);
+    ApiResponse bulkCreateCustomFields(JsonNode customFieldsData, String token);
+
+    ApiResponse readCustomField(String customFieldId, String format, String token);
 
     ApiResponse updateCustomField(String customFieldId, JsonNode customFieldData, String token);
 
@@ -19,9 +23,21 @@ public interface CustomFieldsService {
 
     ApiResponse searchCustomFields(SearchCriteria searchCriteria);
 
-    ApiResponse uploadMasterListCustomField(MultipartFile multipartFile, String customFieldsMasterDataJson, String token);
+    ApiResponse uploadMasterListCustomField(MultipartFile multipartFile, String customFieldsMasterDataJson, String token, boolean async,
+                                            List<String> sheets, boolean separateSheets);
+
+    ApiResponse updateMasterListCustomField(MultipartFile file, String customFieldsMasterDataJson, String token, boolean async,
+                                            List<String> sheets);
+
+    ApiResponse getMasterListImportJob(String jobId, String token);
+
+    ApiResponse getMasterListAncestors(String customFieldId, String fieldValue, String fieldName, String token);
+
+    ApiResponse getMasterListChildren(String customFieldId, List<String> path, String cursor, Integer limit, String token);
+
+    ApiResponse suggestMasterListValues(String customFieldId, String query, String level, Integer limit, String token);
 
-    ApiResponse updateMasterListCustomField(MultipartFile file, String customFieldsMasterDataJson, String token);
+    ApiResponse patchMasterListNodes(String customFieldId, JsonNode patchRequest, String token);
 
     ApiResponse updateCustomFieldStatus(JsonNode updateCustomFieldStatusData, String token);
 }
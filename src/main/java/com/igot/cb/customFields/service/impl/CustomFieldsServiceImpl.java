@@ -2,40 +2,65 @@ package com.igot.cb.customFields.service.impl;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.igot.cb.authentication.util.AccessTokenValidator;
 import com.igot.cb.customFields.entity.CustomFieldEntity;
+import com.igot.cb.customFields.masterlist.MasterListCompactFormat;
+import com.igot.cb.customFields.masterlist.MasterListDiff;
+import com.igot.cb.customFields.masterlist.MasterListHierarchyBuilder;
+import com.igot.cb.customFields.masterlist.MasterListImportJob;
+import com.igot.cb.customFields.masterlist.MasterListImportJobService;
+import com.igot.cb.customFields.masterlist.MasterListImportProgress;
+import com.igot.cb.customFields.masterlist.MasterListImportTask;
+import com.igot.cb.customFields.masterlist.MasterListIndex;
+import com.igot.cb.customFields.masterlist.MasterListIndexCache;
+import com.igot.cb.customFields.masterlist.MasterListNodeEditor;
 import com.igot.cb.customFields.repository.CustomFieldRepository;
+import com.igot.cb.customFields.repository.MasterListNodeStore;
 import com.igot.cb.customFields.service.CustomFieldsService;
 import com.igot.cb.pores.cache.CacheService;
+import com.igot.cb.pores.cache.SearchResultCacheService;
 import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+import com.igot.cb.pores.upload.RowHandler;
+import com.igot.cb.pores.upload.UploadFormat;
+import com.igot.cb.pores.upload.UploadedFileReader;
+import com.igot.cb.pores.exceptions.CustomException;
 import com.igot.cb.pores.elasticsearch.dto.SearchResult;
 import com.igot.cb.pores.elasticsearch.service.EsUtilService;
+import com.igot.cb.pores.outbox.OutboxDocumentLoader;
+import com.igot.cb.pores.outbox.OutboxService;
 import com.igot.cb.pores.util.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Timestamp;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-public class CustomFieldsServiceImpl implements CustomFieldsService {
+public class CustomFieldsServiceImpl implements CustomFieldsService, OutboxDocumentLoader {
+    // The id is the row's key, held in the document only once the custom field was updated
+    private static final Set<String> MASTER_LIST_DIFF_IGNORED_FIELDS = Set.of(Constants.CUSTOM_FIELD_ID,
+            Constants.CUSTOM_FIELD_DATA, Constants.STORAGE_LAYOUT, Constants.UPDATED_ON, Constants.UPDATED_BY);
+
     @Autowired
     private CustomFieldRepository customFieldRepository;
     @Autowired
@@ -49,7 +74,24 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
     @Autowired
     private CacheService cacheService;
     @Autowired
+    private SearchResultCacheService searchResultCacheService;
+    @Autowired
     private CbServerProperties cbServerProperties;
+    @Autowired
+    private OutboxService outboxService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private UploadedFileReader uploadedFileReader;
+    @Autowired
+    private MasterListImportJobService masterListImportJobService;
+    @Autowired
+    private MasterListIndexCache masterListIndexCache;
+    @Autowired
+    private MasterListNodeStore masterListNodeStore;
+
+    // Concurrent uploads of the same content to the same custom field share one parse and write
+    private final SingleFlight<String, Map<String, Object>> masterListUpdates = new SingleFlight<>();
 
     @Override
     public ApiResponse createCustomFields(JsonNode customFieldsData, String token) {
@@ -66,38 +108,16 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
                 return response;
             }
 
-            // Create a mutable copy of the JSON data as ObjectNode
             Timestamp currentTime = new Timestamp(System.currentTimeMillis());
-            String formattedCurrentTime = getFormattedCurrentTime(currentTime);
-            ObjectNode customFieldsDataObjectNode = (ObjectNode) customFieldsData;
-            customFieldsDataObjectNode.put(Constants.CREATED_BY, userId);
-            customFieldsDataObjectNode.put(Constants.CREATED_ON, formattedCurrentTime);
-            customFieldsDataObjectNode.put(Constants.UPDATED_ON, formattedCurrentTime);
-            customFieldsDataObjectNode.put(Constants.IS_ACTIVE, true);
-            customFieldsDataObjectNode.put(Constants.IS_ENABLED, customFieldsData.get(Constants.IS_ENABLED).asBoolean(false));
-            customFieldsDataObjectNode.put(Constants.IS_MANDATORY, customFieldsData.get(Constants.IS_MANDATORY).asBoolean(false));
-            // Create and populate entity
-            CustomFieldEntity customField = new CustomFieldEntity();
-            String customFieldId = UUID.randomUUID().toString();
-            customField.setCustomFiledId(customFieldId);
-            customField.setCustomFieldData(customFieldsDataObjectNode);
-            customField.setIsMandatory(customFieldsData.get(Constants.IS_MANDATORY).asBoolean(false));
-            customField.setIsActive(true);
-            customField.setCreatedOn(currentTime);
-            customField.setUpdatedOn(currentTime);
-
-            // Save to database
-            customFieldRepository.save(customField);
+            CustomFieldEntity customField = newCustomField(customFieldsData, userId, currentTime, getFormattedCurrentTime(currentTime));
+            String customFieldId = customField.getCustomFiledId();
 
             // Convert to map for response and ES
-            Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldsDataObjectNode, Map.class);
+            Map<String, Object> customFieldMap = objectMapper.convertValue(customField.getCustomFieldData(), Map.class);
             customFieldMap.put(Constants.CUSTOM_FIELD_ID, customFieldId);
 
-            esUtilService.addDocument(cbServerProperties.getCustomFieldEntity(), customFieldId, customFieldMap, cbServerProperties.getCustomFieldElasticMappingJsonPath());
-
-            // Store in Redis cache
-            JsonNode responseNode = objectMapper.valueToTree(customFieldMap);
-            cacheService.putCache("CUSTOM_FIELD_" + customFieldId, responseNode);
+            // Save to database, ES and Redis cache are updated from the outbox
+            saveWithOutbox(customField, customFieldMap, false);
 
             // Set success response
             response.setResponseCode(HttpStatus.OK);
@@ -113,12 +133,19 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
     }
 
     @Override
-    public ApiResponse readCustomField(String customFieldId, String token) {
-        log.info("CustomFieldsServiceImpl::readCustomField: Getting custom field with ID: {}", customFieldId);
-        ApiResponse response = new ApiResponse("customField.read");
+    public ApiResponse bulkCreateCustomFields(JsonNode customFieldsData, String token) {
+        log.info("CustomFieldsServiceImpl::bulkCreateCustomFields:creating custom fields in bulk");
+        ApiResponse response = ProjectUtil.createDefaultResponse(Constants.BULK_CREATE_CUSTOM_FIELD_API);
+        if (customFieldsData == null || !customFieldsData.isArray() || customFieldsData.isEmpty()) {
+            return ProjectUtil.returnErrorMsg(Constants.BULK_CREATE_PAYLOAD_NON_EMPTY, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+        }
+        if (customFieldsData.size() > cbServerProperties.getCustomFieldBulkCreateMaxSize()) {
+            return ProjectUtil.returnErrorMsg(String.format(Constants.BULK_CREATE_MAX_SIZE_EXCEEDED, cbServerProperties.getCustomFieldBulkCreateMaxSize()),
+                    HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+        }
+        payloadValidation.validatePayload(cbServerProperties.getCustomFieldValidationFilePath(), customFieldsData);
 
         try {
-            // Validate user token
             String userId = accessTokenValidator.fetchUserIdFromAccessToken(token);
             if (StringUtils.isBlank(userId)) {
                 response.getParams().setStatus(Constants.FAILED);
@@ -127,32 +154,86 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
                 return response;
             }
 
-            // Try to fetch from Redis cache first
-            String cachedData = null;//cacheService.getCache("CUSTOM_FIELD_" + customFieldId);
-            if (cachedData != null) {
-                Map<String, Object> customFieldMap = objectMapper.convertValue(cachedData, Map.class);
-                response.setResponseCode(HttpStatus.OK);
-                response.setMessage(Constants.SUCCESS);
-                response.setResult(customFieldMap);
+            Timestamp currentTime = new Timestamp(System.currentTimeMillis());
+            String formattedCurrentTime = getFormattedCurrentTime(currentTime);
+            List<CustomFieldEntity> customFields = new ArrayList<>(customFieldsData.size());
+            List<Map<String, Object>> customFieldMaps = new ArrayList<>(customFieldsData.size());
+            List<Map<String, Object>> results = new ArrayList<>(customFieldsData.size());
+            for (JsonNode customFieldData : customFieldsData) {
+                CustomFieldEntity customField = newCustomField(customFieldData, userId, currentTime, formattedCurrentTime);
+                Map<String, Object> customFieldMap = objectMapper.convertValue(customField.getCustomFieldData(), Map.class);
+                customFieldMap.put(Constants.CUSTOM_FIELD_ID, customField.getCustomFiledId());
+                customFields.add(customField);
+                customFieldMaps.add(customFieldMap);
+
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put(Constants.CUSTOM_FIELD_ID, customField.getCustomFiledId());
+                result.put(Constants.ATTRIBUTE_NAME, customFieldData.path(Constants.ATTRIBUTE_NAME).asText());
+                results.add(result);
+            }
+
+            // One transaction for all rows, so they are all created or none is; ES and Redis cache
+            // are updated from the outbox in bulk
+            saveAllWithOutbox(customFields, customFieldMaps);
+
+            response.setResponseCode(HttpStatus.OK);
+            response.getParams().setStatus(Constants.SUCCESS);
+            response.setMessage(Constants.SUCCESS);
+            Map<String, Object> resultMap = new HashMap<>();
+            resultMap.put(Constants.COUNT, results.size());
+            resultMap.put(Constants.CUSTOM_FIELDS, results);
+            response.setResult(resultMap);
+        } catch (Exception e) {
+            log.error("Failed to bulk create custom fields: {}", e.getMessage(), e);
+            ProjectUtil.returnErrorMsg(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
+        }
+        return response;
+    }
+
+    @Override
+    public ApiResponse readCustomField(String customFieldId, String format, String token) {
+        log.info("CustomFieldsServiceImpl::readCustomField: Getting custom field with ID: {}", customFieldId);
+        ApiResponse response = new ApiResponse("customField.read");
+
+        try {
+            // Validate user token
+            String userId = accessTokenValidator.fetchUserIdFromAccessToken(token);
+            if (StringUtils.isBlank(userId)) {
+                response.getParams().setStatus(Constants.FAILED);
+                response.getParams().setErrMsg(Constants.INVALID_AUTH_TOKEN);
+                response.setResponseCode(HttpStatus.UNAUTHORIZED);
                 return response;
             }
 
-            // If not in cache, fetch from database
-            Optional<CustomFieldEntity> customFieldOpt = customFieldRepository.findByCustomFiledIdAndIsActiveTrue(customFieldId);
-            if (customFieldOpt.isEmpty()) {
+            Map<String, Object> customFieldMap = findCustomFieldMap(customFieldId);
+            if (customFieldMap == null) {
                 response.getParams().setStatus(Constants.FAILED);
                 response.getParams().setErrMsg("Custom field not found with ID: " + customFieldId);
                 response.setResponseCode(HttpStatus.NOT_FOUND);
                 return response;
             }
 
-            CustomFieldEntity customField = customFieldOpt.get();
-            JsonNode customFieldData = customField.getCustomFieldData();
-            Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldData, Map.class);
-            customFieldMap.put(Constants.CUSTOM_FIELD_ID, customFieldId);
-
-            // Cache result for future requests
-            cacheService.putCache("CUSTOM_FIELD_" + customFieldId, customFieldMap);
+            // Master lists saved before the ancestor index still carry the materialized reversed view
+            customFieldMap.remove(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA);
+            Object customFieldData = customFieldMap.get(Constants.CUSTOM_FIELD_DATA);
+            boolean compactRequested = Constants.FORMAT_COMPACT.equalsIgnoreCase(format);
+            if (compactRequested && customFieldData instanceof List<?>) {
+                JsonNode hierarchy = objectMapper.valueToTree(customFieldData);
+                ObjectNode compact = isHierarchy(hierarchy) ? MasterListCompactFormat.compact(hierarchy) : null;
+                if (compact != null) {
+                    customFieldMap.put(Constants.CUSTOM_FIELD_DATA, compact);
+                }
+            } else if (!compactRequested && customFieldData instanceof Map<?, ?> data
+                    && data.containsKey(Constants.LEVELS) && data.containsKey(Constants.NODES)) {
+                // Stored compact, expanded only for clients that did not ask for the compact shape
+                customFieldMap.put(Constants.CUSTOM_FIELD_DATA, MasterListCompactFormat.expand(objectMapper.valueToTree(data)));
+            }
+            if (Constants.FORMAT_LEGACY.equalsIgnoreCase(format)) {
+                MasterListIndexCache.Entry entry = findMasterListIndex(customFieldId);
+                if (entry != null && entry.index() != null) {
+                    customFieldMap.put(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA, entry.index().toReversedOrderCustomFieldData());
+                }
+            }
 
             response.setResponseCode(HttpStatus.OK);
             response.setMessage(Constants.SUCCESS);
@@ -168,6 +249,349 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
         return response;
     }
 
+    @Override
+    public ApiResponse getMasterListAncestors(String customFieldId, String fieldValue, String fieldName, String token) {
+        log.info("CustomFieldsServiceImpl::getMasterListAncestors: Getting ancestors of {} in custom field {}", fieldValue, customFieldId);
+        ApiResponse response = ProjectUtil.createDefaultResponse(Constants.MASTER_LIST_ANCESTORS_API);
+        try {
+            String userId = accessTokenValidator.fetchUserIdFromAccessToken(token);
+            if (StringUtils.isBlank(userId)) {
+                ProjectUtil.returnErrorMsg(Constants.INVALID_AUTH_TOKEN, HttpStatus.UNAUTHORIZED, response, Constants.FAILED);
+                return response;
+            }
+            if (StringUtils.isBlank(fieldValue)) {
+                ProjectUtil.returnErrorMsg(Constants.FIELD_VALUE_REQUIRED, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                return response;
+            }
+
+            Long version = findMasterListVersion(customFieldId);
+            if (version == null) {
+                ProjectUtil.returnErrorMsg("Custom field not found with ID: " + customFieldId, HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                return response;
+            }
+            MasterListIndexCache.Entry entry = findMasterListIndex(customFieldId, version);
+            if (entry == null) {
+                ProjectUtil.returnErrorMsg("Custom field not found with ID: " + customFieldId, HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                return response;
+            }
+            if (entry.index() == null) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.NOT_A_MASTER_LIST, customFieldId), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                return response;
+            }
+
+            List<List<Map<String, Object>>> ancestors = entry.index().ancestors(fieldValue.trim(), StringUtils.trimToNull(fieldName));
+            if (ancestors.isEmpty()) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.MASTER_LIST_VALUE_NOT_FOUND, fieldValue), HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                return response;
+            }
+            response.setResponseCode(HttpStatus.OK);
+            response.setMessage(Constants.SUCCESS);
+            response.getResult().put(Constants.CUSTOM_FIELD_ID, customFieldId);
+            response.getResult().put(Constants.ANCESTORS, ancestors);
+        } catch (Exception e) {
+            log.error("Failed to read master list ancestors: {}", e.getMessage(), e);
+            ProjectUtil.returnErrorMsg(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
+        }
+        return response;
+    }
+
+    /**
+     * Reads the custom field from the cache, falling back to the database and caching the result.
+     *
+     * @return the custom field, or null when there is no active custom field with this id
+     */
+    private Map<String, Object> findCustomFieldMap(String customFieldId) {
+        Map<String, Object> customFieldMap = cacheService.getCache(Constants.CUSTOM_FIELD + customFieldId, Map.class);
+        if (customFieldMap != null) {
+            return customFieldMap;
+        }
+
+        Optional<CustomFieldEntity> customFieldOpt = customFieldRepository.findByCustomFiledIdAndIsActiveTrue(customFieldId);
+        if (customFieldOpt.isEmpty()) {
+            return null;
+        }
+        customFieldMap = toCustomFieldMap(customFieldId, customFieldOpt.get().getCustomFieldData());
+        cacheService.fillCache(Constants.CUSTOM_FIELD + customFieldId, customFieldMap);
+        return customFieldMap;
+    }
+
+    @Override
+    public ApiResponse getMasterListChildren(String customFieldId, List<String> path, String cursor, Integer limit, String token) {
+        log.info("CustomFieldsServiceImpl::getMasterListChildren: Getting children of {} in custom field {}", path, customFieldId);
+        ApiResponse response = ProjectUtil.createDefaultResponse(Constants.MASTER_LIST_CHILDREN_API);
+        try {
+            String userId = accessTokenValidator.fetchUserIdFromAccessToken(token);
+            if (StringUtils.isBlank(userId)) {
+                ProjectUtil.returnErrorMsg(Constants.INVALID_AUTH_TOKEN, HttpStatus.UNAUTHORIZED, response, Constants.FAILED);
+                return response;
+            }
+            int pageSize = limit == null ? cbServerProperties.getMasterListChildrenPageSize() : limit;
+            if (pageSize < 1 || pageSize > cbServerProperties.getMasterListChildrenMaxPageSize()) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.INVALID_PAGE_LIMIT, cbServerProperties.getMasterListChildrenMaxPageSize()),
+                        HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                return response;
+            }
+
+            Long version = findMasterListVersion(customFieldId);
+            if (version == null) {
+                ProjectUtil.returnErrorMsg("Custom field not found with ID: " + customFieldId, HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                return response;
+            }
+            long[] position = null;
+            if (StringUtils.isNotBlank(cursor)) {
+                position = decodeChildrenCursor(cursor);
+                if (position == null) {
+                    ProjectUtil.returnErrorMsg(Constants.INVALID_CURSOR, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                    return response;
+                }
+            }
+
+            MasterListIndexCache.Entry entry = masterListIndexCache.getIfPresent(customFieldId, version);
+            // Not indexed yet and stored as nodes: the page is read through the parent index of
+            // the node table rather than by building the index of the whole list
+            boolean fromNodes = entry == null && masterListNodeStore.hasNodes(customFieldId);
+            if (!fromNodes) {
+                if (entry == null) {
+                    entry = findMasterListIndex(customFieldId, version);
+                }
+                if (entry == null) {
+                    ProjectUtil.returnErrorMsg("Custom field not found with ID: " + customFieldId, HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                    return response;
+                }
+                if (entry.index() == null) {
+                    ProjectUtil.returnErrorMsg(String.format(Constants.NOT_A_MASTER_LIST, customFieldId), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                    return response;
+                }
+                // The entry may be of a later version than the one read above
+                version = entry.version();
+            }
+            if (position != null && position[0] != version) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.MASTER_LIST_CURSOR_EXPIRED, customFieldId), HttpStatus.CONFLICT, response, Constants.FAILED);
+                return response;
+            }
+            int offset = position == null ? 0 : (int) position[1];
+            List<String> nodePath = path == null ? Collections.emptyList() : path.stream().map(String::trim).collect(Collectors.toList());
+            int node = fromNodes ? masterListNodeStore.findNode(customFieldId, nodePath) : entry.index().findNode(nodePath);
+            if (node == MasterListIndex.NOT_FOUND) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.MASTER_LIST_PATH_NOT_FOUND, nodePath), HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                return response;
+            }
+
+            int total = fromNodes ? masterListNodeStore.childCount(customFieldId, node) : entry.index().childCount(node);
+            List<Map<String, Object>> children = fromNodes
+                    ? masterListNodeStore.children(customFieldId, node, offset, pageSize)
+                    : entry.index().children(node, Math.min(offset, total), pageSize);
+            int nextOffset = offset + children.size();
+            response.setResponseCode(HttpStatus.OK);
+            response.setMessage(Constants.SUCCESS);
+            response.getResult().put(Constants.CUSTOM_FIELD_ID, customFieldId);
+            response.getResult().put(Constants.VERSION, version);
+            response.getResult().put(Constants.PATH, nodePath);
+            response.getResult().put(Constants.CHILDREN, children);
+            response.getResult().put(Constants.TOTAL, total);
+            response.getResult().put(Constants.NEXT_CURSOR, nextOffset < total ? encodeChildrenCursor(version, nextOffset) : null);
+        } catch (Exception e) {
+            log.error("Failed to read master list children: {}", e.getMessage(), e);
+            ProjectUtil.returnErrorMsg(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
+        }
+        return response;
+    }
+
+    @Override
+    public ApiResponse suggestMasterListValues(String customFieldId, String query, String level, Integer limit, String token) {
+        log.info("CustomFieldsServiceImpl::suggestMasterListValues: Suggesting values for {} in custom field {}", query, customFieldId);
+        ApiResponse response = ProjectUtil.createDefaultResponse(Constants.MASTER_LIST_SUGGEST_API);
+        try {
+            String userId = accessTokenValidator.fetchUserIdFromAccessToken(token);
+            if (StringUtils.isBlank(userId)) {
+                ProjectUtil.returnErrorMsg(Constants.INVALID_AUTH_TOKEN, HttpStatus.UNAUTHORIZED, response, Constants.FAILED);
+                return response;
+            }
+            if (StringUtils.isBlank(query)) {
+                ProjectUtil.returnErrorMsg(Constants.SUGGEST_QUERY_REQUIRED, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                return response;
+            }
+            int maxSuggestions = limit == null ? cbServerProperties.getMasterListSuggestLimit() : limit;
+            if (maxSuggestions < 1 || maxSuggestions > cbServerProperties.getMasterListSuggestMaxLimit()) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.INVALID_PAGE_LIMIT, cbServerProperties.getMasterListSuggestMaxLimit()),
+                        HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                return response;
+            }
+
+            Long version = findMasterListVersion(customFieldId);
+            if (version == null) {
+                ProjectUtil.returnErrorMsg("Custom field not found with ID: " + customFieldId, HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                return response;
+            }
+            MasterListIndexCache.Entry entry = findMasterListIndex(customFieldId, version);
+            if (entry == null) {
+                ProjectUtil.returnErrorMsg("Custom field not found with ID: " + customFieldId, HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                return response;
+            }
+            if (entry.index() == null) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.NOT_A_MASTER_LIST, customFieldId), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                return response;
+            }
+
+            response.setResponseCode(HttpStatus.OK);
+            response.setMessage(Constants.SUCCESS);
+            response.getResult().put(Constants.CUSTOM_FIELD_ID, customFieldId);
+            response.getResult().put(Constants.VERSION, entry.version());
+            response.getResult().put(Constants.SUGGESTIONS,
+                    masterListIndexCache.typeahead(customFieldId, entry)
+                            .suggest(query, StringUtils.trimToNull(level), maxSuggestions));
+        } catch (Exception e) {
+            log.error("Failed to suggest master list values: {}", e.getMessage(), e);
+            ProjectUtil.returnErrorMsg(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
+        }
+        return response;
+    }
+
+    /**
+     * @return the updatedOn time of the active custom field in millis, or null when there is none.
+     * Every write moves it past the stored one, see {@link #nextVersion}, so no two versions of a
+     * custom field share it.
+     */
+    private Long findMasterListVersion(String customFieldId) {
+        return customFieldRepository.findActiveUpdatedOn(customFieldId).map(Timestamp::getTime).orElse(null);
+    }
+
+    private MasterListIndexCache.Entry findMasterListIndex(String customFieldId) {
+        Long version = findMasterListVersion(customFieldId);
+        return version == null ? null : findMasterListIndex(customFieldId, version);
+    }
+
+    /**
+     * The stored hierarchy is only loaded when no entry has been built for this version yet. The
+     * entry is built from the row as loaded then, with that row's version.
+     *
+     * @return the entry of the master list, with a null index when the custom field holds no
+     * hierarchy, or null when the custom field no longer exists
+     */
+    private MasterListIndexCache.Entry findMasterListIndex(String customFieldId, long version) {
+        return masterListIndexCache.get(customFieldId, version, () -> customFieldRepository.findByCustomFiledIdAndIsActiveTrue(customFieldId)
+                .map(customField -> {
+                    JsonNode customFieldData = readHierarchy(customField);
+                    return new MasterListIndexCache.Snapshot(customField.getUpdatedOn().getTime(),
+                            isHierarchy(customFieldData) ? customFieldData : null);
+                })
+                .orElse(null));
+    }
+
+    private static String encodeChildrenCursor(long version, int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((version + ":" + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the version and offset of the cursor, or null when it is malformed
+     */
+    private static long[] decodeChildrenCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 2) {
+                return null;
+            }
+            long offset = Long.parseLong(parts[1]);
+            if (offset < 0 || offset > Integer.MAX_VALUE) {
+                return null;
+            }
+            return new long[]{Long.parseLong(parts[0]), offset};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNodeLayout(JsonNode customFieldData) {
+        return MasterListNodeStore.NODES_LAYOUT.equals(customFieldData.path(Constants.STORAGE_LAYOUT).asText());
+    }
+
+    private static boolean isHierarchy(JsonNode customFieldData) {
+        return customFieldData != null && customFieldData.isArray() && !customFieldData.isEmpty()
+                && customFieldData.get(0).has(Constants.FIELD_VALUES);
+    }
+
+    /**
+     * @return the expanded master list hierarchy of the custom field in any storage layout, or a
+     * missing node when it has none
+     */
+    private JsonNode readHierarchy(CustomFieldEntity customField) {
+        JsonNode customFieldData = customField.getCustomFieldData();
+        if (isNodeLayout(customFieldData)) {
+            return masterListNodeStore.load(customField.getCustomFiledId());
+        }
+        JsonNode hierarchy = customFieldData.path(Constants.CUSTOM_FIELD_DATA);
+        return MasterListCompactFormat.isCompact(hierarchy) ? MasterListCompactFormat.expand(hierarchy) : hierarchy;
+    }
+
+    /**
+     * @return the hierarchy in the shape stored in documents, compact when that is enabled and
+     * the hierarchy uses one field name per level
+     */
+    private JsonNode storedForm(JsonNode hierarchy) {
+        if (cbServerProperties.isMasterListCompactStorage()) {
+            ObjectNode compact = MasterListCompactFormat.compact(hierarchy);
+            if (compact != null) {
+                return compact;
+            }
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Stores the hierarchy in the configured layout, either inside {@code customFieldData} or in
+     * the node tables with only a layout marker left in {@code customFieldData}. Must run in the
+     * transaction that saves the custom field.
+     *
+     * @param storedAsNodes whether the custom field's previous hierarchy is in the node tables
+     */
+    private void writeHierarchy(String customFieldId, ObjectNode customFieldData, JsonNode hierarchy, boolean storedAsNodes) {
+        if (cbServerProperties.isMasterListNodeStorage()) {
+            masterListNodeStore.save(customFieldId, hierarchy);
+            customFieldData.remove(Constants.CUSTOM_FIELD_DATA);
+            customFieldData.put(Constants.STORAGE_LAYOUT, MasterListNodeStore.NODES_LAYOUT);
+        } else {
+            if (storedAsNodes) {
+                masterListNodeStore.delete(customFieldId);
+            }
+            customFieldData.remove(Constants.STORAGE_LAYOUT);
+            customFieldData.set(Constants.CUSTOM_FIELD_DATA, storedForm(hierarchy));
+        }
+    }
+
+    /**
+     * @return the document served from the cache and ES, with the hierarchy in place whatever
+     * the storage layout
+     */
+    private Map<String, Object> toCustomFieldMap(String customFieldId, JsonNode customFieldData) {
+        return toCustomFieldMap(customFieldId, customFieldData,
+                isNodeLayout(customFieldData) ? masterListNodeStore.load(customFieldId) : null);
+    }
+
+    /**
+     * @return the custom field as held in its row, without the hierarchy when that is stored as
+     * nodes
+     */
+    private Map<String, Object> toMetadataMap(String customFieldId, JsonNode customFieldData) {
+        Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldData, Map.class);
+        customFieldMap.remove(Constants.STORAGE_LAYOUT);
+        customFieldMap.put(Constants.CUSTOM_FIELD_ID, customFieldId);
+        return customFieldMap;
+    }
+
+    /**
+     * @param hierarchy the hierarchy held in the node tables, when {@code customFieldData} is in
+     *                  that layout
+     */
+    private Map<String, Object> toCustomFieldMap(String customFieldId, JsonNode customFieldData, JsonNode hierarchy) {
+        Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldData, Map.class);
+        if (customFieldMap.remove(Constants.STORAGE_LAYOUT) != null) {
+            customFieldMap.put(Constants.CUSTOM_FIELD_DATA, storedForm(hierarchy));
+        }
+        customFieldMap.put(Constants.CUSTOM_FIELD_ID, customFieldId);
+        return customFieldMap;
+    }
+
     @Override
     public ApiResponse updateCustomField(String customFieldId, JsonNode customFieldsData, String token) {
         log.info("CustomFieldsServiceImpl::updateCustomField: Updating custom field with ID: {}", customFieldId);
@@ -207,6 +631,8 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
             customFieldsDataObjectNode.put(Constants.ORGANISATION_ID, customFieldOpt.get().getCustomFieldData().get(Constants.ORGANISATION_ID).asText());
             customFieldsDataObjectNode.put(Constants.UPDATED_BY, userId); // Add the updated by field
             customFieldsDataObjectNode.put(Constants.UPDATED_ON, formattedCurrentTime);
+            // A digest sent back with the document no longer describes its hierarchy
+            customFieldsDataObjectNode.remove(Constants.UPLOAD_DIGEST);
             customFieldsDataObjectNode.put(Constants.IS_ENABLED, customFieldsData.get(Constants.IS_ENABLED).asBoolean(originalData.get(Constants.IS_ENABLED).asBoolean()));
             customFieldsDataObjectNode.put(Constants.IS_MANDATORY, customFieldsData.get(Constants.IS_MANDATORY).asBoolean(originalData.get(Constants.IS_MANDATORY).asBoolean()));
             customFieldsDataObjectNode.put(Constants.IS_ACTIVE, originalData.get(Constants.IS_ACTIVE).asBoolean(originalData.get(Constants.IS_ACTIVE).asBoolean()));
@@ -223,22 +649,27 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
             customField.setCustomFieldData(customFieldsDataObjectNode);
             customField.setIsMandatory(customFieldsData.get(Constants.IS_MANDATORY).asBoolean(originalData.get(Constants.IS_MANDATORY).asBoolean()));
             customField.setUpdatedOn(currentTime);
-            customFieldRepository.save(customField);
-
-            // Update ES and cache
-            Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldsDataObjectNode, Map.class);
-            customFieldMap.put(Constants.CUSTOM_FIELD_ID, customFieldId);
-
-            esUtilService.updateDocument(
-                    cbServerProperties.getCustomFieldEntity(),
-                    customFieldId,
-                    customFieldMap,
-                    cbServerProperties.getCustomFieldElasticMappingJsonPath()
-            );
 
-            // Update Redis cache
-            JsonNode responseNode = objectMapper.valueToTree(customFieldMap);
-            cacheService.putCache("CUSTOM_FIELD_" + customFieldId, responseNode);
+            // Update database, ES and cache
+            if (isNodeLayout(originalData)) {
+                JsonNode hierarchy = customFieldsDataObjectNode.get(Constants.CUSTOM_FIELD_DATA);
+                if (isHierarchy(hierarchy)) {
+                    Map<String, Object> customFieldMap = transactionTemplate.execute(status -> {
+                        writeHierarchy(customFieldId, customFieldsDataObjectNode, hierarchy, true);
+                        Map<String, Object> document = toCustomFieldMap(customFieldId, customFieldsDataObjectNode, hierarchy);
+                        saveWithOutbox(customField, document, false);
+                        return document;
+                    });
+                    response.setResponseCode(HttpStatus.OK);
+                    response.setMessage(Constants.SUCCESS);
+                    response.setResult(customFieldMap);
+                    return response;
+                }
+                // The stored hierarchy is kept when the update does not replace it
+                customFieldsDataObjectNode.put(Constants.STORAGE_LAYOUT, MasterListNodeStore.NODES_LAYOUT);
+            }
+            Map<String, Object> customFieldMap = toCustomFieldMap(customFieldId, customFieldsDataObjectNode);
+            saveWithOutbox(customField, customFieldMap, false);
             response.setResponseCode(HttpStatus.OK);
             response.setMessage(Constants.SUCCESS);
             response.setResult(customFieldMap);
@@ -279,29 +710,19 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
             // Update the JSON data to reflect the deletion
             JsonNode customFieldData = customField.getCustomFieldData();
             ObjectNode customFieldDataNode = (ObjectNode) customFieldData;
-            customFieldDataNode.put(Constants.IS_ACTIVE, false);
-            customFieldDataNode.put(Constants.UPDATED_BY, userId);
-            customFieldDataNode.put(Constants.UPDATED_ON, formattedCurrentTime);
+            ObjectNode changes = objectMapper.createObjectNode();
+            changes.put(Constants.IS_ACTIVE, false);
+            changes.put(Constants.UPDATED_BY, userId);
+            changes.put(Constants.UPDATED_ON, formattedCurrentTime);
+            customFieldDataNode.setAll(changes);
 
             // Update the entity
             customField.setCustomFieldData(customFieldDataNode);
             customField.setIsActive(false);
             customField.setUpdatedOn(currentTime);
-            customFieldRepository.save(customField);
-
-            // Update ES document instead of deleting it
-            Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldDataNode, Map.class);
-            customFieldMap.put(Constants.CUSTOM_FIELD_ID, customFieldId);
 
-            esUtilService.updateDocument(
-                    cbServerProperties.getCustomFieldEntity(),
-                    customFieldId,
-                    customFieldMap,
-                    cbServerProperties.getCustomFieldElasticMappingJsonPath()
-            );
-
-            // Remove from cache
-            cacheService.deleteCache("CUSTOM_FIELD_" + customFieldId);
+            // Update ES document instead of deleting it, and remove from cache
+            saveChangesWithOutbox(customField, changes);
 
             // Set success response
             response.setResponseCode(HttpStatus.OK);
@@ -320,6 +741,122 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
         return response;
     }
 
+    /**
+     * Builds a new, active custom field entity from a validated create payload. The payload is
+     * updated in place with the audit fields and becomes the entity's data.
+     */
+    private CustomFieldEntity newCustomField(JsonNode customFieldsData, String userId, Timestamp currentTime, String formattedCurrentTime) {
+        ObjectNode customFieldsDataObjectNode = (ObjectNode) customFieldsData;
+        customFieldsDataObjectNode.put(Constants.CREATED_BY, userId);
+        customFieldsDataObjectNode.put(Constants.CREATED_ON, formattedCurrentTime);
+        customFieldsDataObjectNode.put(Constants.UPDATED_ON, formattedCurrentTime);
+        customFieldsDataObjectNode.put(Constants.IS_ACTIVE, true);
+        customFieldsDataObjectNode.put(Constants.IS_ENABLED, customFieldsData.get(Constants.IS_ENABLED).asBoolean(false));
+        customFieldsDataObjectNode.put(Constants.IS_MANDATORY, customFieldsData.get(Constants.IS_MANDATORY).asBoolean(false));
+
+        CustomFieldEntity customField = new CustomFieldEntity();
+        customField.setCustomFiledId(UUID.randomUUID().toString());
+        customField.setCustomFieldData(customFieldsDataObjectNode);
+        customField.setIsMandatory(customFieldsData.get(Constants.IS_MANDATORY).asBoolean(false));
+        customField.setIsActive(true);
+        customField.setCreatedOn(currentTime);
+        customField.setUpdatedOn(currentTime);
+        customField.setNewEntity(true);
+        return customField;
+    }
+
+    /**
+     * Saves the entities and their outbox events in one transaction. New entities are persisted
+     * without a lookup, so the inserts go out in JDBC batches.
+     */
+    private void saveAllWithOutbox(List<CustomFieldEntity> customFields, List<Map<String, Object>> customFieldMaps) {
+        List<JsonNode> documents = new ArrayList<>(customFieldMaps.size());
+        customFieldMaps.forEach(customFieldMap -> documents.add(objectMapper.valueToTree(customFieldMap)));
+        transactionTemplate.executeWithoutResult(status -> {
+            customFieldRepository.saveAll(customFields);
+            for (int i = 0; i < customFields.size(); i++) {
+                String customFieldId = customFields.get(i).getCustomFiledId();
+                outboxService.record(customFieldId, nextVersion(customFields.get(i)), cbServerProperties.getCustomFieldEntity(),
+                        cbServerProperties.getCustomFieldElasticMappingJsonPath(), documents.get(i),
+                        Constants.CUSTOM_FIELD + customFieldId, false);
+            }
+        });
+    }
+
+    /**
+     * Saves the entity together with the outbox event that carries it to ES and the Redis cache,
+     * so both are updated by the outbox relay once the transaction commits.
+     */
+    private void saveWithOutbox(CustomFieldEntity customField, Map<String, Object> customFieldMap, boolean evictCache) {
+        JsonNode document = objectMapper.valueToTree(customFieldMap);
+        transactionTemplate.executeWithoutResult(status -> {
+            long version = nextVersion(customField);
+            customFieldRepository.save(customField);
+            outboxService.record(customField.getCustomFiledId(), version, cbServerProperties.getCustomFieldEntity(),
+                    cbServerProperties.getCustomFieldElasticMappingJsonPath(), document,
+                    Constants.CUSTOM_FIELD + customField.getCustomFiledId(), evictCache);
+        });
+    }
+
+    /**
+     * Saves a change to metadata fields only. The outbox event carries just those fields, so a
+     * hierarchy stored as nodes is not loaded and Elasticsearch gets a partial update.
+     *
+     * @param changes the changed fields of {@code customFieldData} with their new values
+     */
+    private void saveChangesWithOutbox(CustomFieldEntity customField, ObjectNode changes) {
+        transactionTemplate.executeWithoutResult(status -> {
+            long version = nextVersion(customField);
+            customFieldRepository.save(customField);
+            outboxService.recordPartial(customField.getCustomFiledId(), version, cbServerProperties.getCustomFieldEntity(),
+                    cbServerProperties.getCustomFieldElasticMappingJsonPath(), changes,
+                    Constants.CUSTOM_FIELD + customField.getCustomFiledId());
+        });
+    }
+
+    /**
+     * Saves the entity after its hierarchy was edited in the node tables. The outbox event does
+     * not carry the document: the relay reads it once the transaction has committed, so the
+     * hierarchy is not loaded here.
+     */
+    private void saveWithOutboxReload(CustomFieldEntity customField) {
+        transactionTemplate.executeWithoutResult(status -> {
+            long version = nextVersion(customField);
+            customFieldRepository.save(customField);
+            outboxService.recordReload(customField.getCustomFiledId(), version, cbServerProperties.getCustomFieldEntity(),
+                    cbServerProperties.getCustomFieldElasticMappingJsonPath(), Constants.CUSTOM_FIELD + customField.getCustomFiledId());
+        });
+    }
+
+    /**
+     * Reads the custom field document for the outbox relay. A read that overlaps a later
+     * change is corrected when the event of that change is relayed.
+     */
+    @Override
+    public JsonNode load(String esIndex, String aggregateId) {
+        return transactionTemplate.execute(status -> customFieldRepository.findById(aggregateId)
+                .map(customField -> (JsonNode) objectMapper.valueToTree(toCustomFieldMap(aggregateId, customField.getCustomFieldData())))
+                .orElse(null));
+    }
+
+    /**
+     * Returns the version of the outbox event for this write, its updatedOn time. The row of an
+     * existing custom field is locked first, so writes of the same custom field commit one at a
+     * time and each gets a version above the one committed before it. When the clock of this
+     * node is behind the previous writer's, updatedOn is moved just past the stored one.
+     */
+    private long nextVersion(CustomFieldEntity customField) {
+        long version = customField.getUpdatedOn().getTime();
+        if (!customField.isNew()) {
+            Optional<Timestamp> previous = customFieldRepository.lockUpdatedOn(customField.getCustomFiledId());
+            if (previous.isPresent() && previous.get().getTime() >= version) {
+                version = previous.get().getTime() + 1;
+                customField.setUpdatedOn(new Timestamp(version));
+            }
+        }
+        return version;
+    }
+
     private String getFormattedCurrentTime(Timestamp currentTime) {
         ZonedDateTime zonedDateTime = currentTime.toInstant().atZone(ZoneId.systemDefault());
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Constants.TIME_FORMAT);
@@ -338,16 +875,26 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
                 searchCriteria.getFilterCriteriaMap().put(Constants.IS_ACTIVE, true);
             }
 
-            // Execute search in Elasticsearch
-            SearchResult searchResult = esUtilService.searchDocuments(
-                    cbServerProperties.getCustomFieldEntity(),
-                    searchCriteria,
-                    cbServerProperties.getCustomFieldElasticMappingJsonPath()
-            );
+            // Serve repeated searches from Redis, otherwise execute search in Elasticsearch
+            String cacheKey = searchResultCacheService.getCacheKey(cbServerProperties.getCustomFieldEntity(), searchCriteria);
+            SearchResult searchResult = cacheKey != null ? searchResultCacheService.getSearchResult(cacheKey) : null;
+            if (searchResult == null) {
+                searchResult = esUtilService.searchDocuments(
+                        cbServerProperties.getCustomFieldEntity(),
+                        searchCriteria,
+                        cbServerProperties.getCustomFieldElasticMappingJsonPath()
+                );
+                if (searchResult != null && cacheKey != null) {
+                    searchResultCacheService.putSearchResult(cacheKey, searchResult);
+                }
+            }
 
             response.setResponseCode(HttpStatus.OK);
             response.setMessage(Constants.SUCCESS);
             response.getResult().put(Constants.SEARCH_RESULTS, searchResult);
+        } catch (CustomException e) {
+            ProjectUtil.returnErrorMsg(e.getMessage(), e.getHttpStatusCode(), response, Constants.FAILED);
+            return response;
         } catch (Exception e) {
             log.error("Failed to search custom fields: {}", e.getMessage(), e);
             ProjectUtil.returnErrorMsg("Failed to search custom fields: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
@@ -357,7 +904,8 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
     }
 
     @Override
-    public ApiResponse uploadMasterListCustomField(MultipartFile file, String customFieldsMasterDataJson, String token) {
+    public ApiResponse uploadMasterListCustomField(MultipartFile file, String customFieldsMasterDataJson, String token, boolean async,
+                                                   List<String> sheets, boolean separateSheets) {
         ApiResponse response = ProjectUtil.createDefaultResponse(Constants.CREATE_CUSTOM_FIELD_API);
         log.info("CustomFieldsServiceImpl::uploadMasterListCustomField: Uploading master list custom field");
 
@@ -383,16 +931,9 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
             return response;
         }
 
-        String fileName = file.getOriginalFilename();
-        String contentType = file.getContentType();
-        List<String> extensions = Arrays.asList(cbServerProperties.getAllowedExtensions().split(","));
-        List<String> contentTypes = Arrays.asList(cbServerProperties.getAllowedContentTypes().split(","));
-
-        if (fileName == null ||
-                extensions.stream().noneMatch(fileName::endsWith) ||
-                contentType == null ||
-                contentTypes.stream().noneMatch(contentType::equals)) {
-            ProjectUtil.returnErrorMsg(Constants.ONLY_EXCEL_FILES_ALLOWED, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+        UploadFormat uploadFormat = resolveUploadFormat(file);
+        if (uploadFormat == null) {
+            ProjectUtil.returnErrorMsg(Constants.UNSUPPORTED_UPLOAD_FILE, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
             return response;
         }
 
@@ -408,79 +949,94 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
             return response;
         }
 
-        String[] headers;
-        int levels;
-        List<Row> dataRows = new ArrayList<>();
+        SheetSelection sheetSelection = SheetSelection.of(sheets, separateSheets);
+        if (sheetSelection != null && uploadFormat != UploadFormat.EXCEL) {
+            ProjectUtil.returnErrorMsg(Constants.SHEETS_REQUIRE_WORKBOOK, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+            return response;
+        }
 
-        try (InputStream is = file.getInputStream(); Workbook workbook = new XSSFWorkbook(is)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null) {
-                ProjectUtil.returnErrorMsg(Constants.EXCEL_HEADER_ROW_REQUIRED, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+        // One digest covers the whole workbook, so master lists created from separate sheets carry none
+        if (!separateSheets) {
+            try {
+                customFieldsData.put(Constants.UPLOAD_DIGEST, computeUploadDigest(file, customFieldDataList, sheetSelection));
+            } catch (IOException e) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.ERROR_READING_UPLOADED_FILE, e.getMessage()), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
                 return response;
             }
+        }
 
-            int excelColumns = headerRow.getLastCellNum();
-            int jsonLevels = customFieldDataList.size();
-
-            if (excelColumns > jsonLevels) {
-                ProjectUtil.returnErrorMsg(
-                        String.format(Constants.EXCEL_MORE_COLUMNS_THAN_LEVELS, excelColumns, jsonLevels),
-                        HttpStatus.BAD_REQUEST, response, Constants.FAILED
-                );
-                return response;
+        if (separateSheets) {
+            if (async) {
+                return submitMasterListImport(MasterListImportJob.Operation.CREATE, file, uploadFormat, userId, response,
+                        (spoolFile, progress) -> {
+                            Map<String, MasterListHierarchyBuilder> builders = readMasterListSheets(customFieldDataList,
+                                    (names, handlers) -> uploadedFileReader.readSheets(spoolFile, names, handlers), sheetSelection, progress);
+                            progress.phase(MasterListImportJob.Phase.SAVING);
+                            // The job records the ids of all the created master lists
+                            return saveSheetMasterLists(customFieldsData, userId, builders).stream()
+                                    .map(customFieldMap -> String.valueOf(customFieldMap.get(Constants.CUSTOM_FIELD_ID)))
+                                    .collect(Collectors.joining(","));
+                        });
             }
 
-            if (excelColumns > maxLevel) {
-                ProjectUtil.returnErrorMsg(String.format(Constants.EXCEL_MORE_THAN_MAX_LEVELS, maxLevel), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+            List<Map<String, Object>> customFieldMaps;
+            try {
+                Map<String, MasterListHierarchyBuilder> builders = readMasterListSheets(customFieldDataList,
+                        (names, handlers) -> uploadedFileReader.readSheets(file, names, handlers), sheetSelection, null);
+                customFieldMaps = saveSheetMasterLists(customFieldsData, userId, builders);
+            } catch (CustomException e) {
+                ProjectUtil.returnErrorMsg(e.getMessage(), e.getHttpStatusCode(), response, Constants.FAILED);
                 return response;
             }
 
-            levels = jsonLevels;
+            response.setResponseCode(HttpStatus.OK);
+            response.getParams().setStatus(Constants.SUCCESS);
+            response.setMessage(Constants.SUCCESS);
+            response.getResult().put(Constants.COUNT, customFieldMaps.size());
+            response.getResult().put(Constants.CUSTOM_FIELDS, customFieldMaps);
+            return response;
+        }
 
-            headers = new String[levels];
-            for (int j = 0; j < levels; j++) {
-                headers[j] = headerRow.getCell(j).getStringCellValue();
-            }
-            for (int i = 0; i < levels; i++) {
-                Cell headerCell = headerRow.getCell(i);
-                if (headerCell == null) continue;
-                String header = headerCell.getStringCellValue().trim();
-                Map<?, ?> fieldMeta = (Map<?, ?>) customFieldDataList.get(i);
+        if (async) {
+            return submitMasterListImport(MasterListImportJob.Operation.CREATE, file, uploadFormat, userId, response,
+                    (spoolFile, progress) -> {
+                        ArrayNode hierarchy = readMasterListHierarchy(customFieldDataList,
+                                handler -> uploadedFileReader.read(spoolFile, uploadFormat, handler),
+                                (names, handlers) -> uploadedFileReader.readSheets(spoolFile, names, handlers), sheetSelection, progress);
+                        progress.phase(MasterListImportJob.Phase.SAVING);
+                        return String.valueOf(saveNewMasterList(customFieldsData, userId, hierarchy).get(Constants.CUSTOM_FIELD_ID));
+                    });
+        }
 
-                String expectedAttribute = String.valueOf(fieldMeta.get(Constants.ATTRIBUTE_NAME));
-                int expectedLevel = Integer.parseInt(String.valueOf(fieldMeta.get(Constants.LEVEL)));
-                if (!header.equalsIgnoreCase(expectedAttribute)) {
-                    ProjectUtil.returnErrorMsg(String.format(Constants.HEADER_MISMATCH, header, expectedAttribute, (i + 1)), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
-                    return response;
-                }
-                if (expectedLevel != (i + 1)) {
-                    ProjectUtil.returnErrorMsg(String.format(Constants.LEVEL_MISMATCH, (i + 1), expectedLevel, (i + 1)), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
-                    return response;
-                }
-            }
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row != null) dataRows.add(row);
-            }
-        } catch (Exception e) {
-            ProjectUtil.returnErrorMsg(String.format(Constants.ERROR_READING_EXCEL, e.getMessage()), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+        ArrayNode hierarchy;
+        try {
+            hierarchy = readMasterListHierarchy(customFieldDataList,
+                    handler -> uploadedFileReader.read(file, uploadFormat, handler),
+                    (names, handlers) -> uploadedFileReader.readSheets(file, names, handlers), sheetSelection, null);
+        } catch (CustomException e) {
+            ProjectUtil.returnErrorMsg(e.getMessage(), e.getHttpStatusCode(), response, Constants.FAILED);
             return response;
         }
 
-        // Use the new method to get both hierarchies
-        Map<String, ArrayNode> hierarchies = parseHierarchyWithReversed(headers, dataRows, levels);
+        Map<String, Object> customFieldMap = saveNewMasterList(customFieldsData, userId, hierarchy);
+
+        response.setResponseCode(HttpStatus.OK);
+        response.getParams().setStatus(Constants.SUCCESS);
+        response.setMessage(Constants.SUCCESS);
+        response.setResult(customFieldMap);
+        return response;
+    }
 
+    private Map<String, Object> saveNewMasterList(Map<String, Object> customFieldsData, String userId, ArrayNode hierarchy) {
         Timestamp currentTime = new Timestamp(System.currentTimeMillis());
         String formattedCurrentTime = getFormattedCurrentTime(currentTime);
         customFieldsData.put(Constants.CREATED_BY, userId);
         customFieldsData.put(Constants.CREATED_ON, formattedCurrentTime);
         customFieldsData.put(Constants.UPDATED_ON, formattedCurrentTime);
-        customFieldsData.put(Constants.CUSTOM_FIELD_DATA, hierarchies.get(Constants.CUSTOM_FIELD_DATA));
-        customFieldsData.put(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA, hierarchies.get(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA));
+        customFieldsData.put(Constants.CUSTOM_FIELD_DATA, hierarchy);
         customFieldsData.put(Constants.IS_ACTIVE, true);
 
-        JsonNode jsonNode = objectMapper.valueToTree(customFieldsData);
+        ObjectNode jsonNode = objectMapper.valueToTree(customFieldsData);
         CustomFieldEntity customField = new CustomFieldEntity();
         String customFieldId = UUID.randomUUID().toString();
         customField.setCustomFiledId(customFieldId);
@@ -488,136 +1044,296 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
         customField.setIsActive(true);
         customField.setCreatedOn(currentTime);
         customField.setUpdatedOn(currentTime);
+        customField.setNewEntity(true);
+
+        return transactionTemplate.execute(status -> {
+            writeHierarchy(customFieldId, jsonNode, hierarchy, false);
+            Map<String, Object> customFieldMap = toCustomFieldMap(customFieldId, jsonNode, hierarchy);
+            saveWithOutbox(customField, customFieldMap, false);
+            return customFieldMap;
+        });
+    }
 
-        customFieldRepository.save(customField);
-
-        Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldsData, Map.class);
-        customFieldMap.put(Constants.CUSTOM_FIELD_ID, customFieldId);
-        esUtilService.addDocument(cbServerProperties.getCustomFieldEntity(), customFieldId, customFieldMap, cbServerProperties.getCustomFieldElasticMappingJsonPath());
-        cacheService.putCache(Constants.CUSTOM_FIELD + customFieldId, objectMapper.valueToTree(customFieldMap));
+    /**
+     * Creates one master list per sheet, each named after its sheet, in one transaction.
+     */
+    private List<Map<String, Object>> saveSheetMasterLists(Map<String, Object> customFieldsData, String userId,
+                                                           Map<String, MasterListHierarchyBuilder> builders) {
+        return transactionTemplate.execute(status -> {
+            List<Map<String, Object>> customFieldMaps = new ArrayList<>(builders.size());
+            builders.forEach((sheetName, builder) -> {
+                Map<String, Object> sheetData = new HashMap<>(customFieldsData);
+                sheetData.put(Constants.NAME, String.format(Constants.SHEET_MASTER_LIST_NAME, customFieldsData.get(Constants.NAME), sheetName));
+                customFieldMaps.add(saveNewMasterList(sheetData, userId, builder.build()));
+            });
+            return customFieldMaps;
+        });
+    }
 
-        response.setResponseCode(HttpStatus.OK);
-        response.getParams().setStatus(Constants.SUCCESS);
-        response.setMessage(Constants.SUCCESS);
-        response.setResult(customFieldMap);
+    /**
+     * Queues a master list import and answers with the job, whose status is then read from
+     * {@link #getMasterListImportJob}.
+     */
+    private ApiResponse submitMasterListImport(MasterListImportJob.Operation operation, MultipartFile file, UploadFormat format,
+                                               String userId, ApiResponse response, MasterListImportTask task) {
+        try {
+            MasterListImportJob job = masterListImportJobService.submit(operation, file, format, userId, task);
+            response.setResponseCode(HttpStatus.ACCEPTED);
+            response.getParams().setStatus(Constants.SUCCESS);
+            response.setMessage(Constants.SUCCESS);
+            response.setResult(objectMapper.convertValue(job, Map.class));
+        } catch (CustomException e) {
+            ProjectUtil.returnErrorMsg(e.getMessage(), e.getHttpStatusCode(), response, Constants.FAILED);
+        } catch (IOException e) {
+            log.error("Failed to queue master list import: {}", e.getMessage(), e);
+            ProjectUtil.returnErrorMsg(String.format(Constants.ERROR_READING_UPLOADED_FILE, e.getMessage()), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
+        }
         return response;
     }
 
-    private Map<String, ArrayNode> parseHierarchyWithReversed(String[] headers, List<Row> dataRows, int levels) {
-        ArrayNode root = objectMapper.createArrayNode();
-        // List of maps for each level to track existing nodes
-        List<Map<String, ObjectNode>> levelMaps = new ArrayList<>();
-        for (int i = 0; i < levels; i++) {
-            levelMaps.add(new HashMap<>());
-        }
-
-        for (Row row : dataRows) {
-            ArrayNode currentArray = root;
-            ObjectNode parentNode = null;
-            String parentFieldName = null;
-            String parentFieldValue = null;
-
-            for (int j = 0; j < levels; j++) {
-                Cell valueCell = row.getCell(j);
-                String value = (valueCell != null) ? valueCell.toString().trim() : null;
-                if (value == null || value.isEmpty()) break;
-                String fieldName = headers[j];
-                String key = fieldName + ":" + value + (parentFieldName != null ? "|" + parentFieldName + ":" + parentFieldValue : "");
-
-                Map<String, ObjectNode> currentLevelMap = levelMaps.get(j);
-                ObjectNode foundNode = currentLevelMap.get(key);
-
-                if (foundNode == null) {
-                    ObjectNode newNode = objectMapper.createObjectNode();
-                    newNode.put(Constants.FIELD_NAME, fieldName);
-                    newNode.put(Constants.FIELD_VALUE, value);
-                    newNode.put(Constants.FIELD_ATTRIBUTE, fieldName);
-                    if (parentFieldName != null && parentFieldValue != null) {
-                        newNode.put(Constants.PARENT_FIELD_NAME, parentFieldName);
-                        newNode.put(Constants.PARENT_FIELD_VALUE, parentFieldValue);
-                    }
-                    ArrayNode childArray = objectMapper.createArrayNode();
-                    newNode.set(Constants.FIELD_VALUES, childArray);
-                    currentArray.add(newNode);
-                    currentLevelMap.put(key, newNode);
-                    foundNode = newNode;
-                }
-                parentFieldName = fieldName;
-                parentFieldValue = value;
-                parentNode = foundNode;
-                currentArray = (ArrayNode) foundNode.get(Constants.FIELD_VALUES);
+    @Override
+    public ApiResponse getMasterListImportJob(String jobId, String token) {
+        ApiResponse response = ProjectUtil.createDefaultResponse(Constants.MASTER_LIST_IMPORT_JOB_READ_API);
+        try {
+            String userId = accessTokenValidator.fetchUserIdFromAccessToken(token);
+            if (StringUtils.isBlank(userId)) {
+                ProjectUtil.returnErrorMsg(Constants.INVALID_AUTH_TOKEN, HttpStatus.UNAUTHORIZED, response, Constants.FAILED);
+                return response;
+            }
+            MasterListImportJob job = masterListImportJobService.getJob(jobId);
+            if (job == null) {
+                ProjectUtil.returnErrorMsg(String.format(Constants.MASTER_LIST_IMPORT_JOB_NOT_FOUND, jobId), HttpStatus.NOT_FOUND, response, Constants.FAILED);
+                return response;
             }
+            response.setResponseCode(HttpStatus.OK);
+            response.setMessage(Constants.SUCCESS);
+            response.setResult(objectMapper.convertValue(job, Map.class));
+        } catch (Exception e) {
+            log.error("Failed to read master list import job {}: {}", jobId, e.getMessage(), e);
+            ProjectUtil.returnErrorMsg(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
         }
+        return response;
+    }
 
-        // Helper for reversed hierarchy
-        List<ObjectNode> reversedList = new ArrayList<>();
-        buildReversedHierarchyList(root, new ArrayList<>(), reversedList);
-
-        ArrayNode reversedOrderCustomFieldData = objectMapper.valueToTree(reversedList);
+    /**
+     * @return the format of the uploaded master list file, or null when its extension or
+     * content type is not allowed
+     */
+    private UploadFormat resolveUploadFormat(MultipartFile file) {
+        String fileName = file.getOriginalFilename();
+        String contentType = file.getContentType();
+        UploadFormat format = UploadFormat.fromFileName(fileName);
+        if (format == null || contentType == null) {
+            return null;
+        }
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        if (Arrays.stream(cbServerProperties.getAllowedExtensions().split(","))
+                .noneMatch(extension -> lowerCaseName.endsWith("." + extension.trim()))) {
+            return null;
+        }
 
-        Map<String, ArrayNode> result = new HashMap<>();
-        result.put(Constants.CUSTOM_FIELD_DATA, root);
-        result.put(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA, reversedOrderCustomFieldData);
-        return result;
+        String allowedContentTypes;
+        switch (format) {
+            case CSV:
+            case TSV:
+                allowedContentTypes = cbServerProperties.getAllowedDelimitedContentTypes();
+                break;
+            case NDJSON:
+                allowedContentTypes = cbServerProperties.getAllowedNdjsonContentTypes();
+                break;
+            default:
+                allowedContentTypes = cbServerProperties.getAllowedContentTypes();
+        }
+        // Ignore parameters such as "; charset=UTF-8"
+        String mediaType = contentType.split(";")[0].trim();
+        return Arrays.stream(allowedContentTypes.split(","))
+                .anyMatch(allowed -> allowed.trim().equalsIgnoreCase(mediaType)) ? format : null;
     }
 
-    private void buildReversedHierarchyList(JsonNode node, List<ObjectNode> path, List<ObjectNode> reversedList) {
-        // Handle array nodes - process each child separately
-        if (node.isArray()) {
-            for (JsonNode child : node) {
-                buildReversedHierarchyList(child, new ArrayList<>(), reversedList);
-            }
-            return;
+    /**
+     * Streams the rows of the uploaded file into the hierarchy builder. The header row is
+     * checked against the level metadata before any data row is read, and data rows are not
+     * kept once they have been added to the tree.
+     *
+     * @param progress counts the data rows of an asynchronous import, may be null
+     * @throws CustomException if the file cannot be read or does not match the level metadata
+     */
+    private ArrayNode readMasterListHierarchy(List<?> customFieldDataList, MasterListRowSource rowSource,
+                                                           MasterListImportProgress progress) {
+        MasterListHierarchyBuilder builder = new MasterListHierarchyBuilder(customFieldDataList.size());
+        try {
+            rowSource.read(masterListRowHandler(builder, customFieldDataList, progress));
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.ERROR_READING_UPLOADED_FILE, e.getMessage()), HttpStatus.BAD_REQUEST);
+        }
+        if (!builder.hasHeaders()) {
+            throw new CustomException(Constants.FAILED, Constants.EXCEL_HEADER_ROW_REQUIRED, HttpStatus.BAD_REQUEST);
         }
+        return builder.build();
+    }
 
-        // Add current node to the path
-        path.add((ObjectNode) node);
+    /**
+     * Reads the hierarchy from the first sheet of the upload or, when sheets are selected, from
+     * those sheets merged in workbook order.
+     *
+     * @param sheetSelection the selected sheets, null for the first sheet only
+     */
+    private ArrayNode readMasterListHierarchy(List<?> customFieldDataList, MasterListRowSource rowSource,
+                                              MasterListSheetSource sheetSource, SheetSelection sheetSelection,
+                                              MasterListImportProgress progress) {
+        if (sheetSelection == null) {
+            return readMasterListHierarchy(customFieldDataList, rowSource, progress);
+        }
+        Iterator<MasterListHierarchyBuilder> builders = readMasterListSheets(customFieldDataList, sheetSource, sheetSelection, progress)
+                .values().iterator();
+        MasterListHierarchyBuilder merged = builders.next();
+        while (builders.hasNext()) {
+            merged.merge(builders.next());
+        }
+        return merged.build();
+    }
 
-        // Get children if any
-        ArrayNode children = (ArrayNode) node.get(Constants.FIELD_VALUES);
+    /**
+     * Reads the selected sheets of a workbook concurrently into one builder per sheet. Each
+     * sheet has its own header row, checked against the level metadata. Sheets without any row
+     * are left out.
+     *
+     * @return the builders by sheet name, in workbook order
+     * @throws CustomException if a sheet cannot be read or does not match the level metadata
+     */
+    private Map<String, MasterListHierarchyBuilder> readMasterListSheets(List<?> customFieldDataList, MasterListSheetSource sheetSource,
+                                                                         SheetSelection sheetSelection, MasterListImportProgress progress) {
+        Map<String, MasterListHierarchyBuilder> builders = new LinkedHashMap<>();
+        try {
+            sheetSource.read(sheetSelection.names(), sheetName -> {
+                MasterListHierarchyBuilder builder = new MasterListHierarchyBuilder(customFieldDataList.size());
+                builders.put(sheetName, builder);
+                RowHandler handler = masterListRowHandler(builder, customFieldDataList, progress);
+                return (rowIndex, cells) -> {
+                    try {
+                        handler.row(rowIndex, cells);
+                    } catch (CustomException e) {
+                        throw new CustomException(e.getCode(), String.format(Constants.SHEET_ERROR, sheetName, e.getMessage()), e.getHttpStatusCode());
+                    }
+                };
+            });
+        } catch (CustomException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.ERROR_READING_UPLOADED_FILE, e.getMessage()), HttpStatus.BAD_REQUEST);
+        }
+        builders.values().removeIf(builder -> !builder.hasHeaders());
+        if (builders.isEmpty()) {
+            throw new CustomException(Constants.FAILED, Constants.EXCEL_HEADER_ROW_REQUIRED, HttpStatus.BAD_REQUEST);
+        }
+        return builders;
+    }
 
-        if (children == null || children.isEmpty()) {
-            // This is a leaf node - create the reversed hierarchy
-            ObjectNode reversedNode = null;
+    /**
+     * Checks the header row and adds every following row to the builder.
+     */
+    private RowHandler masterListRowHandler(MasterListHierarchyBuilder builder, List<?> customFieldDataList,
+                                            MasterListImportProgress progress) {
+        return (rowIndex, cells) -> {
+            if (builder.hasHeaders()) {
+                builder.addRow(cells);
+                if (progress != null) {
+                    progress.rowProcessed();
+                }
+            } else if (rowIndex == 0) {
+                builder.setHeaders(validateMasterListHeaders(cells, customFieldDataList));
+            } else {
+                throw new CustomException(Constants.FAILED, Constants.EXCEL_HEADER_ROW_REQUIRED, HttpStatus.BAD_REQUEST);
+            }
+        };
+    }
 
-            // Start from leaf (last in path) and work up to root
-            for (int i = 0; i < path.size(); i++) {
-                ObjectNode current = objectMapper.createObjectNode();
-                final ObjectNode nodeAtI = path.get(i);
+    /**
+     * Feeds the rows of an uploaded file, from the request or from its spooled copy, to a handler.
+     */
+    @FunctionalInterface
+    private interface MasterListRowSource {
+        void read(RowHandler handler) throws IOException;
+    }
 
-                // Copy all fields except fieldValues
-                nodeAtI.fieldNames().forEachRemaining(field -> {
-                    if (!Constants.FIELD_VALUES.equals(field)) {
-                        current.set(field, nodeAtI.get(field));
-                    }
-                });
+    /**
+     * Feeds the rows of the named sheets of an uploaded workbook, or of all of them when the
+     * names are null, each to its own handler.
+     */
+    @FunctionalInterface
+    private interface MasterListSheetSource {
+        void read(Set<String> sheetNames, Function<String, RowHandler> handlers) throws IOException;
+    }
 
-                if (reversedNode == null) {
-                    // First node (leaf) gets empty fieldValues
-                    current.set(Constants.FIELD_VALUES, objectMapper.createArrayNode());
-                    reversedNode = current;
-                } else {
-                    // Parent nodes get the previous node as child
-                    ArrayNode arr = objectMapper.createArrayNode();
-                    arr.add(reversedNode);
-                    current.set(Constants.FIELD_VALUES, arr);
-                    reversedNode = current;
+    /**
+     * The sheets selected by a multi-sheet upload.
+     *
+     * @param names the selected sheets, null for all of them
+     */
+    private record SheetSelection(Set<String> names) {
+
+        /**
+         * @param sheets         the sheet names of the request, {@link Constants#ALL_SHEETS} for all sheets
+         * @param separateSheets whether each sheet becomes its own master list, which reads all
+         *                       sheets unless some are named
+         * @return the selection, or null when only the first sheet is read
+         */
+        static SheetSelection of(List<String> sheets, boolean separateSheets) {
+            if (sheets == null || sheets.isEmpty()) {
+                return separateSheets ? new SheetSelection(null) : null;
+            }
+            Set<String> names = new LinkedHashSet<>();
+            for (String sheet : sheets) {
+                if (Constants.ALL_SHEETS.equals(sheet.trim())) {
+                    return new SheetSelection(null);
+                }
+                if (!sheet.trim().isEmpty()) {
+                    names.add(sheet.trim());
                 }
             }
+            return new SheetSelection(names);
+        }
+    }
 
-            // Add the reversed hierarchy to the result list
-            reversedList.add(reversedNode);
-        } else {
-            // For non-leaf nodes, process each child
-            for (JsonNode child : children) {
-                // Use a copy of the path for each child branch
-                buildReversedHierarchyList(child, new ArrayList<>(path), reversedList);
+    /**
+     * Checks the header row against the attribute name and level of each entry in customFieldData.
+     *
+     * @return the header of each level
+     */
+    private String[] validateMasterListHeaders(String[] headerRow, List<?> customFieldDataList) {
+        int fileColumns = headerRow.length;
+        int jsonLevels = customFieldDataList.size();
+        int maxLevel = cbServerProperties.getCustomFieldMaxLevel();
+        if (fileColumns > jsonLevels) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.EXCEL_MORE_COLUMNS_THAN_LEVELS, fileColumns, jsonLevels), HttpStatus.BAD_REQUEST);
+        }
+        if (fileColumns > maxLevel) {
+            throw new CustomException(Constants.FAILED, String.format(Constants.EXCEL_MORE_THAN_MAX_LEVELS, maxLevel), HttpStatus.BAD_REQUEST);
+        }
+
+        String[] headers = new String[jsonLevels];
+        for (int i = 0; i < jsonLevels; i++) {
+            String header = i < fileColumns && headerRow[i] != null ? headerRow[i].trim() : "";
+            Map<?, ?> fieldMeta = (Map<?, ?>) customFieldDataList.get(i);
+
+            String expectedAttribute = String.valueOf(fieldMeta.get(Constants.ATTRIBUTE_NAME));
+            int expectedLevel = Integer.parseInt(String.valueOf(fieldMeta.get(Constants.LEVEL)));
+            if (!header.equalsIgnoreCase(expectedAttribute)) {
+                throw new CustomException(Constants.FAILED, String.format(Constants.HEADER_MISMATCH, header, expectedAttribute, (i + 1)), HttpStatus.BAD_REQUEST);
+            }
+            if (expectedLevel != (i + 1)) {
+                throw new CustomException(Constants.FAILED, String.format(Constants.LEVEL_MISMATCH, (i + 1), expectedLevel, (i + 1)), HttpStatus.BAD_REQUEST);
             }
+            headers[i] = header;
         }
+        return headers;
     }
 
     @Override
-    public ApiResponse updateMasterListCustomField(MultipartFile file, String customFieldsMasterDataJson, String token) {
+    public ApiResponse updateMasterListCustomField(MultipartFile file, String customFieldsMasterDataJson, String token, boolean async,
+                                                   List<String> sheets) {
         ApiResponse response = ProjectUtil.createDefaultResponse("customFields.update.masterList");
         log.info("CustomFieldsServiceImpl::updateMasterListCustomField: Updating master list custom field");
         try {
@@ -650,23 +1366,16 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
             }
 
             CustomFieldEntity existingCustomField = customFieldOpt.get();
-            JsonNode existingData = existingCustomField.getCustomFieldData();
+            String customFieldId = existingCustomField.getCustomFiledId();
 
             if (file == null || file.isEmpty()) {
                 ProjectUtil.returnErrorMsg(Constants.UPLOADED_FILE_IS_EMPTY, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
                 return response;
             }
 
-            String fileName = file.getOriginalFilename();
-            String contentType = file.getContentType();
-            List<String> extensions = Arrays.asList(cbServerProperties.getAllowedExtensions().split(","));
-            List<String> contentTypes = Arrays.asList(cbServerProperties.getAllowedContentTypes().split(","));
-
-            if (fileName == null ||
-                    extensions.stream().noneMatch(fileName::endsWith) ||
-                    contentType == null ||
-                    contentTypes.stream().noneMatch(contentType::equals)) {
-                ProjectUtil.returnErrorMsg(Constants.ONLY_EXCEL_FILES_ALLOWED, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+            UploadFormat uploadFormat = resolveUploadFormat(file);
+            if (uploadFormat == null) {
+                ProjectUtil.returnErrorMsg(Constants.UNSUPPORTED_UPLOAD_FILE, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
                 return response;
             }
 
@@ -682,126 +1391,307 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
                 return response;
             }
 
-            String[] headers;
-            int levels;
-            List<Row> dataRows = new ArrayList<>();
+            SheetSelection sheetSelection = SheetSelection.of(sheets, false);
+            if (sheetSelection != null && uploadFormat != UploadFormat.EXCEL) {
+                ProjectUtil.returnErrorMsg(Constants.SHEETS_REQUIRE_WORKBOOK, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+                return response;
+            }
 
-            try (InputStream is = file.getInputStream(); Workbook workbook = new XSSFWorkbook(is)) {
-                Sheet sheet = workbook.getSheetAt(0);
-                Row headerRow = sheet.getRow(0);
-                if (headerRow == null) {
-                    ProjectUtil.returnErrorMsg(Constants.EXCEL_HEADER_ROW_REQUIRED, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
-                    return response;
-                }
+            // Checked before the file is parsed, so re-uploading the current file costs one read of its bytes
+            String uploadDigest = computeUploadDigest(file, customFieldDataList, sheetSelection);
+            if (isSameUpload(existingCustomField, uploadDigest, customFieldsData)) {
+                log.info("CustomFieldsServiceImpl::updateMasterListCustomField: Custom field {} already holds this upload", customFieldId);
+                response.setResponseCode(HttpStatus.OK);
+                response.getParams().setStatus(Constants.SUCCESS);
+                response.setMessage(Constants.SUCCESS);
+                response.setResult(unchangedMasterList(existingCustomField, readHierarchy(existingCustomField)));
+                return response;
+            }
+            customFieldsData.put(Constants.UPLOAD_DIGEST, uploadDigest);
+
+            if (async) {
+                return submitMasterListImport(MasterListImportJob.Operation.UPDATE, file, uploadFormat, userId, response,
+                        (spoolFile, progress) -> {
+                            // The field may have changed or been deleted while the job was queued
+                            Map<String, Object> customFieldMap = updateMasterListOnce(customFieldId, uploadDigest, customFieldsData, currentCustomField -> {
+                                ArrayNode hierarchy = readMasterListHierarchy(customFieldDataList,
+                                        handler -> uploadedFileReader.read(spoolFile, uploadFormat, handler),
+                                        (names, handlers) -> uploadedFileReader.readSheets(spoolFile, names, handlers), sheetSelection, progress);
+                                progress.phase(MasterListImportJob.Phase.SAVING);
+                                return saveUpdatedMasterList(currentCustomField, customFieldsData, userId, hierarchy);
+                            });
+                            progress.changes((Map<String, Object>) customFieldMap.get(Constants.CHANGES));
+                            return customFieldId;
+                        });
+            }
 
-                int excelColumns = headerRow.getLastCellNum();
-                int jsonLevels = customFieldDataList.size();
+            Map<String, Object> customFieldMap;
+            try {
+                customFieldMap = updateMasterListOnce(customFieldId, uploadDigest, customFieldsData, currentCustomField -> {
+                    ArrayNode hierarchy = readMasterListHierarchy(customFieldDataList,
+                            handler -> uploadedFileReader.read(file, uploadFormat, handler),
+                            (names, handlers) -> uploadedFileReader.readSheets(file, names, handlers), sheetSelection, null);
+                    return saveUpdatedMasterList(currentCustomField, customFieldsData, userId, hierarchy);
+                });
+            } catch (CustomException e) {
+                ProjectUtil.returnErrorMsg(e.getMessage(), e.getHttpStatusCode(), response, Constants.FAILED);
+                return response;
+            }
 
-                if (excelColumns > jsonLevels) {
-                    ProjectUtil.returnErrorMsg(
-                            String.format(Constants.EXCEL_MORE_COLUMNS_THAN_LEVELS, excelColumns, jsonLevels),
-                            HttpStatus.BAD_REQUEST, response, Constants.FAILED
-                    );
-                    return response;
-                }
+            response.setResponseCode(HttpStatus.OK);
+            response.getParams().setStatus(Constants.SUCCESS);
+            response.setMessage(Constants.SUCCESS);
+            response.setResult(customFieldMap);
+            return response;
+        }catch (Exception e) {
+            log.error("Exception in updateMasterListCustomField: {}", e.getMessage(), e);
+            ProjectUtil.returnErrorMsg("Failed to update master list custom field: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
+            return response;
+        }
+    }
 
-                if (excelColumns > maxLevel) {
-                    ProjectUtil.returnErrorMsg(String.format(Constants.EXCEL_MORE_THAN_MAX_LEVELS, maxLevel), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
-                    return response;
-                }
+    /**
+     * Hashes what decides the hierarchy: the uploaded bytes, the level definitions and the
+     * selected sheets. The rest of the metadata is left out, so a create and an update of the
+     * same upload give the same digest. Map keys are sorted first, so the same levels in another
+     * key order give the same digest.
+     */
+    private String computeUploadDigest(MultipartFile file, List<?> customFieldDataList,
+                                       SheetSelection sheetSelection) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = file.getInputStream()) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        digest.update(objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS).writeValueAsBytes(customFieldDataList));
+        if (sheetSelection != null) {
+            String sheets = sheetSelection.names() == null ? Constants.ALL_SHEETS : String.join("\n", sheetSelection.names());
+            digest.update(sheets.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
-                levels = jsonLevels;
+    /**
+     * @return the digest of the metadata sent with an upload, apart from the level definitions
+     * covered by the upload digest
+     */
+    private String metadataDigest(Map<String, Object> customFieldsData) throws IOException {
+        Map<String, Object> metadata = new HashMap<>(customFieldsData);
+        metadata.remove(Constants.CUSTOM_FIELD_DATA);
+        metadata.remove(Constants.UPLOAD_DIGEST);
+        return HexFormat.of().formatHex(sha256().digest(
+                objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS).writeValueAsBytes(metadata)));
+    }
 
-                headers = new String[levels];
-                for (int j = 0; j < levels; j++) {
-                    headers[j] = headerRow.getCell(j).getStringCellValue();
-                }
-                for (int i = 0; i < levels; i++) {
-                    Cell headerCell = headerRow.getCell(i);
-                    if (headerCell == null) continue;
-                    String header = headerCell.getStringCellValue().trim();
-                    Map<?, ?> fieldMeta = (Map<?, ?>) customFieldDataList.get(i);
-
-                    String expectedAttribute = String.valueOf(fieldMeta.get(Constants.ATTRIBUTE_NAME));
-                    int expectedLevel = Integer.parseInt(String.valueOf(fieldMeta.get(Constants.LEVEL)));
-                    if (!header.equalsIgnoreCase(expectedAttribute)) {
-                        ProjectUtil.returnErrorMsg(String.format(Constants.HEADER_MISMATCH, header, expectedAttribute, (i + 1)), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
-                        return response;
-                    }
-                    if (expectedLevel != (i + 1)) {
-                        ProjectUtil.returnErrorMsg(String.format(Constants.LEVEL_MISMATCH, (i + 1), expectedLevel, (i + 1)), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
-                        return response;
-                    }
-                }
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance(Constants.SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-                for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                    Row row = sheet.getRow(i);
-                    if (row != null) dataRows.add(row);
-                }
-            } catch (Exception e) {
-                ProjectUtil.returnErrorMsg(String.format(Constants.ERROR_READING_EXCEL, e.getMessage()), HttpStatus.BAD_REQUEST, response, Constants.FAILED);
-                return response;
+    /**
+     * @return whether the custom field already holds the upload, and the update would write the
+     * same metadata again
+     */
+    private boolean isSameUpload(CustomFieldEntity customField, String uploadDigest, Map<String, Object> customFieldsData) {
+        JsonNode existingData = customField.getCustomFieldData();
+        if (!uploadDigest.equals(existingData.path(Constants.UPLOAD_DIGEST).asText(null))) {
+            return false;
+        }
+        Map<String, Object> updatedData = new HashMap<>(customFieldsData);
+        preserveMasterListFields(existingData, updatedData);
+        updatedData.put(Constants.UPLOAD_DIGEST, uploadDigest);
+        return sameMasterListMetadata(existingData, objectMapper.valueToTree(updatedData));
+    }
+
+    /**
+     * Runs the update against the current state of the custom field, unless that state already
+     * holds the upload. An identical upload with the same metadata arriving while the update
+     * runs waits for it and gets its result.
+     */
+    private Map<String, Object> updateMasterListOnce(String customFieldId, String uploadDigest, Map<String, Object> customFieldsData,
+                                                     Function<CustomFieldEntity, Map<String, Object>> update) throws Exception {
+        String key = customFieldId + ":" + uploadDigest + ":" + metadataDigest(customFieldsData);
+        return masterListUpdates.execute(key, () -> {
+            CustomFieldEntity currentCustomField = customFieldRepository.findByCustomFiledIdAndIsActiveTrue(customFieldId)
+                    .orElseThrow(() -> new CustomException(Constants.FAILED, "Custom field not found with ID: " + customFieldId, HttpStatus.NOT_FOUND));
+            if (isSameUpload(currentCustomField, uploadDigest, customFieldsData)) {
+                return unchangedMasterList(currentCustomField, readHierarchy(currentCustomField));
             }
+            return update.apply(currentCustomField);
+        });
+    }
 
-            // Use the method to get both hierarchies
-            Map<String, ArrayNode> hierarchies = parseHierarchyWithReversed(headers, dataRows, levels);
+    private Map<String, Object> unchangedMasterList(CustomFieldEntity customField, JsonNode hierarchy) {
+        Map<String, Object> customFieldMap = objectMapper.convertValue(customField.getCustomFieldData(), Map.class);
+        customFieldMap.remove(Constants.STORAGE_LAYOUT);
+        customFieldMap.put(Constants.CUSTOM_FIELD_DATA, hierarchy);
+        customFieldMap.put(Constants.CUSTOM_FIELD_ID, customField.getCustomFiledId());
+        customFieldMap.put(Constants.CHANGES, MasterListDiff.none().toSummary());
+        return customFieldMap;
+    }
 
-            Timestamp currentTime = new Timestamp(System.currentTimeMillis());
-            String formattedCurrentTime = getFormattedCurrentTime(currentTime);
+    private Map<String, Object> saveUpdatedMasterList(CustomFieldEntity existingCustomField, Map<String, Object> customFieldsData,
+                                                      String userId, ArrayNode hierarchy) {
+        JsonNode existingData = existingCustomField.getCustomFieldData();
+        JsonNode existingHierarchy = readHierarchy(existingCustomField);
+        MasterListDiff diff = MasterListDiff.compare(existingHierarchy, hierarchy,
+                cbServerProperties.getMasterListDiffMaxReportedChanges());
+        Timestamp currentTime = new Timestamp(System.currentTimeMillis());
+        String formattedCurrentTime = getFormattedCurrentTime(currentTime);
 
-            // Preserve original creation info and other fields
-            ObjectNode existingDataNode = (ObjectNode) existingData;
-            if (existingDataNode.has(Constants.CREATED_BY)) {
-                customFieldsData.put(Constants.CREATED_BY, existingDataNode.get(Constants.CREATED_BY).asText());
-            }
-            if (existingDataNode.has(Constants.CREATED_ON)) {
-                customFieldsData.put(Constants.CREATED_ON, existingDataNode.get(Constants.CREATED_ON).asText());
-            }
+        preserveMasterListFields(existingData, customFieldsData);
+        customFieldsData.put(Constants.UPDATED_BY, userId);
+        customFieldsData.put(Constants.UPDATED_ON, formattedCurrentTime);
+        customFieldsData.put(Constants.CUSTOM_FIELD_DATA, hierarchy);
 
-            customFieldsData.put(Constants.UPDATED_BY, userId);
-            customFieldsData.put(Constants.UPDATED_ON, formattedCurrentTime);
-            customFieldsData.put(Constants.CUSTOM_FIELD_DATA, hierarchies.get(Constants.CUSTOM_FIELD_DATA));
-            customFieldsData.put(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA, hierarchies.get(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA));
-            customFieldsData.put(Constants.IS_ACTIVE, true);
+        JsonNode jsonNode = objectMapper.valueToTree(customFieldsData);
+        if (diff.isEmpty() && sameMasterListMetadata(existingData, jsonNode)) {
+            // Nothing to write: keep the stored document, ES and the cache as they are
+            log.info("CustomFieldsServiceImpl::saveUpdatedMasterList: No changes to custom field {}", existingCustomField.getCustomFiledId());
+            return unchangedMasterList(existingCustomField, existingHierarchy);
+        }
 
-            // Preserve other important fields if present in existing data
-            if (existingDataNode.has(Constants.IS_MANDATORY)) {
-                customFieldsData.put(Constants.IS_MANDATORY, existingDataNode.get(Constants.IS_MANDATORY).asBoolean());
-            }
-            if (existingDataNode.has(Constants.IS_ENABLED)) {
-                customFieldsData.put(Constants.IS_ENABLED, existingDataNode.get(Constants.IS_ENABLED).asBoolean());
-            }
+        boolean storedAsNodes = isNodeLayout(existingData);
+        existingCustomField.setCustomFieldData(jsonNode);
+        existingCustomField.setUpdatedOn(currentTime);
+
+        // Update database, ES document and Redis cache
+        Map<String, Object> customFieldMap = transactionTemplate.execute(status -> {
+            writeHierarchy(existingCustomField.getCustomFiledId(), (ObjectNode) jsonNode, hierarchy, storedAsNodes);
+            Map<String, Object> document = toCustomFieldMap(existingCustomField.getCustomFiledId(), jsonNode, hierarchy);
+            saveWithOutbox(existingCustomField, document, false);
+            return document;
+        });
+        customFieldMap.put(Constants.CHANGES, diff.toSummary());
+        return customFieldMap;
+    }
 
-            JsonNode jsonNode = objectMapper.valueToTree(customFieldsData);
-            existingCustomField.setCustomFieldData(jsonNode);
-            existingCustomField.setUpdatedOn(currentTime);
+    /**
+     * Carries the creation info and the flags of the stored custom field over to the data an
+     * upload replaces it with.
+     */
+    private static void preserveMasterListFields(JsonNode existingData, Map<String, Object> customFieldsData) {
+        if (existingData.has(Constants.CREATED_BY)) {
+            customFieldsData.put(Constants.CREATED_BY, existingData.get(Constants.CREATED_BY).asText());
+        }
+        if (existingData.has(Constants.CREATED_ON)) {
+            customFieldsData.put(Constants.CREATED_ON, existingData.get(Constants.CREATED_ON).asText());
+        }
+        customFieldsData.put(Constants.IS_ACTIVE, true);
+        if (existingData.has(Constants.IS_MANDATORY)) {
+            customFieldsData.put(Constants.IS_MANDATORY, existingData.get(Constants.IS_MANDATORY).asBoolean());
+        }
+        if (existingData.has(Constants.IS_ENABLED)) {
+            customFieldsData.put(Constants.IS_ENABLED, existingData.get(Constants.IS_ENABLED).asBoolean());
+        }
+    }
 
-            customFieldRepository.save(existingCustomField);
+    /**
+     * Compares everything but the hierarchy and the update audit fields. A document that still
+     * holds the materialized reversed view is always treated as changed so that it gets rewritten
+     * without it.
+     */
+    private boolean sameMasterListMetadata(JsonNode existingData, JsonNode updatedData) {
+        if (existingData.has(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA)
+                || isNodeLayout(existingData) != cbServerProperties.isMasterListNodeStorage()) {
+            return false;
+        }
+        Set<String> fieldNames = new HashSet<>();
+        existingData.fieldNames().forEachRemaining(fieldNames::add);
+        updatedData.fieldNames().forEachRemaining(fieldNames::add);
+        fieldNames.removeAll(MASTER_LIST_DIFF_IGNORED_FIELDS);
+        for (String fieldName : fieldNames) {
+            if (!existingData.path(fieldName).equals(updatedData.path(fieldName))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-            Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldsData, Map.class);
-            customFieldMap.put(Constants.CUSTOM_FIELD_ID, payloadNode.get(Constants.CUSTOM_FIELD_ID).asText());
+    @Override
+    public ApiResponse patchMasterListNodes(String customFieldId, JsonNode patchRequest, String token) {
+        log.info("CustomFieldsServiceImpl::patchMasterListNodes: Patching nodes of custom field {}", customFieldId);
+        ApiResponse response = ProjectUtil.createDefaultResponse(Constants.MASTER_LIST_NODES_PATCH_API);
+        payloadValidation.validatePayload(cbServerProperties.getCustomFieldNodesPatchValidationFilePath(), patchRequest);
+        try {
+            String userId = accessTokenValidator.fetchUserIdFromAccessToken(token);
+            if (StringUtils.isBlank(userId)) {
+                ProjectUtil.returnErrorMsg(Constants.INVALID_AUTH_TOKEN, HttpStatus.UNAUTHORIZED, response, Constants.FAILED);
+                return response;
+            }
 
-            // Update ES document
-            esUtilService.updateDocument(
-                    cbServerProperties.getCustomFieldEntity(),
-                    payloadNode.get(Constants.CUSTOM_FIELD_ID).asText(),
-                    customFieldMap,
-                    cbServerProperties.getCustomFieldElasticMappingJsonPath()
-            );
+            // The version is the updatedOn time in millis, as returned by the children and suggest APIs
+            long version = patchRequest.get(Constants.VERSION).asLong();
+            JsonNode operations = patchRequest.get(Constants.OPERATIONS);
+            Long updatedOn = transactionTemplate.execute(status -> {
+                // The row lock makes the version check and the write atomic
+                CustomFieldEntity customField = customFieldRepository.findActiveForUpdate(customFieldId)
+                        .orElseThrow(() -> new CustomException(Constants.FAILED, "Custom field not found with ID: " + customFieldId, HttpStatus.NOT_FOUND));
+                ObjectNode customFieldData = (ObjectNode) customField.getCustomFieldData();
+                long currentVersion = customField.getUpdatedOn().getTime();
+                if (version != currentVersion) {
+                    throw new CustomException(Constants.FAILED, String.format(Constants.MASTER_LIST_VERSION_CONFLICT, customFieldId, currentVersion), HttpStatus.CONFLICT);
+                }
+                boolean storedAsNodes = isNodeLayout(customFieldData);
+                // Edited in place in the node tables, a few indexed statements per operation,
+                // without reading the hierarchy; otherwise the document is edited and rewritten
+                boolean editNodes = storedAsNodes && cbServerProperties.isMasterListNodeStorage();
+                int maxLevel = cbServerProperties.getCustomFieldMaxLevel();
+                ArrayNode tree = null;
+                if (editNodes) {
+                    MasterListNodeEditor.Tree<Integer> nodes = masterListNodeStore.editor(customFieldId);
+                    for (JsonNode operation : operations) {
+                        MasterListNodeEditor.apply(nodes, operation, maxLevel);
+                    }
+                } else {
+                    if (!(readHierarchy(customField) instanceof ArrayNode hierarchy)) {
+                        throw new CustomException(Constants.FAILED, String.format(Constants.NOT_A_MASTER_LIST, customFieldId), HttpStatus.BAD_REQUEST);
+                    }
+                    tree = hierarchy;
+                    for (JsonNode operation : operations) {
+                        MasterListNodeEditor.apply(tree, operation, maxLevel);
+                    }
+                }
 
-            // Update Redis cache
-            cacheService.putCache(Constants.CUSTOM_FIELD + payloadNode.get(Constants.CUSTOM_FIELD_ID).asText(), objectMapper.valueToTree(customFieldMap));
+                Timestamp currentTime = new Timestamp(System.currentTimeMillis());
+                String formattedCurrentTime = getFormattedCurrentTime(currentTime);
+                customFieldData.remove(Constants.REVERSED_ORDER_CUSTOM_FIELD_DATA);
+                // The hierarchy no longer matches the last upload
+                customFieldData.remove(Constants.UPLOAD_DIGEST);
+                customFieldData.put(Constants.UPDATED_BY, userId);
+                customFieldData.put(Constants.UPDATED_ON, formattedCurrentTime);
+                customField.setCustomFieldData(customFieldData);
+                customField.setUpdatedOn(currentTime);
+
+                if (editNodes) {
+                    saveWithOutboxReload(customField);
+                } else {
+                    customFieldData.remove(Constants.STORAGE_LAYOUT);
+                    customFieldData.set(Constants.CUSTOM_FIELD_DATA, tree);
+                    writeHierarchy(customFieldId, customFieldData, tree, storedAsNodes);
+                    saveWithOutbox(customField, toCustomFieldMap(customFieldId, customFieldData, tree), false);
+                }
+                // Moved past the stored version when this node's clock is behind
+                return customField.getUpdatedOn().getTime();
+            });
 
             response.setResponseCode(HttpStatus.OK);
-            response.getParams().setStatus(Constants.SUCCESS);
             response.setMessage(Constants.SUCCESS);
-            response.setResult(customFieldMap);
-            return response;
-        }catch (Exception e) {
-            log.error("Exception in updateMasterListCustomField: {}", e.getMessage(), e);
-            ProjectUtil.returnErrorMsg("Failed to update master list custom field: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
-            return response;
+            response.getResult().put(Constants.CUSTOM_FIELD_ID, customFieldId);
+            response.getResult().put(Constants.VERSION, updatedOn);
+            response.getResult().put(Constants.OPERATIONS, operations.size());
+        } catch (CustomException e) {
+            ProjectUtil.returnErrorMsg(e.getMessage(), e.getHttpStatusCode(), response, Constants.FAILED);
+        } catch (Exception e) {
+            log.error("Failed to patch master list nodes: {}", e.getMessage(), e);
+            ProjectUtil.returnErrorMsg(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
         }
+        return response;
     }
 
     @Override
@@ -838,29 +1728,20 @@ public class CustomFieldsServiceImpl implements CustomFieldsService {
                 return response;
             }
 
-            ObjectNode customFieldDataNode = (ObjectNode) customFieldData;
-            customFieldDataNode.put(Constants.IS_ENABLED, isEnabled);
-            customFieldDataNode.put(Constants.UPDATED_BY, userId);
-
             Timestamp currentTime = new Timestamp(System.currentTimeMillis());
             String formattedCurrentTime = getFormattedCurrentTime(currentTime);
-            customFieldDataNode.put(Constants.UPDATED_ON, formattedCurrentTime);
+            ObjectNode changes = objectMapper.createObjectNode();
+            changes.put(Constants.IS_ENABLED, isEnabled);
+            changes.put(Constants.UPDATED_BY, userId);
+            changes.put(Constants.UPDATED_ON, formattedCurrentTime);
+            ObjectNode customFieldDataNode = (ObjectNode) customFieldData;
+            customFieldDataNode.setAll(changes);
 
             customField.setCustomFieldData(customFieldDataNode);
             customField.setUpdatedOn(currentTime);
-            customFieldRepository.save(customField);
-
-            Map<String, Object> customFieldMap = objectMapper.convertValue(customFieldDataNode, Map.class);
-            customFieldMap.put(Constants.CUSTOM_FIELD_ID, customFieldId);
-
-            esUtilService.updateDocument(
-                    cbServerProperties.getCustomFieldEntity(),
-                    customFieldId,
-                    customFieldMap,
-                    cbServerProperties.getCustomFieldElasticMappingJsonPath()
-            );
 
-            cacheService.putCache(Constants.CUSTOM_FIELD + customFieldId, objectMapper.valueToTree(customFieldMap));
+            saveChangesWithOutbox(customField, changes);
+            Map<String, Object> customFieldMap = toMetadataMap(customFieldId, customFieldDataNode);
 
             response.setResponseCode(HttpStatus.OK);
             response.getParams().setStatus(Constants.SUCCESS);
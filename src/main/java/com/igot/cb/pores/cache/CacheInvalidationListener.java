@@ -0,0 +1,26 @@
+package com.igot.cb.pores.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+@Component
+@Slf4j
+public class CacheInvalidationListener implements MessageListener {
+
+  @Autowired
+  private CacheService cacheService;
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    try {
+      cacheService.onInvalidationMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+    } catch (Exception e) {
+      log.error("Error while handling cache invalidation message: {} ", e.getMessage());
+    }
+  }
+}
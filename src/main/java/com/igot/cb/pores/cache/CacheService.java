@@ -1,39 +1,124 @@
 package com.igot.cb.pores.cache;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.igot.cb.pores.util.Constants;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Two-tier cache: a bounded in-process L1 in front of Redis. Every write or delete
+ * is broadcast on the invalidation channel so that other nodes drop their L1 copy.
+ * Values are stored in the binary form produced by {@link CacheValueCodec}.
+ * <p>
+ * Values read from the database on a miss go through {@link #fillCache}, which never
+ * replaces an existing entry, so a late read-through cannot overwrite a newer value
+ * written by {@link #putCache} or {@link #writeAllCache}.
+ */
 @Service
 @Slf4j
 public class CacheService {
 
+  private static final String INVALIDATION_SEPARATOR = "|";
+
   @Autowired
   private RedisTemplate<String, String> redisTemplate;
   @Autowired
-  private ObjectMapper objectMapper;
+  @Qualifier(Constants.CACHE_REDIS_TEMPLATE)
+  private RedisTemplate<String, byte[]> cacheRedisTemplate;
+  @Autowired
+  private CacheValueCodec cacheValueCodec;
 
   @Value("${spring.redis.cacheTtl}")
   private long cacheTtl;
 
+  @Value("${cache.local.max.weight}")
+  private long localCacheMaxWeight;
+
+  @Value("${cache.local.ttl}")
+  private long localCacheTtl;
+
+  @Value("${cache.invalidation.channel}")
+  private String invalidationChannel;
+
+  private final String nodeId = UUID.randomUUID().toString();
+
+  private Cache<String, byte[]> localCache;
+
+  // Bumped on every L1 invalidation; values read from Redis are only kept in L1 when no
+  // invalidation arrived while they were being read
+  private final AtomicLong invalidations = new AtomicLong();
+
+  @PostConstruct
+  public void initLocalCache() {
+    localCache = Caffeine.newBuilder()
+            .maximumWeight(localCacheMaxWeight)
+            .weigher((String key, byte[] value) -> key.length() + value.length)
+            .expireAfterWrite(localCacheTtl, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+  }
 
   public void putCache(String key, Object object) {
     try {
-      String data = objectMapper.writeValueAsString(object);
-      redisTemplate.opsForValue().set(key, data, cacheTtl, TimeUnit.SECONDS);
+      byte[] data = cacheValueCodec.encode(object);
+      cacheRedisTemplate.opsForValue().set(key, data, cacheTtl, TimeUnit.SECONDS);
+      localCache.put(key, data);
+      publishInvalidation(key);
     } catch (Exception e) {
+      invalidateLocal(key);
       log.error("Error while putting data in Redis cache: {} ", e.getMessage());
     }
   }
 
-  public String getCache(String key) {
+  /**
+   * Caches a value read from the database after a {@link #getCache} miss. Unlike
+   * {@link #putCache}, the value is only stored when the key is absent from Redis and no
+   * invalidation is published, since the value may already be older than one written
+   * in the meantime.
+   */
+  public void fillCache(String key, Object object) {
     try {
-      return redisTemplate.opsForValue().get(key);
+      byte[] data = cacheValueCodec.encode(object);
+      long seen = invalidations.get();
+      Boolean stored = cacheRedisTemplate.opsForValue().setIfAbsent(key, data, cacheTtl, TimeUnit.SECONDS);
+      if (Boolean.TRUE.equals(stored)) {
+        putLocalIfCurrent(key, data, seen);
+      }
+    } catch (Exception e) {
+      log.error("Error while filling data in Redis cache: {} ", e.getMessage());
+    }
+  }
+
+  public <T> T getCache(String key, Class<T> valueType) {
+    try {
+      byte[] data = localCache.getIfPresent(key);
+      if (data == null) {
+        long seen = invalidations.get();
+        data = cacheRedisTemplate.opsForValue().get(key);
+        if (data == null) {
+          return null;
+        }
+        putLocalIfCurrent(key, data, seen);
+      }
+      return cacheValueCodec.decode(data, valueType);
     } catch (Exception e) {
       log.error("Error while getting data from Redis cache: {} ", e.getMessage());
       return null;
@@ -41,7 +126,9 @@ public class CacheService {
   }
 
   public Long deleteCache(String key) {
-    boolean result = redisTemplate.delete(key);
+    invalidateLocal(key);
+    boolean result = cacheRedisTemplate.delete(key);
+    publishInvalidation(key);
     if (result) {
       log.info("Field deleted successfully from key {}.", key);
     } else {
@@ -49,4 +136,81 @@ public class CacheService {
     }
     return null;
   }
+
+  /**
+   * Stores and evicts several entries in one pipelined round trip, publishing an invalidation
+   * for each key in the same pipeline. Unlike {@link #putCache}, failures are thrown so that the
+   * caller can retry.
+   *
+   * @param entries     values to store, by key
+   * @param evictedKeys keys to remove
+   */
+  public void writeAllCache(Map<String, ?> entries, Collection<String> evictedKeys) throws IOException {
+    Map<String, byte[]> encoded = new LinkedHashMap<>();
+    for (Map.Entry<String, ?> entry : entries.entrySet()) {
+      encoded.put(entry.getKey(), cacheValueCodec.encode(entry.getValue()));
+    }
+    byte[] channel = invalidationChannel.getBytes(StandardCharsets.UTF_8);
+    cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+      encoded.forEach((key, data) -> {
+        connection.stringCommands().set(key.getBytes(StandardCharsets.UTF_8), data,
+                Expiration.seconds(cacheTtl), RedisStringCommands.SetOption.upsert());
+        connection.publish(channel, invalidationMessage(key));
+      });
+      for (String key : evictedKeys) {
+        connection.keyCommands().del(key.getBytes(StandardCharsets.UTF_8));
+        connection.publish(channel, invalidationMessage(key));
+      }
+      return null;
+    });
+    encoded.forEach(localCache::put);
+    evictedKeys.forEach(this::invalidateLocal);
+  }
+
+  /**
+   * Handles an invalidation message received on the invalidation channel. Messages
+   * published by this node are ignored since its L1 already holds the latest value.
+   *
+   * @param message the raw message in the form {@code <nodeId>|<key>}
+   */
+  public void onInvalidationMessage(String message) {
+    int separatorIndex = message.indexOf(INVALIDATION_SEPARATOR);
+    if (separatorIndex < 0) {
+      log.warn("Ignoring malformed cache invalidation message: {}", message);
+      return;
+    }
+    if (nodeId.equals(message.substring(0, separatorIndex))) {
+      return;
+    }
+    String key = message.substring(separatorIndex + 1);
+    invalidateLocal(key);
+    log.debug("Evicted local cache entry {} on remote invalidation", key);
+  }
+
+  private void invalidateLocal(String key) {
+    invalidations.incrementAndGet();
+    localCache.invalidate(key);
+  }
+
+  /**
+   * Keeps a value read from Redis in L1 unless an invalidation arrived after {@code seen}
+   * was read or another value was cached for the key meanwhile.
+   */
+  private void putLocalIfCurrent(String key, byte[] data, long seen) {
+    if (invalidations.get() == seen) {
+      localCache.asMap().putIfAbsent(key, data);
+    }
+  }
+
+  private void publishInvalidation(String key) {
+    try {
+      redisTemplate.convertAndSend(invalidationChannel, nodeId + INVALIDATION_SEPARATOR + key);
+    } catch (Exception e) {
+      log.error("Error while publishing cache invalidation for key {}: {} ", key, e.getMessage());
+    }
+  }
+
+  private byte[] invalidationMessage(String key) {
+    return (nodeId + INVALIDATION_SEPARATOR + key).getBytes(StandardCharsets.UTF_8);
+  }
 }
@@ -0,0 +1,87 @@
+package com.igot.cb.pores.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Encodes cache values into a compact binary form.
+ * <p>
+ * Layout of an encoded value: {@code MAGIC, formatId, flags[, uncompressedLength], payload}.
+ * The payload is LZ4 compressed when it is larger than the configured threshold.
+ * Values without the magic byte are legacy JSON strings written before the header
+ * existed and are decoded as JSON text.
+ */
+@Component
+@Slf4j
+public class CacheValueCodec {
+
+  private static final byte MAGIC = (byte) 0xCF;
+  private static final byte FLAG_LZ4 = 0x01;
+  private static final int HEADER_LENGTH = 3;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${cache.value.format}")
+  private String format;
+
+  @Value("${cache.value.compression.threshold}")
+  private int compressionThreshold;
+
+  private final Map<CacheValueFormat, ObjectMapper> mappers = new EnumMap<>(CacheValueFormat.class);
+  private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+  private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+  private CacheValueFormat writeFormat;
+
+  @PostConstruct
+  public void init() {
+    for (CacheValueFormat valueFormat : CacheValueFormat.values()) {
+      mappers.put(valueFormat, objectMapper.copyWith(valueFormat.newFactory()));
+    }
+    writeFormat = CacheValueFormat.valueOf(format.trim().toUpperCase());
+    log.info("Cache values are encoded as {} with LZ4 above {} bytes", writeFormat, compressionThreshold);
+  }
+
+  public byte[] encode(Object value) throws IOException {
+    byte[] payload = mappers.get(writeFormat).writeValueAsBytes(value);
+    if (payload.length > compressionThreshold) {
+      byte[] compressed = compressor.compress(payload);
+      if (compressed.length < payload.length) {
+        return ByteBuffer.allocate(HEADER_LENGTH + Integer.BYTES + compressed.length)
+                .put(MAGIC).put(writeFormat.getId()).put(FLAG_LZ4)
+                .putInt(payload.length)
+                .put(compressed)
+                .array();
+      }
+    }
+    return ByteBuffer.allocate(HEADER_LENGTH + payload.length)
+            .put(MAGIC).put(writeFormat.getId()).put((byte) 0)
+            .put(payload)
+            .array();
+  }
+
+  public <T> T decode(byte[] data, Class<T> valueType) throws IOException {
+    if (data.length < HEADER_LENGTH || data[0] != MAGIC) {
+      return objectMapper.readValue(data, valueType);
+    }
+    ObjectMapper mapper = mappers.get(CacheValueFormat.fromId(data[1]));
+    if ((data[2] & FLAG_LZ4) == 0) {
+      return mapper.readValue(data, HEADER_LENGTH, data.length - HEADER_LENGTH, valueType);
+    }
+    int uncompressedLength = ByteBuffer.wrap(data, HEADER_LENGTH, Integer.BYTES).getInt();
+    byte[] payload = decompressor.decompress(data, HEADER_LENGTH + Integer.BYTES, uncompressedLength);
+    return mapper.readValue(payload, valueType);
+  }
+}
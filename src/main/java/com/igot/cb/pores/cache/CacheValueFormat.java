@@ -0,0 +1,46 @@
+package com.igot.cb.pores.cache;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encodings supported for values stored through {@link CacheService}. The id is
+ * written into the value header so entries stay readable when the configured
+ * format changes.
+ */
+public enum CacheValueFormat {
+  JSON((byte) 0),
+  SMILE((byte) 1),
+  CBOR((byte) 2);
+
+  private final byte id;
+
+  CacheValueFormat(byte id) {
+    this.id = id;
+  }
+
+  public byte getId() {
+    return id;
+  }
+
+  public JsonFactory newFactory() {
+    switch (this) {
+      case SMILE:
+        return new SmileFactory();
+      case CBOR:
+        return new CBORFactory();
+      default:
+        return new JsonFactory();
+    }
+  }
+
+  public static CacheValueFormat fromId(byte id) {
+    for (CacheValueFormat format : values()) {
+      if (format.id == id) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unknown cache value format id: " + id);
+  }
+}
@@ -0,0 +1,125 @@
+package com.igot.cb.pores.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+import com.igot.cb.pores.elasticsearch.dto.SearchResult;
+import com.igot.cb.pores.util.CbServerProperties;
+import com.igot.cb.pores.util.Constants;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches Elasticsearch search results per index. Keys are built from the normalized search
+ * criteria and the index generation; every write to the index bumps the generation, so results
+ * cached before the write are never served again and simply expire.
+ */
+@Service
+@Slf4j
+public class SearchResultCacheService {
+
+  @Autowired
+  @Qualifier(Constants.SEARCH_RESULT_REDIS_TEMPLATE)
+  private RedisTemplate<String, SearchResult> searchResultRedisTemplate;
+  @Autowired
+  private RedisTemplate<String, String> redisTemplate;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private CbServerProperties cbServerProperties;
+
+  private ObjectMapper keyMapper;
+
+  @PostConstruct
+  public void init() {
+    keyMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+  }
+
+  /**
+   * Builds the cache key of a search against the current generation of the index. The same key
+   * must be used to store the result, so that a write landing during the search leaves the
+   * result under the superseded generation.
+   *
+   * @return the cache key, or null if it could not be built
+   */
+  public String getCacheKey(String esIndexName, SearchCriteria searchCriteria) {
+    try {
+      return buildKey(esIndexName, searchCriteria);
+    } catch (Exception e) {
+      log.error("Error while building search result cache key: {} ", e.getMessage());
+      return null;
+    }
+  }
+
+  public SearchResult getSearchResult(String cacheKey) {
+    try {
+      return searchResultRedisTemplate.opsForValue().get(cacheKey);
+    } catch (Exception e) {
+      log.error("Error while getting search result from Redis cache: {} ", e.getMessage());
+      return null;
+    }
+  }
+
+  public void putSearchResult(String cacheKey, SearchResult searchResult) {
+    try {
+      searchResultRedisTemplate.opsForValue().set(cacheKey, searchResult,
+              cbServerProperties.getSearchResultRedisTtl(), TimeUnit.SECONDS);
+    } catch (Exception e) {
+      log.error("Error while putting search result in Redis cache: {} ", e.getMessage());
+    }
+  }
+
+  /**
+   * Bumps the generation of the index so that every search result cached for it is skipped.
+   *
+   * @param esIndexName the index that was written to
+   */
+  public void invalidate(String esIndexName) {
+    try {
+      redisTemplate.opsForValue().increment(Constants.SEARCH_GENERATION + esIndexName);
+    } catch (Exception e) {
+      log.error("Error while bumping search result generation of {}: {} ", esIndexName, e.getMessage());
+    }
+  }
+
+  private String buildKey(String esIndexName, SearchCriteria searchCriteria) throws Exception {
+    String generation = redisTemplate.opsForValue().get(Constants.SEARCH_GENERATION + esIndexName);
+    Map<String, Object> normalized = new TreeMap<>();
+    normalized.put("filterCriteriaMap", searchCriteria.getFilterCriteriaMap());
+    normalized.put("requestedFields", sorted(searchCriteria.getRequestedFields()));
+    normalized.put("facets", sorted(searchCriteria.getFacets()));
+    normalized.put("pageNumber", searchCriteria.getPageNumber());
+    normalized.put("pageSize", searchCriteria.getPageSize());
+    normalized.put("orderBy", searchCriteria.getOrderBy());
+    normalized.put("orderDirection", searchCriteria.getOrderDirection());
+    normalized.put("searchString", searchCriteria.getSearchString());
+    normalized.put("query", searchCriteria.getQuery());
+    byte[] digest = MessageDigest.getInstance(Constants.SHA_256).digest(
+            keyMapper.writeValueAsString(normalized).getBytes(StandardCharsets.UTF_8));
+    return Constants.SEARCH_RESULT + esIndexName + "_" + (generation == null ? "0" : generation)
+            + "_" + HexFormat.of().formatHex(digest);
+  }
+
+  private List<String> sorted(List<String> values) {
+    if (values == null) {
+      return null;
+    }
+    List<String> sortedValues = new ArrayList<>(values);
+    Collections.sort(sortedValues);
+    return sortedValues;
+  }
+}
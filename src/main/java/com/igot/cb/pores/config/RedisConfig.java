@@ -1,5 +1,6 @@
 package com.igot.cb.pores.config;
 
+import com.igot.cb.pores.cache.CacheInvalidationListener;
 import com.igot.cb.pores.elasticsearch.dto.SearchResult;
 import com.igot.cb.pores.util.Constants;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -14,6 +15,10 @@ import org.springframework.data.redis.connection.lettuce.LettuceClientConfigurat
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 
@@ -29,6 +34,9 @@ public class RedisConfig {
   @Value("${spring.redis.port}")
   private int redisPort;
 
+  @Value("${cache.invalidation.channel}")
+  private String cacheInvalidationChannel;
+
   private final long redisTimeout = 60000;
 
   @Bean
@@ -62,12 +70,31 @@ public class RedisConfig {
     return redisTemplate;
   }
 
+  @Bean(name = Constants.CACHE_REDIS_TEMPLATE)
+  public RedisTemplate<String, byte[]> cacheRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+    template.setConnectionFactory(redisConnectionFactory);
+    template.setKeySerializer(new StringRedisSerializer());
+    template.setValueSerializer(RedisSerializer.byteArray());
+    return template;
+  }
+
   @Bean(name = Constants.SEARCH_RESULT_REDIS_TEMPLATE)
   public RedisTemplate<String, SearchResult> searchResultRedisTemplate(
           @Qualifier(Constants.REDIS_CONNECTION_FACTORY) RedisConnectionFactory redisConnectionFactory) {
     RedisTemplate<String, SearchResult> template = new RedisTemplate<>();
     template.setConnectionFactory(redisConnectionFactory);
     template.setKeySerializer(new StringRedisSerializer());
+    template.setValueSerializer(new Jackson2JsonRedisSerializer<>(SearchResult.class));
     return template;
   }
+
+  @Bean
+  public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+          RedisConnectionFactory redisConnectionFactory, CacheInvalidationListener cacheInvalidationListener) {
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(redisConnectionFactory);
+    container.addMessageListener(cacheInvalidationListener, new ChannelTopic(cacheInvalidationChannel));
+    return container;
+  }
 }
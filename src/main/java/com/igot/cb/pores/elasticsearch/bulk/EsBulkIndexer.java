@@ -0,0 +1,482 @@
+package com.igot.cb.pores.elasticsearch.bulk;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.igot.cb.pores.cache.SearchResultCacheService;
+import com.igot.cb.pores.exceptions.CustomException;
+import com.igot.cb.pores.util.Constants;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queues index operations and sends them to Elasticsearch as bulk requests from a single
+ * worker thread.
+ * <p>
+ * A batch is flushed when it reaches {@code elasticsearch.bulk.batch.size} operations or
+ * {@code elasticsearch.bulk.batch.bytes} of UTF-8 source, when an operation asks for
+ * {@link IndexConsistency#WAIT_FOR}, or after {@code elasticsearch.bulk.flush.interval.ms}.
+ * Operations on the same index and id that are still queued are coalesced into the latest
+ * document, or, for a partial update, into the queued document with its fields set. Failed items are retried with exponential backoff; since every operation carries
+ * its id, retries are idempotent. An item rejected with any other status fails at once with a
+ * {@link CustomException} carrying that status, as sending it again would fail the same way.
+ */
+@Component
+@Slf4j
+public class EsBulkIndexer {
+
+  private static final Set<Integer> RETRYABLE_STATUSES = Set.of(429, 502, 503, 504);
+
+  @Autowired
+  private ElasticsearchClient elasticsearchClient;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private SearchResultCacheService searchResultCacheService;
+
+  @Value("${elasticsearch.bulk.max.queued}")
+  private int maxQueued;
+
+  @Value("${elasticsearch.bulk.batch.size}")
+  private int batchSize;
+
+  @Value("${elasticsearch.bulk.batch.bytes}")
+  private long batchBytes;
+
+  @Value("${elasticsearch.bulk.flush.interval.ms}")
+  private long flushIntervalMs;
+
+  @Value("${elasticsearch.bulk.max.retries}")
+  private int maxRetries;
+
+  @Value("${elasticsearch.bulk.retry.backoff.ms}")
+  private long retryBackoffMs;
+
+  @Value("${elasticsearch.bulk.enqueue.timeout.ms}")
+  private long enqueueTimeoutMs;
+
+  @Value("${elasticsearch.index.refresh.interval.ms}")
+  private long refreshIntervalMs;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition flushNeeded = lock.newCondition();
+  private final Condition spaceAvailable = lock.newCondition();
+  private final LinkedHashMap<String, PendingOperation> pending = new LinkedHashMap<>();
+  private long pendingBytes;
+  private int pendingWaitFor;
+  private volatile boolean running = true;
+  private Thread worker;
+  private ScheduledExecutorService scheduler;
+
+  @PostConstruct
+  public void init() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "es-bulk-invalidation");
+      thread.setDaemon(true);
+      return thread;
+    });
+    worker = new Thread(this::runWorker, "es-bulk-indexer");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    lock.lock();
+    try {
+      running = false;
+      flushNeeded.signalAll();
+      spaceAvailable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      worker.join(TimeUnit.SECONDS.toMillis(30));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    scheduler.shutdown();
+  }
+
+  /**
+   * Queues an index operation. The document is serialized immediately to UTF-8 bytes, which are
+   * queued and later copied into the bulk body as is, so the caller may keep modifying it after
+   * this returns.
+   *
+   * @param index       the target index
+   * @param id          the document id
+   * @param document    the document, serialized with the application's ObjectMapper
+   * @param consistency whether the returned future waits for the document to be searchable
+   * @return a future completed once the operation has been applied or has finally failed
+   */
+  public CompletableFuture<Void> index(String index, String id, Object document, IndexConsistency consistency) {
+    return enqueue(index, id, document, false, consistency);
+  }
+
+  /**
+   * Queues a partial update, which sets the top level fields of the document on the indexed
+   * one. It fails with a {@link CustomException} when the document is not in the index.
+   *
+   * @see #index
+   */
+  public CompletableFuture<Void> update(String index, String id, Object partialDocument, IndexConsistency consistency) {
+    return enqueue(index, id, partialDocument, true, consistency);
+  }
+
+  private CompletableFuture<Void> enqueue(String index, String id, Object document, boolean partial,
+                                          IndexConsistency consistency) {
+    byte[] source;
+    try {
+      source = objectMapper.writeValueAsBytes(document);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    String key = index + "/" + id;
+    lock.lock();
+    try {
+      PendingOperation operation = pending.get(key);
+      if (operation != null) {
+        byte[] merged = partial ? merge(operation.source, source) : source;
+        pendingBytes += merged.length - operation.source.length;
+        operation.source = merged;
+        operation.partial = operation.partial && partial;
+      } else {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(enqueueTimeoutMs);
+        while (running && pending.size() >= maxQueued) {
+          if (remainingNanos <= 0) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Bulk indexing queue is full"));
+          }
+          remainingNanos = spaceAvailable.awaitNanos(remainingNanos);
+        }
+        if (!running) {
+          return CompletableFuture.failedFuture(new IllegalStateException("Bulk indexer is shut down"));
+        }
+        operation = new PendingOperation(index, id, source, partial);
+        pending.put(key, operation);
+        pendingBytes += source.length;
+      }
+      if (consistency == IndexConsistency.WAIT_FOR && operation.consistency != IndexConsistency.WAIT_FOR) {
+        operation.consistency = IndexConsistency.WAIT_FOR;
+        pendingWaitFor++;
+      }
+      operation.futures.add(future);
+      flushNeeded.signal();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return CompletableFuture.failedFuture(e);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    } finally {
+      lock.unlock();
+    }
+    return future;
+  }
+
+  /**
+   * @return the queued document with the top level fields of the partial document set on it
+   */
+  private byte[] merge(byte[] source, byte[] partialSource) throws IOException {
+    ObjectNode merged = (ObjectNode) objectMapper.readTree(source);
+    merged.setAll((ObjectNode) objectMapper.readTree(partialSource));
+    return objectMapper.writeValueAsBytes(merged);
+  }
+
+  private boolean flushDue() {
+    return pending.size() >= batchSize || pendingBytes >= batchBytes || pendingWaitFor > 0;
+  }
+
+  private void runWorker() {
+    while (true) {
+      List<PendingOperation> batch;
+      lock.lock();
+      try {
+        while (running && pending.isEmpty()) {
+          flushNeeded.await();
+        }
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running && !flushDue() && remainingNanos > 0) {
+          remainingNanos = flushNeeded.awaitNanos(remainingNanos);
+        }
+        if (pending.isEmpty()) {
+          if (!running) {
+            return;
+          }
+          continue;
+        }
+        batch = drain();
+        spaceAvailable.signalAll();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        lock.unlock();
+      }
+      send(batch);
+    }
+  }
+
+  private List<PendingOperation> drain() {
+    List<PendingOperation> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+    long bytes = 0;
+    Iterator<PendingOperation> iterator = pending.values().iterator();
+    while (iterator.hasNext() && batch.size() < batchSize && (batch.isEmpty() || bytes < batchBytes)) {
+      PendingOperation operation = iterator.next();
+      iterator.remove();
+      batch.add(operation);
+      bytes += operation.source.length;
+      if (operation.consistency == IndexConsistency.WAIT_FOR) {
+        pendingWaitFor--;
+      }
+    }
+    pendingBytes -= bytes;
+    return batch;
+  }
+
+  private void send(List<PendingOperation> batch) {
+    boolean waitFor = batch.stream().anyMatch(operation -> operation.consistency == IndexConsistency.WAIT_FOR);
+    List<PendingOperation> remaining = batch;
+    for (int attempt = 0; ; attempt++) {
+      try {
+        remaining = execute(remaining, waitFor);
+      } catch (Exception e) {
+        log.error("Bulk request of {} operations failed on attempt {}: {}", remaining.size(), attempt + 1, e.getMessage());
+      }
+      if (remaining.isEmpty()) {
+        break;
+      }
+      if (attempt >= maxRetries) {
+        log.error("Giving up on {} bulk operations after {} attempts", remaining.size(), attempt + 1);
+        remaining.forEach(operation -> operation.fail(new IllegalStateException("Bulk indexing failed for id " + operation.id)));
+        break;
+      }
+      try {
+        Thread.sleep(retryBackoffMs << attempt);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        remaining.forEach(operation -> operation.fail(e));
+        break;
+      }
+    }
+    Set<String> indexes = new HashSet<>();
+    batch.forEach(operation -> indexes.add(operation.index));
+    indexes.forEach(searchResultCacheService::invalidate);
+    if (!waitFor) {
+      // Documents become searchable on the next refresh; drop results cached until then
+      scheduler.schedule(() -> indexes.forEach(searchResultCacheService::invalidate), refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Sends one bulk request and completes the operations that succeeded or failed permanently.
+   *
+   * @return the operations that failed with a retryable status
+   */
+  private List<PendingOperation> execute(List<PendingOperation> operations, boolean waitFor) throws IOException {
+    List<BulkOperation> bulkOperations = new ArrayList<>(operations.size());
+    for (PendingOperation operation : operations) {
+      if (operation.partial) {
+        bulkOperations.add(BulkOperation.of(b -> b
+                .update(u -> u
+                        .index(operation.index)
+                        .id(operation.id)
+                        .action(a -> a.doc(new RawJsonDocument(operation.source)))
+                )
+        ));
+      } else {
+        bulkOperations.add(BulkOperation.of(b -> b
+                .index(i -> i
+                        .index(operation.index)
+                        .id(operation.id)
+                        .document(new RawJsonDocument(operation.source))
+                )
+        ));
+      }
+    }
+    BulkRequest bulkRequest = BulkRequest.of(b -> {
+      b.operations(bulkOperations);
+      if (waitFor) {
+        b.refresh(Refresh.WaitFor);
+      }
+      return b;
+    });
+    BulkResponse response = elasticsearchClient.bulk(bulkRequest);
+    List<PendingOperation> retry = new ArrayList<>();
+    List<BulkResponseItem> items = response.items();
+    for (int i = 0; i < items.size(); i++) {
+      BulkResponseItem item = items.get(i);
+      PendingOperation operation = operations.get(i);
+      if (item.error() == null) {
+        operation.complete();
+      } else if (RETRYABLE_STATUSES.contains(item.status())) {
+        retry.add(operation);
+      } else {
+        log.error("Bulk index of id {} in {} failed: {}", operation.id, operation.index, item.error().reason());
+        HttpStatus status = HttpStatus.resolve(item.status());
+        operation.fail(new CustomException(Constants.FAILED, item.error().reason(),
+                status != null ? status : HttpStatus.BAD_REQUEST));
+      }
+    }
+    return retry;
+  }
+
+  private static class PendingOperation {
+    private final String index;
+    private final String id;
+    private byte[] source;
+    private boolean partial;
+    private IndexConsistency consistency = IndexConsistency.NONE;
+    private final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+
+    private PendingOperation(String index, String id, byte[] source, boolean partial) {
+      this.index = index;
+      this.id = id;
+      this.source = source;
+      this.partial = partial;
+    }
+
+    private void complete() {
+      futures.forEach(future -> future.complete(null));
+    }
+
+    private void fail(Throwable cause) {
+      futures.forEach(future -> future.completeExceptionally(cause));
+    }
+  }
+
+  /**
+   * A document that has already been serialized to UTF-8; its bytes are written to the bulk body
+   * as is. A generator writing characters rather than bytes falls back to decoding them.
+   */
+  private static class RawJsonDocument implements JsonSerializable, SerializableString {
+    private final byte[] source;
+
+    private RawJsonDocument(byte[] source) {
+      this.source = source;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+      gen.writeRawValue(this);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+      serialize(gen, serializers);
+    }
+
+    @Override
+    public String getValue() {
+      return new String(source, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int charLength() {
+      return getValue().length();
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+      return source;
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+      if (offset + source.length > buffer.length) {
+        return -1;
+      }
+      System.arraycopy(source, 0, buffer, offset, source.length);
+      return source.length;
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+      return decoded().appendUnquoted(buffer, offset);
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+      out.write(source);
+      return source.length;
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer out) {
+      if (out.remaining() < source.length) {
+        return -1;
+      }
+      out.put(source);
+      return source.length;
+    }
+
+    // Quoting needs the characters escaped, which only the decoded value gives
+
+    @Override
+    public char[] asQuotedChars() {
+      return decoded().asQuotedChars();
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+      return decoded().asQuotedUTF8();
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+      return decoded().appendQuotedUTF8(buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+      return decoded().appendQuoted(buffer, offset);
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+      return decoded().writeQuotedUTF8(out);
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) {
+      return decoded().putQuotedUTF8(buffer);
+    }
+
+    private SerializedString decoded() {
+      return new SerializedString(getValue());
+    }
+  }
+}
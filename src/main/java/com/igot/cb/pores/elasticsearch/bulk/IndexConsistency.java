@@ -0,0 +1,17 @@
+package com.igot.cb.pores.elasticsearch.bulk;
+
+/**
+ * How long a write waits before it is acknowledged to the caller.
+ */
+public enum IndexConsistency {
+  /**
+   * Return as soon as the operation is queued; it becomes searchable after the bulk flush
+   * and the next index refresh.
+   */
+  NONE,
+  /**
+   * Wait until the bulk request carrying the operation has completed with
+   * {@code refresh=wait_for}, i.e. until the document is visible to search.
+   */
+  WAIT_FOR
+}
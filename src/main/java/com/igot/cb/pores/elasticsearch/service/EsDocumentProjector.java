@@ -0,0 +1,172 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.igot.cb.pores.util.Constants;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Field whitelist compiled once from an ES mapping file. Documents are projected by
+ * wrapping them in a {@link ProjectedDocument}, which writes only the mapped fields while the
+ * request body is serialized, so the source document is neither copied nor modified.
+ * When the mapping has {@link Constants#HIERARCHY_PATH_TOKENS}, the tokens of the document's
+ * hierarchy are derived while it is written, so every path that indexes through a projector
+ * gets them.
+ * The mapped type of each field is kept for query building.
+ */
+public class EsDocumentProjector {
+
+    public enum FieldType {
+        KEYWORD, TEXT, NESTED, DATE, BOOLEAN, NUMBER, OTHER;
+
+        static FieldType of(Object mappingType) {
+            if (mappingType == null) {
+                return OTHER;
+            }
+            switch (mappingType.toString()) {
+                case "keyword":
+                    return KEYWORD;
+                case "text":
+                    return TEXT;
+                case "nested":
+                    return NESTED;
+                case "date":
+                    return DATE;
+                case "boolean":
+                    return BOOLEAN;
+                case Constants.NUMBER:
+                case Constants.LONG:
+                case "integer":
+                case "short":
+                case "byte":
+                case "double":
+                case "float":
+                    return NUMBER;
+                default:
+                    return OTHER;
+            }
+        }
+    }
+
+    private final Map<String, FieldType> fieldTypes;
+
+    private EsDocumentProjector(Map<String, FieldType> fieldTypes) {
+        this.fieldTypes = Collections.unmodifiableMap(fieldTypes);
+    }
+
+    /**
+     * Compiles the projector from a mapping of field name to its ES field definition.
+     *
+     * @param mapping the parsed mapping file
+     * @return the compiled projector
+     */
+    public static EsDocumentProjector compile(Map<String, Object> mapping) {
+        Map<String, FieldType> fieldTypes = new HashMap<>();
+        mapping.forEach((field, definition) -> {
+            Object type = definition instanceof Map ? ((Map<?, ?>) definition).get(Constants.TYPE) : null;
+            fieldTypes.put(field, FieldType.of(type));
+        });
+        return new EsDocumentProjector(fieldTypes);
+    }
+
+    public boolean isMapped(String field) {
+        return fieldTypes.containsKey(field);
+    }
+
+    /**
+     * @return the mapped type of the field, or null when the field is not in the mapping
+     */
+    public FieldType getFieldType(String field) {
+        return fieldTypes.get(field);
+    }
+
+    public boolean isType(String field, FieldType fieldType) {
+        return fieldTypes.get(field) == fieldType;
+    }
+
+    public ProjectedDocument project(Map<String, Object> document) {
+        return new ProjectedDocument(document, null);
+    }
+
+    public ProjectedDocument project(JsonNode document) {
+        return new ProjectedDocument(null, document);
+    }
+
+    /**
+     * A view over a source document that serializes only the fields present in the mapping.
+     */
+    public class ProjectedDocument implements JsonSerializable {
+        private final Map<String, Object> mapSource;
+        private final JsonNode nodeSource;
+
+        private ProjectedDocument(Map<String, Object> mapSource, JsonNode nodeSource) {
+            this.mapSource = mapSource;
+            this.nodeSource = nodeSource;
+        }
+
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject();
+            writeFields(gen, serializers);
+            gen.writeEndObject();
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+                throws IOException {
+            WritableTypeId typeId = typeSer.writeTypePrefix(gen, typeSer.typeId(this, JsonToken.START_OBJECT));
+            writeFields(gen, serializers);
+            typeSer.writeTypeSuffix(gen, typeId);
+        }
+
+        private void writeFields(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            boolean hierarchyTokens = fieldTypes.containsKey(Constants.HIERARCHY_PATH_TOKENS);
+            Object hierarchy = null;
+            if (mapSource != null) {
+                for (Map.Entry<String, Object> entry : mapSource.entrySet()) {
+                    if (hierarchyTokens && Constants.CUSTOM_FIELD_DATA.equals(entry.getKey())) {
+                        hierarchy = entry.getValue();
+                    }
+                    if (fieldTypes.containsKey(entry.getKey()) && !isDerived(entry.getKey(), hierarchyTokens)) {
+                        gen.writeFieldName(entry.getKey());
+                        serializers.defaultSerializeValue(entry.getValue(), gen);
+                    }
+                }
+            } else if (nodeSource != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = nodeSource.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    if (hierarchyTokens && Constants.CUSTOM_FIELD_DATA.equals(field.getKey())) {
+                        hierarchy = field.getValue();
+                    }
+                    if (fieldTypes.containsKey(field.getKey()) && !isDerived(field.getKey(), hierarchyTokens)) {
+                        gen.writeFieldName(field.getKey());
+                        gen.writeTree(field.getValue());
+                    }
+                }
+            }
+            if (hierarchy != null) {
+                gen.writeFieldName(Constants.HIERARCHY_PATH_TOKENS);
+                gen.writeStartArray();
+                for (String token : HierarchyPathTokens.of(hierarchy)) {
+                    gen.writeString(token);
+                }
+                gen.writeEndArray();
+            }
+        }
+
+        private boolean isDerived(String field, boolean hierarchyTokens) {
+            return hierarchyTokens && Constants.HIERARCHY_PATH_TOKENS.equals(field);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.igot.cb.pores.elasticsearch.service;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.igot.cb.pores.elasticsearch.bulk.IndexConsistency;
 import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
 import com.igot.cb.pores.elasticsearch.dto.SearchResult;
 
@@ -13,8 +14,12 @@ import java.util.Map;
 public interface EsUtilService {
   String addDocument(String esIndexName, String id, Map<String, Object> document, String jsonFilePath);
 
+  String addDocument(String esIndexName, String id, Map<String, Object> document, String jsonFilePath, IndexConsistency consistency);
+
   String updateDocument(String index, String entityId, Map<String, Object> document, String jsonFilePath);
 
+  String updateDocument(String index, String entityId, Map<String, Object> document, String jsonFilePath, IndexConsistency consistency);
+
   void deleteDocument(String documentId, String esIndexName);
 
   void deleteDocumentsByCriteria(String esIndexName, Query query);
@@ -2,7 +2,6 @@ package com.igot.cb.pores.elasticsearch.service;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.FieldValue;
-import co.elastic.clients.elasticsearch._types.Refresh;
 import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
@@ -22,6 +21,9 @@ import co.elastic.clients.json.JsonData;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.cache.SearchResultCacheService;
+import com.igot.cb.pores.elasticsearch.bulk.EsBulkIndexer;
+import com.igot.cb.pores.elasticsearch.bulk.IndexConsistency;
 import com.igot.cb.pores.exceptions.CustomException;
 import com.igot.cb.pores.util.Constants;
 import com.igot.cb.pores.elasticsearch.config.EsConfig;
@@ -30,8 +32,8 @@ import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
 import com.igot.cb.pores.elasticsearch.dto.SearchResult;
 import com.networknt.schema.JsonSchemaFactory;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections.MapUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
@@ -39,7 +41,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -47,10 +52,21 @@ import java.util.stream.Collectors;
 public class EsUtilServiceImpl implements EsUtilService {
     private final ElasticsearchClient elasticsearchClient;
     private static final Map<String, Map<String, Object>> schemaCache = new ConcurrentHashMap<>();
+    private static final Map<String, EsDocumentProjector> projectorCache = new ConcurrentHashMap<>();
 
     @Autowired
     private ObjectMapper objectMapper;
     @Autowired
+    private SearchResultCacheService searchResultCacheService;
+    @Autowired
+    private EsBulkIndexer esBulkIndexer;
+
+    @Value("${elasticsearch.index.default.consistency}")
+    private IndexConsistency defaultConsistency;
+
+    @Value("${elasticsearch.index.wait.for.timeout.ms}")
+    private long waitForTimeoutMs;
+    @Autowired
     public EsUtilServiceImpl(ElasticsearchClient elasticsearchClient) {
         this.elasticsearchClient = elasticsearchClient;
     }
@@ -58,28 +74,16 @@ public class EsUtilServiceImpl implements EsUtilService {
     @Override
     public String addDocument(
             String esIndexName, String id, Map<String, Object> document, String JsonFilePath) {
+        return addDocument(esIndexName, id, document, JsonFilePath, defaultConsistency);
+    }
+
+    @Override
+    public String addDocument(
+            String esIndexName, String id, Map<String, Object> document, String JsonFilePath,
+            IndexConsistency consistency) {
         try {
-            JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance();
-            InputStream schemaStream = schemaFactory.getClass().getResourceAsStream(JsonFilePath);
-            Map<String, Object> map = objectMapper.readValue(schemaStream,
-                    new TypeReference<Map<String, Object>>() {
-                    });
-            Iterator<Entry<String, Object>> iterator = document.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Entry<String, Object> entry = iterator.next();
-                String key = entry.getKey();
-                if (!map.containsKey(key)) {
-                    iterator.remove();
-                }
-            }
-            IndexRequest<Map<String,Object>> indexRequest = new IndexRequest.Builder<Map<String, Object>>()
-                    .index(esIndexName)
-                    .id(id)
-                    .document(document)
-                    .refresh(Refresh.True)
-                    .build();
-            IndexResponse response = elasticsearchClient.index(indexRequest);
-            return "Successfully indexed document with id: " + response.result();
+            indexDocument(esIndexName, id, document, JsonFilePath, consistency);
+            return "Successfully indexed document with id: " + id;
         } catch (Exception e) {
             log.error("Issue while Indexing to es: {}", e.getMessage(),e);
             return null;
@@ -89,34 +93,43 @@ public class EsUtilServiceImpl implements EsUtilService {
     @Override
     public String updateDocument(
             String index, String entityId, Map<String, Object> updatedDocument, String JsonFilePath) {
+        return updateDocument(index, entityId, updatedDocument, JsonFilePath, defaultConsistency);
+    }
+
+    @Override
+    public String updateDocument(
+            String index, String entityId, Map<String, Object> updatedDocument, String JsonFilePath,
+            IndexConsistency consistency) {
         try {
-            JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance();
-            InputStream schemaStream = schemaFactory.getClass().getResourceAsStream(JsonFilePath);
-            Map<String, Object> map = objectMapper.readValue(schemaStream,
-                    new TypeReference<Map<String, Object>>() {
-                    });
-            Iterator<Entry<String, Object>> iterator = updatedDocument.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Entry<String, Object> entry = iterator.next();
-                String key = entry.getKey();
-                if (!map.containsKey(key)) {
-                    iterator.remove();
-                }
-            }
-            IndexRequest<Map<String, Object>> indexRequest = new IndexRequest.Builder<Map<String, Object>>()
-                    .index(index)
-                    .id(entityId)
-                    .document(updatedDocument)
-                    .refresh(Refresh.True)
-                    .build();
-            IndexResponse response = elasticsearchClient.index(indexRequest);
-            return response.result().jsonValue();
-        } catch (IOException e) {
+            indexDocument(index, entityId, updatedDocument, JsonFilePath, consistency);
+            return consistency == IndexConsistency.WAIT_FOR ? "updated" : "queued";
+        } catch (Exception e) {
             log.error("Error while updating document in elasticsearch: {}", e.getMessage(), e);
             throw new RuntimeException("Errod occured while updating es index");
         }
     }
 
+    /**
+     * Hands the projected document to the bulk indexer. With {@link IndexConsistency#WAIT_FOR}
+     * this blocks until the document is searchable; otherwise it returns once queued.
+     */
+    private void indexDocument(String index, String id, Map<String, Object> document, String jsonFilePath,
+                               IndexConsistency consistency) throws Exception {
+        EsDocumentProjector projector = getProjector(jsonFilePath);
+        Object projected = projector.project(document);
+        CompletableFuture<Void> future = esBulkIndexer.index(index, id, projected, consistency);
+        if (consistency == IndexConsistency.WAIT_FOR) {
+            try {
+                future.get(waitForTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        } else if (future.isCompletedExceptionally()) {
+            // Rejected before being queued, e.g. the queue is full
+            future.get();
+        }
+    }
+
     @Override
     public void deleteDocument(String documentId, String esIndexName) {
         try {
@@ -126,6 +139,7 @@ public class EsUtilServiceImpl implements EsUtilService {
                 log.info("Document deleted successfully from elasticsearch.");
                 RefreshRequest refreshRequest = new RefreshRequest.Builder().index(esIndexName).build();
                 elasticsearchClient.indices().refresh(refreshRequest);
+                searchResultCacheService.invalidate(esIndexName);
                 log.info("Index refreshed to reflect the document deletion.");
             } else {
                 log.error("Document not found or failed to delete from elasticsearch.");
@@ -205,7 +219,7 @@ public class EsUtilServiceImpl implements EsUtilService {
             log.error("Search criteria body is missing");
             return null;
         }
-        BoolQuery.Builder boolQueryBuilder = buildFilterQuery(searchCriteria.getFilterCriteriaMap());
+        BoolQuery.Builder boolQueryBuilder = buildFilterQuery(searchCriteria.getFilterCriteriaMap(), getProjector(JsonFilePath));
         SearchRequest.Builder searchSourceBuilder = new SearchRequest.Builder();
         searchSourceBuilder.query(boolQueryBuilder.build()._toQuery());
         addSortToSearchSourceBuilder(searchCriteria, searchSourceBuilder, JsonFilePath);
@@ -222,14 +236,28 @@ public class EsUtilServiceImpl implements EsUtilService {
         return searchSourceBuilder;
     }
 
-    private BoolQuery.Builder buildFilterQuery(Map<String, Object> filterCriteriaMap) {
+    private BoolQuery.Builder buildFilterQuery(Map<String, Object> filterCriteriaMap, EsDocumentProjector projector) {
         BoolQuery.Builder boolQueryBuilder = QueryBuilders.bool();
         List<Query> mustNotQueries = new ArrayList<>();
         List<Query> boolQueries = new ArrayList<>();
         if (filterCriteriaMap != null) {
             filterCriteriaMap.forEach(
                     (field, value) -> {
-                        if (field.equals("must_not") && value instanceof ArrayList) {
+                        if (field.equals(Constants.HIERARCHY_PATH) && value instanceof List<?>) {
+                            // Term filters on the flat token field are cached by ES, unlike nested queries
+                            List<String> path = ((List<?>) value).stream().map(String::valueOf).collect(Collectors.toList());
+                            boolQueryBuilder.filter(Query.of(q -> q.term(t -> t.field(Constants.HIERARCHY_PATH_TOKENS)
+                                    .value(HierarchyPathTokens.pathToken(path)))));
+                        } else if (field.equals(Constants.HIERARCHY_VALUE)) {
+                            // A missing key would otherwise be matched as the literal "null"
+                            if (!(value instanceof Map<?, ?> levelValue) || levelValue.get(Constants.FIELD_NAME) == null
+                                    || levelValue.get(Constants.FIELD_VALUE) == null) {
+                                throw new CustomException(Constants.FAILED, Constants.INVALID_HIERARCHY_VALUE_FILTER, HttpStatus.BAD_REQUEST);
+                            }
+                            String token = HierarchyPathTokens.levelToken(String.valueOf(levelValue.get(Constants.FIELD_NAME)),
+                                    String.valueOf(levelValue.get(Constants.FIELD_VALUE)));
+                            boolQueryBuilder.filter(Query.of(q -> q.term(t -> t.field(Constants.HIERARCHY_PATH_TOKENS).value(token))));
+                        } else if (field.equals("must_not") && value instanceof ArrayList) {
                             mustNotQueries.add(Query.of(q ->q.termsSet(t->t.field(field).terms((ArrayList<String>) value))));
                         } else if (value instanceof Boolean) {
                             boolQueries.add(Query.of(q ->q.term(t->t.field(field).value((boolean)value))));
@@ -238,6 +266,8 @@ public class EsUtilServiceImpl implements EsUtilService {
                                     .map(v -> FieldValue.of(v.toString()))
                                     .collect(Collectors.toList());
                             boolQueryBuilder.must(Query.of(q -> q.terms(t -> t.field(field + Constants.KEYWORD).terms(terms -> terms.value(termsList)))));
+                        } else if (value instanceof String && projector.isType(field, EsDocumentProjector.FieldType.BOOLEAN)) {
+                            boolQueries.add(Query.of(q -> q.term(t -> t.field(field).value(Boolean.parseBoolean((String) value)))));
                         } else if (value instanceof String) {
                             boolQueryBuilder.must(Query.of(q -> q.terms(t ->
                                     t.field(field + Constants.KEYWORD)
@@ -301,11 +331,7 @@ public class EsUtilServiceImpl implements EsUtilService {
 
         if (isNotBlank(searchCriteria.getOrderBy()) && isNotBlank(searchCriteria.getOrderDirection())) {
             String sortField = searchCriteria.getOrderBy();
-            Map<String, Object> schemaMap = readJsonSchema(jsonFilePath);
-            Map<String, Object> fieldMap = (Map<String, Object>) schemaMap.get(sortField);
-
-            if (MapUtils.isEmpty(fieldMap) ||
-                    (!Constants.NUMBER.equals(fieldMap.get(Constants.TYPE)) && !Constants.LONG.equals(fieldMap.get(Constants.TYPE)))) {
+            if (!getProjector(jsonFilePath).isType(sortField, EsDocumentProjector.FieldType.NUMBER)) {
                 sortField += Constants.KEYWORD;
             }
 
@@ -320,8 +346,8 @@ public class EsUtilServiceImpl implements EsUtilService {
     private void addRequestedFieldsToSearchSourceBuilder(
             SearchCriteria searchCriteria, SearchRequest.Builder searchRequestBuilder) {
         if (searchCriteria.getRequestedFields() == null) {
-            // Get all fields in response
-            searchRequestBuilder.source(SourceConfig.of(sc -> sc.fetch(true)));
+            // Get all fields in response but the path tokens, which only serve filters
+            searchRequestBuilder.source(SourceConfig.of(sc -> sc.filter(filter -> filter.excludes(Constants.HIERARCHY_PATH_TOKENS))));
         } else {
             if (searchCriteria.getRequestedFields().isEmpty()) {
                 log.error("Please specify at least one field to include in the results.");
@@ -354,6 +380,7 @@ public class EsUtilServiceImpl implements EsUtilService {
             assert searchHits.total() != null;
             if (searchHits.total().value() > 0) {
                 BulkResponse bulkResponse = deleteMatchingDocuments(esIndexName, searchHits);
+                searchResultCacheService.invalidate(esIndexName);
                 if (!bulkResponse.errors()) {
                     log.info("Documents matching the criteria deleted successfully from Elasticsearch.");
                 } else {
@@ -541,7 +568,9 @@ public class EsUtilServiceImpl implements EsUtilService {
                 operations.add(operation);
             });
             BulkRequest bulkRequest = BulkRequest.of(b -> b.operations(operations));
-            return elasticsearchClient.bulk(bulkRequest);
+            BulkResponse bulkResponse = elasticsearchClient.bulk(bulkRequest);
+            searchResultCacheService.invalidate(esIndexName);
+            return bulkResponse;
         } catch (Exception e) {
             log.error(e.getMessage());
             throw new CustomException("error bulk uploading", e.getMessage(),
@@ -549,6 +578,16 @@ public class EsUtilServiceImpl implements EsUtilService {
         }
     }
 
+    /**
+     * Returns the projector compiled from the mapping file, building it on first use.
+     *
+     * @param jsonFilePath classpath location of the ES mapping file
+     * @return the compiled projector for the mapping
+     */
+    public static EsDocumentProjector getProjector(String jsonFilePath) {
+        return projectorCache.computeIfAbsent(jsonFilePath, path -> EsDocumentProjector.compile(readJsonSchema(path)));
+    }
+
     public static Map<String, Object> readJsonSchema(String jsonFilePath) {
         if (schemaCache.containsKey(jsonFilePath)) {
             return schemaCache.get(jsonFilePath);
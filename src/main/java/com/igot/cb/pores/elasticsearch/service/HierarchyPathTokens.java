@@ -0,0 +1,139 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.igot.cb.pores.util.Constants;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Flat keyword tokens for a hierarchy held under {@link Constants#CUSTOM_FIELD_DATA}, in the
+ * expanded or the compact shape. Each node gives a level token, made of its field name and
+ * value, and a path token, made of the values from the first level down to it. Finding the
+ * documents holding a value at a level, or a path, is then a term filter on one keyword field
+ * rather than a nested query.
+ * <p>
+ * Parts are joined with '|'. Separators and backslashes inside names and values are escaped
+ * with a backslash, so different parts never give the same token.
+ */
+public final class HierarchyPathTokens {
+
+    private static final char SEPARATOR = '|';
+    private static final char ESCAPE = '\\';
+    private static final String LEVEL_PREFIX = "level";
+    private static final String PATH_PREFIX = "path";
+
+    private HierarchyPathTokens() {
+    }
+
+    public static String levelToken(String fieldName, String fieldValue) {
+        StringBuilder token = new StringBuilder(LEVEL_PREFIX);
+        appendPart(token, fieldName);
+        appendPart(token, fieldValue);
+        return token.toString();
+    }
+
+    /**
+     * @param path field values from the first level down
+     */
+    public static String pathToken(List<String> path) {
+        StringBuilder token = new StringBuilder(PATH_PREFIX);
+        for (String value : path) {
+            appendPart(token, value);
+        }
+        return token.toString();
+    }
+
+    /**
+     * Walks the hierarchy as it is held by the document, either Jackson nodes or the maps and
+     * lists it was read into, so it is never converted from one to the other.
+     *
+     * @param hierarchy the value of {@link Constants#CUSTOM_FIELD_DATA}
+     * @return the distinct tokens of every node, empty when the value holds no hierarchy
+     */
+    public static Set<String> of(Object hierarchy) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (hierarchy == null) {
+            return tokens;
+        }
+        Object levels = field(hierarchy, Constants.LEVELS);
+        boolean compact = levels != null && field(hierarchy, Constants.NODES) != null;
+
+        Deque<Object> nodes = new ArrayDeque<>();
+        Deque<String> paths = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        pushChildren(compact ? field(hierarchy, Constants.NODES) : hierarchy, PATH_PREFIX, 0, nodes, paths, depths);
+        while (!nodes.isEmpty()) {
+            Object node = nodes.pop();
+            String parentPath = paths.pop();
+            int depth = depths.pop();
+            String value = scalarText(field(node, compact ? Constants.COMPACT_VALUE : Constants.FIELD_VALUE));
+            if (value == null) {
+                // Not a hierarchy node, e.g. the options of another kind of custom field
+                continue;
+            }
+            String fieldName = compact ? levelName(levels, depth) : scalarText(field(node, Constants.FIELD_NAME));
+            tokens.add(levelToken(fieldName == null ? "" : fieldName, value));
+            StringBuilder path = new StringBuilder(parentPath);
+            appendPart(path, value);
+            tokens.add(path.toString());
+            pushChildren(field(node, compact ? Constants.COMPACT_CHILDREN : Constants.FIELD_VALUES), path.toString(),
+                    depth + 1, nodes, paths, depths);
+        }
+        return tokens;
+    }
+
+    private static void pushChildren(Object children, String path, int depth,
+                                     Deque<Object> nodes, Deque<String> paths, Deque<Integer> depths) {
+        int size = children instanceof JsonNode && ((JsonNode) children).isArray() ? ((JsonNode) children).size()
+                : children instanceof List ? ((List<?>) children).size() : 0;
+        for (int i = size - 1; i >= 0; i--) {
+            Object child = children instanceof JsonNode ? ((JsonNode) children).get(i) : ((List<?>) children).get(i);
+            if (child instanceof Map || child instanceof JsonNode && ((JsonNode) child).isObject()) {
+                nodes.push(child);
+                paths.push(path);
+                depths.push(depth);
+            }
+        }
+    }
+
+    private static Object field(Object node, String name) {
+        if (node instanceof JsonNode) {
+            return ((JsonNode) node).get(name);
+        }
+        return node instanceof Map ? ((Map<?, ?>) node).get(name) : null;
+    }
+
+    private static String levelName(Object levels, int depth) {
+        if (levels instanceof JsonNode) {
+            return scalarText(((JsonNode) levels).get(depth));
+        }
+        return levels instanceof List && depth < ((List<?>) levels).size() ? scalarText(((List<?>) levels).get(depth)) : null;
+    }
+
+    /**
+     * @return the text of a string, number or boolean, or null for anything else
+     */
+    private static String scalarText(Object value) {
+        if (value instanceof JsonNode) {
+            JsonNode node = (JsonNode) value;
+            return node.isValueNode() && !node.isNull() ? node.asText() : null;
+        }
+        return value instanceof String || value instanceof Number || value instanceof Boolean ? value.toString() : null;
+    }
+
+    private static void appendPart(StringBuilder token, String part) {
+        token.append(SEPARATOR);
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c == SEPARATOR || c == ESCAPE) {
+                token.append(ESCAPE);
+            }
+            token.append(c);
+        }
+    }
+}
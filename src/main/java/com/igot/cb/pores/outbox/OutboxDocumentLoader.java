@@ -0,0 +1,17 @@
+package com.igot.cb.pores.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Reads the current document of an aggregate for the events recorded with
+ * {@link OutboxService#recordReload}, whose document was too large to carry.
+ */
+public interface OutboxDocumentLoader {
+
+  /**
+   * @param esIndex     the index the document is written to
+   * @param aggregateId the document id
+   * @return the document as it is now committed, or null when the aggregate no longer exists
+   */
+  JsonNode load(String esIndex, String aggregateId);
+}
@@ -0,0 +1,108 @@
+package com.igot.cb.pores.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vladmihalcea.hibernate.type.json.JsonType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Type;
+
+import java.sql.Timestamp;
+
+/**
+ * A change to propagate to Elasticsearch and Redis, written in the same transaction as the
+ * entity it describes. Rows are removed by {@link OutboxRelay} once both stores are updated.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "custom_fields_outbox",
+    indexes = @Index(name = "idx_custom_fields_outbox_status_version", columnList = "status, version, id"))
+@Entity
+public class OutboxEventEntity {
+
+  public enum Status {
+    PENDING, FAILED
+  }
+
+  /**
+   * Taken from a sequence in blocks of hibernate.jdbc.batch_size, so a batch of inserts costs a
+   * single sequence call. Ids of different nodes interleave; events are ordered by
+   * {@link #version}, not by id.
+   */
+  @Id
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "custom_fields_outbox_seq")
+  @SequenceGenerator(name = "custom_fields_outbox_seq", sequenceName = "custom_fields_outbox_seq", allocationSize = 50)
+  private Long id;
+
+  private String aggregateId;
+
+  /**
+   * Increases with every change of the aggregate, in the order the changes were committed. The
+   * relay applies events in version order, so the latest committed change is the one that
+   * ends up in Elasticsearch and Redis.
+   */
+  private Long version;
+
+  /**
+   * The document indexed into {@link #esIndex} under {@link #aggregateId} and, unless
+   * {@link #cacheEvict} is set, stored under {@link #cacheKey}.
+   */
+  @Type(JsonType.class)
+  @Column(columnDefinition = "jsonb")
+  private JsonNode payload;
+
+  private String esIndex;
+
+  private String esMappingPath;
+
+  private String cacheKey;
+
+  private boolean cacheEvict;
+
+  /**
+   * Set when {@link #payload} only holds the top level fields that changed. The event is then
+   * applied to Elasticsearch as a partial update, and its cache entry is always evicted.
+   */
+  private Boolean partialPayload;
+
+  /**
+   * Set when the event carries no {@link #payload}: the relay reads the document through the
+   * {@link OutboxDocumentLoader} when it applies the event, and its cache entry is evicted.
+   */
+  private Boolean reloadPayload;
+
+  @Enumerated(EnumType.STRING)
+  private Status status;
+
+  private int attempts;
+
+  @Column(columnDefinition = "text")
+  private String lastError;
+
+  /**
+   * Set while a relay is applying the event; once it has passed without the event being
+   * removed, the relay that claimed it is assumed dead and the event is relayed again.
+   */
+  private Timestamp claimedUntil;
+
+  private Timestamp createdOn;
+
+  public boolean isPartial() {
+    return Boolean.TRUE.equals(partialPayload);
+  }
+
+  public boolean isReload() {
+    return Boolean.TRUE.equals(reloadPayload);
+  }
+}
@@ -0,0 +1,34 @@
+package com.igot.cb.pores.outbox;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+  /**
+   * Events recorded before versions were introduced have none and go first.
+   */
+  @Query("SELECT e FROM OutboxEventEntity e WHERE e.status = :status ORDER BY e.version ASC NULLS FIRST, e.id ASC")
+  List<OutboxEventEntity> findByStatusInVersionOrder(@Param("status") OutboxEventEntity.Status status, Pageable pageable);
+
+  boolean existsByStatusAndClaimedUntilAfter(OutboxEventEntity.Status status, Timestamp time);
+
+  @Modifying
+  @Query("UPDATE OutboxEventEntity e SET e.claimedUntil = :claimedUntil WHERE e.id IN :ids")
+  int claim(@Param("ids") Collection<Long> ids, @Param("claimedUntil") Timestamp claimedUntil);
+
+  /**
+   * Takes a transaction scoped advisory lock so that only one node claims a batch at a time.
+   */
+  @Query(value = "SELECT pg_try_advisory_xact_lock(:lockId)", nativeQuery = true)
+  boolean tryRelayLock(@Param("lockId") long lockId);
+}
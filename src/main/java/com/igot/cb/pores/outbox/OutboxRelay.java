@@ -0,0 +1,362 @@
+package com.igot.cb.pores.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.igot.cb.pores.cache.CacheService;
+import com.igot.cb.pores.elasticsearch.bulk.EsBulkIndexer;
+import com.igot.cb.pores.elasticsearch.bulk.IndexConsistency;
+import com.igot.cb.pores.elasticsearch.service.EsDocumentProjector;
+import com.igot.cb.pores.elasticsearch.service.EsUtilServiceImpl;
+import com.igot.cb.pores.exceptions.CustomException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Drains the outbox in version order. Each batch is coalesced into one write per document and
+ * per cache key, the latest event or the partial events merged into the one before them, sent
+ * to Elasticsearch through the bulk indexer and to Redis in one pipeline, and then removed. Both writes are keyed by id, so events left
+ * behind by a failure are simply applied again.
+ * <p>
+ * A batch is claimed in a short transaction and applied outside of it, so no connection or
+ * lock is held while waiting on Elasticsearch. Only one claimed batch may be in flight across
+ * all nodes, otherwise a later batch could overtake it. Events that Elasticsearch rejects with
+ * a client error would fail the same way on every attempt; they are marked failed at once
+ * instead of holding back the events behind them.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+  private static final long RELAY_LOCK_ID = 0x6f7574626f78L;
+
+  private enum Outcome {
+    IDLE, MORE, FAILED
+  }
+
+  @Autowired
+  private OutboxEventRepository outboxEventRepository;
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+  @Autowired
+  private EsBulkIndexer esBulkIndexer;
+  @Autowired
+  private CacheService cacheService;
+  // Lazy, as the loader is usually a service that records events through this relay
+  @Lazy
+  @Autowired
+  private OutboxDocumentLoader outboxDocumentLoader;
+
+  @Value("${outbox.relay.batch.size}")
+  private int batchSize;
+
+  @Value("${outbox.relay.poll.interval.ms}")
+  private long pollIntervalMs;
+
+  @Value("${outbox.relay.max.attempts}")
+  private int maxAttempts;
+
+  @Value("${outbox.relay.retry.backoff.ms}")
+  private long retryBackoffMs;
+
+  @Value("${outbox.relay.max.backoff.ms}")
+  private long maxBackoffMs;
+
+  @Value("${outbox.relay.index.timeout.ms}")
+  private long indexTimeoutMs;
+
+  @Value("${outbox.relay.claim.timeout.ms}")
+  private long claimTimeoutMs;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition wakeUp = lock.newCondition();
+  private boolean signalled;
+  private volatile boolean running = true;
+  private Thread worker;
+
+  @PostConstruct
+  public void init() {
+    worker = new Thread(this::runWorker, "outbox-relay");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    wakeUp();
+    try {
+      worker.join(TimeUnit.SECONDS.toMillis(30));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Makes the relay poll now instead of at the end of its current interval.
+   */
+  public void wakeUp() {
+    lock.lock();
+    try {
+      signalled = true;
+      wakeUp.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void runWorker() {
+    int consecutiveFailures = 0;
+    while (running) {
+      Outcome outcome;
+      try {
+        outcome = relayBatch();
+      } catch (Exception e) {
+        log.error("Outbox relay failed: {}", e.getMessage(), e);
+        outcome = Outcome.FAILED;
+      }
+      if (outcome == Outcome.MORE) {
+        consecutiveFailures = 0;
+        continue;
+      }
+      long delayMs = pollIntervalMs;
+      if (outcome == Outcome.FAILED) {
+        delayMs = Math.min(maxBackoffMs, retryBackoffMs << Math.min(consecutiveFailures++, 20));
+      } else {
+        consecutiveFailures = 0;
+      }
+      if (!await(delayMs, outcome != Outcome.FAILED)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Waits for the delay or, when {@code wakeable}, until woken up.
+   *
+   * @return false if the thread was interrupted
+   */
+  private boolean await(long delayMs, boolean wakeable) {
+    lock.lock();
+    try {
+      long remainingNanos = TimeUnit.MILLISECONDS.toNanos(delayMs);
+      while (running && remainingNanos > 0 && !(wakeable && signalled)) {
+        remainingNanos = wakeUp.awaitNanos(remainingNanos);
+      }
+      signalled = false;
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Outcome relayBatch() {
+    List<OutboxEventEntity> events = transactionTemplate.execute(status -> claimBatch());
+    if (events == null || events.isEmpty()) {
+      return Outcome.IDLE;
+    }
+    Map<String, String> failures = new HashMap<>();
+    Set<String> rejected = new HashSet<>();
+    indexLatest(events, failures, rejected);
+    cacheLatest(events, failures);
+
+    List<Long> done = new ArrayList<>(events.size());
+    List<OutboxEventEntity> failed = new ArrayList<>();
+    boolean retry = false;
+    for (OutboxEventEntity event : events) {
+      String error = failures.getOrDefault(documentKey(event), failures.get(event.getCacheKey()));
+      if (error == null) {
+        done.add(event.getId());
+        continue;
+      }
+      event.setAttempts(event.getAttempts() + 1);
+      event.setLastError(error);
+      event.setClaimedUntil(null);
+      if (rejected.contains(documentKey(event))) {
+        log.error("Outbox event {} for {} was rejected by Elasticsearch: {}", event.getId(), event.getAggregateId(), error);
+        event.setStatus(OutboxEventEntity.Status.FAILED);
+      } else if (event.getAttempts() >= maxAttempts) {
+        log.error("Giving up on outbox event {} for {} after {} attempts: {}",
+                event.getId(), event.getAggregateId(), event.getAttempts(), error);
+        event.setStatus(OutboxEventEntity.Status.FAILED);
+      } else {
+        retry = true;
+      }
+      failed.add(event);
+    }
+    transactionTemplate.executeWithoutResult(status -> {
+      outboxEventRepository.deleteAllByIdInBatch(done);
+      outboxEventRepository.saveAll(failed);
+    });
+    if (retry) {
+      return Outcome.FAILED;
+    }
+    return events.size() == batchSize ? Outcome.MORE : Outcome.IDLE;
+  }
+
+  /**
+   * Claims the next batch, unless another batch is still in flight.
+   *
+   * @return the claimed events in version order, empty when there is nothing to relay now
+   */
+  private List<OutboxEventEntity> claimBatch() {
+    if (!outboxEventRepository.tryRelayLock(RELAY_LOCK_ID)) {
+      return Collections.emptyList();
+    }
+    long now = System.currentTimeMillis();
+    if (outboxEventRepository.existsByStatusAndClaimedUntilAfter(OutboxEventEntity.Status.PENDING, new Timestamp(now))) {
+      return Collections.emptyList();
+    }
+    List<OutboxEventEntity> events = outboxEventRepository.findByStatusInVersionOrder(
+            OutboxEventEntity.Status.PENDING, PageRequest.of(0, batchSize));
+    if (!events.isEmpty()) {
+      List<Long> ids = new ArrayList<>(events.size());
+      events.forEach(event -> ids.add(event.getId()));
+      outboxEventRepository.claim(ids, new Timestamp(now + claimTimeoutMs));
+    }
+    return events;
+  }
+
+  /**
+   * Indexes the latest state of each document. Events come in version order: a full document
+   * replaces what came before it and a partial one is merged into it, so each document takes a
+   * single bulk operation, a partial update when no full document was seen. A document to
+   * reload is read once, at the first event that asks for it; read after the whole batch was
+   * committed, it already includes every later event of the batch, which is skipped.
+   */
+  private void indexLatest(List<OutboxEventEntity> events, Map<String, String> failures, Set<String> rejected) {
+    Map<String, OutboxEventEntity> latest = new LinkedHashMap<>();
+    Map<String, JsonNode> documents = new HashMap<>();
+    Set<String> partial = new HashSet<>();
+    Set<String> reloaded = new HashSet<>();
+    for (OutboxEventEntity event : events) {
+      if (event.getEsIndex() == null) {
+        continue;
+      }
+      String key = documentKey(event);
+      if (reloaded.contains(key)) {
+        // The document read for an earlier event of the batch already includes this one
+        continue;
+      }
+      JsonNode document = documents.get(key);
+      if (event.isReload()) {
+        reloaded.add(key);
+        JsonNode loaded;
+        try {
+          loaded = outboxDocumentLoader.load(event.getEsIndex(), event.getAggregateId());
+        } catch (Exception e) {
+          log.error("Error while loading the document of outbox event {}: {}", event.getId(), e.getMessage());
+          failures.put(key, String.valueOf(e.getMessage()));
+          loaded = null;
+        }
+        if (loaded == null) {
+          documents.remove(key);
+          latest.remove(key);
+          continue;
+        }
+        documents.put(key, loaded);
+        partial.remove(key);
+      } else if (event.isPartial() && document != null) {
+        ObjectNode merged = JsonNodeFactory.instance.objectNode();
+        merged.setAll((ObjectNode) document);
+        merged.setAll((ObjectNode) event.getPayload());
+        documents.put(key, merged);
+      } else {
+        documents.put(key, event.getPayload());
+        if (event.isPartial()) {
+          partial.add(key);
+        } else {
+          partial.remove(key);
+        }
+      }
+      latest.put(key, event);
+    }
+    Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+    latest.forEach((key, event) -> {
+      EsDocumentProjector.ProjectedDocument document =
+              EsUtilServiceImpl.getProjector(event.getEsMappingPath()).project(documents.get(key));
+      futures.put(key, partial.contains(key)
+              ? esBulkIndexer.update(event.getEsIndex(), event.getAggregateId(), document, IndexConsistency.NONE)
+              : esBulkIndexer.index(event.getEsIndex(), event.getAggregateId(), document, IndexConsistency.NONE));
+    });
+    try {
+      CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+              .get(indexTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      // Individual failures are read from each future below
+    }
+    futures.forEach((key, future) -> {
+      if (!future.isDone()) {
+        failures.put(key, "Timed out waiting for the bulk indexer");
+      } else if (future.isCompletedExceptionally()) {
+        future.exceptionally(error -> {
+          failures.put(key, String.valueOf(error.getMessage()));
+          if (error instanceof CustomException
+                  && ((CustomException) error).getHttpStatusCode().is4xxClientError()) {
+            rejected.add(key);
+          }
+          return null;
+        }).join();
+      }
+    });
+  }
+
+  private void cacheLatest(List<OutboxEventEntity> events, Map<String, String> failures) {
+    Map<String, Object> entries = new LinkedHashMap<>();
+    Set<String> evictedKeys = new HashSet<>();
+    for (OutboxEventEntity event : events) {
+      String cacheKey = event.getCacheKey();
+      if (cacheKey == null) {
+        continue;
+      }
+      if (event.isCacheEvict()) {
+        entries.remove(cacheKey);
+        evictedKeys.add(cacheKey);
+      } else {
+        evictedKeys.remove(cacheKey);
+        entries.put(cacheKey, event.getPayload());
+      }
+    }
+    if (entries.isEmpty() && evictedKeys.isEmpty()) {
+      return;
+    }
+    try {
+      cacheService.writeAllCache(entries, evictedKeys);
+    } catch (Exception e) {
+      log.error("Error while writing outbox events to the cache: {}", e.getMessage());
+      String error = String.valueOf(e.getMessage());
+      entries.keySet().forEach(key -> failures.put(key, error));
+      evictedKeys.forEach(key -> failures.put(key, error));
+    }
+  }
+
+  private static String documentKey(OutboxEventEntity event) {
+    return event.getEsIndex() + "/" + event.getAggregateId();
+  }
+}
@@ -0,0 +1,108 @@
+package com.igot.cb.pores.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+
+/**
+ * Records outbox events inside the caller's transaction. The relay is woken once the
+ * transaction commits, so secondary stores usually converge within one bulk round trip.
+ */
+@Service
+@Slf4j
+public class OutboxService {
+
+  @Autowired
+  private OutboxEventRepository outboxEventRepository;
+  @Autowired
+  private OutboxRelay outboxRelay;
+
+  /**
+   * Records a change to index {@code payload} and to store it in, or evict it from, the cache.
+   *
+   * @param aggregateId   the document id in Elasticsearch
+   * @param version       the version of the aggregate this event carries, increasing with
+   *                      every committed change of the aggregate
+   * @param esIndex       the index to write to
+   * @param esMappingPath the mapping file used to project the document
+   * @param payload       the document
+   * @param cacheKey      the cache key of the document
+   * @param cacheEvict    true to remove the cache entry instead of replacing it
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void record(String aggregateId, long version, String esIndex, String esMappingPath, JsonNode payload,
+                     String cacheKey, boolean cacheEvict) {
+    save(newEvent(aggregateId, version, esIndex, esMappingPath, payload, cacheKey, cacheEvict));
+  }
+
+  /**
+   * Records a change to some top level fields of a document, such as its status, so the rest of
+   * the document is neither loaded nor sent. Elasticsearch gets a partial update and the cache
+   * entry, which holds the whole document, is evicted.
+   *
+   * @param changes the changed fields with their new values
+   * @see #record
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void recordPartial(String aggregateId, long version, String esIndex, String esMappingPath, JsonNode changes,
+                            String cacheKey) {
+    OutboxEventEntity event = newEvent(aggregateId, version, esIndex, esMappingPath, changes, cacheKey, true);
+    event.setPartialPayload(true);
+    save(event);
+  }
+
+  /**
+   * Records a change to a document too large to carry in the event, such as a few nodes edited
+   * in a large master list. The relay reads the document when it applies the event, once for
+   * all the events of a batch, and the cache entry is evicted.
+   *
+   * @see #record
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void recordReload(String aggregateId, long version, String esIndex, String esMappingPath, String cacheKey) {
+    OutboxEventEntity event = newEvent(aggregateId, version, esIndex, esMappingPath, null, cacheKey, true);
+    event.setReloadPayload(true);
+    save(event);
+  }
+
+  private static OutboxEventEntity newEvent(String aggregateId, long version, String esIndex, String esMappingPath,
+                                            JsonNode payload, String cacheKey, boolean cacheEvict) {
+    OutboxEventEntity event = new OutboxEventEntity();
+    event.setAggregateId(aggregateId);
+    event.setVersion(version);
+    event.setEsIndex(esIndex);
+    event.setEsMappingPath(esMappingPath);
+    event.setPayload(payload);
+    event.setCacheKey(cacheKey);
+    event.setCacheEvict(cacheEvict);
+    event.setStatus(OutboxEventEntity.Status.PENDING);
+    event.setCreatedOn(new Timestamp(System.currentTimeMillis()));
+    return event;
+  }
+
+  private void save(OutboxEventEntity event) {
+    outboxEventRepository.save(event);
+    if (!TransactionSynchronizationManager.hasResource(this)) {
+      // One wake up per transaction, however many events it records
+      TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          outboxRelay.wakeUp();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResource(OutboxService.this);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.igot.cb.pores.upload;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits UTF-8 delimited text (RFC 4180 CSV, or TSV) held in a buffer into rows. Field bounds
+ * are found by scanning the buffer in place; a String is only created for non-empty fields,
+ * and quoted fields are unescaped through one scratch array reused for the whole file.
+ */
+final class DelimitedTextReader {
+
+  private static final byte QUOTE = '"';
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  private final ByteBuffer buffer;
+  private final byte delimiter;
+  private final int limit;
+  private int position;
+  private byte[] scratch = new byte[256];
+
+  private DelimitedTextReader(ByteBuffer buffer, byte delimiter) {
+    this.buffer = buffer;
+    this.delimiter = delimiter;
+    this.limit = buffer.limit();
+    this.position = buffer.position();
+  }
+
+  /**
+   * Reads every row of the buffer. Blank lines are skipped but still counted in the row index.
+   *
+   * @param buffer    the file content, read from its position to its limit
+   * @param delimiter the field separator
+   * @param handler   receives each row
+   */
+  static void read(ByteBuffer buffer, byte delimiter, RowHandler handler) {
+    new DelimitedTextReader(buffer, delimiter).readRows(handler);
+  }
+
+  private void readRows(RowHandler handler) {
+    skipByteOrderMark();
+    List<String> cells = new ArrayList<>();
+    int rowIndex = 0;
+    while (position < limit) {
+      cells.clear();
+      int lastValueColumn = -1;
+      do {
+        String value = position < limit && buffer.get(position) == QUOTE ? readQuotedField(rowIndex) : readField();
+        if (value != null) {
+          lastValueColumn = cells.size();
+        }
+        cells.add(value);
+      } while (consume(delimiter));
+      consume(CR);
+      consume(LF);
+      if (lastValueColumn >= 0) {
+        handler.row(rowIndex, cells.subList(0, lastValueColumn + 1).toArray(new String[0]));
+      }
+      rowIndex++;
+    }
+  }
+
+  private String readField() {
+    int start = position;
+    while (position < limit) {
+      byte b = buffer.get(position);
+      if (b == delimiter || b == CR || b == LF) {
+        break;
+      }
+      position++;
+    }
+    int length = position - start;
+    if (length == 0) {
+      return null;
+    }
+    ensureScratch(length);
+    buffer.get(start, scratch, 0, length);
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private String readQuotedField(int rowIndex) {
+    position++;
+    int length = 0;
+    while (true) {
+      if (position >= limit) {
+        throw new IllegalArgumentException("Unterminated quoted field in row " + (rowIndex + 1));
+      }
+      byte b = buffer.get(position++);
+      if (b == QUOTE) {
+        if (position < limit && buffer.get(position) == QUOTE) {
+          position++;
+        } else {
+          break;
+        }
+      }
+      ensureScratch(length + 1);
+      scratch[length++] = b;
+    }
+    // Ignore anything between the closing quote and the next separator
+    while (position < limit) {
+      byte b = buffer.get(position);
+      if (b == delimiter || b == CR || b == LF) {
+        break;
+      }
+      position++;
+    }
+    return length == 0 ? null : new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private boolean consume(byte expected) {
+    if (position < limit && buffer.get(position) == expected) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void skipByteOrderMark() {
+    if (limit - position >= 3 && (buffer.get(position) & 0xff) == 0xEF
+            && (buffer.get(position + 1) & 0xff) == 0xBB && (buffer.get(position + 2) & 0xff) == 0xBF) {
+      position += 3;
+    }
+  }
+
+  private void ensureScratch(int length) {
+    if (scratch.length < length) {
+      byte[] grown = new byte[Math.max(length, scratch.length * 2)];
+      System.arraycopy(scratch, 0, grown, 0, scratch.length);
+      scratch = grown;
+    }
+  }
+}
@@ -0,0 +1,409 @@
+package com.igot.cb.pores.upload;
+
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.MissingRecordAwareHSSFListener;
+import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.stereotype.Component;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Reads the sheets of an xlsx or xls workbook row by row using POI's event APIs, so no cell
+ * or row objects are kept: memory is bounded by the shared strings table, not by the size of
+ * the sheets. The format is detected from the content rather than the file name.
+ */
+@Component
+public class ExcelStreamReader {
+
+  /**
+   * Reads the first sheet of the workbook. The workbook is read from the file rather than a
+   * stream, since POI inflates every entry of a package opened from a stream onto the heap.
+   */
+  public void readFirstSheet(Path file, RowHandler handler) throws IOException {
+    FileMagic fileMagic = detect(file);
+    switch (fileMagic) {
+      case OOXML:
+        readXlsx(file, handler);
+        break;
+      case OLE2:
+        readXls(file, (index, name) -> index == 0 ? handler : null);
+        break;
+      default:
+        throw new IOException("Unsupported spreadsheet format: " + fileMagic);
+    }
+  }
+
+  /**
+   * Reads several sheets, each into its own handler. The sheets of an xlsx workbook are parsed
+   * concurrently on the pool and share one shared strings table. An xls workbook is a single
+   * record stream, so its sheets are read one after the other in one pass.
+   *
+   * @param sheetNames the sheets to read, null for all of them
+   * @param handlers   gives the handler of each sheet, called in workbook order on the calling thread
+   * @throws IOException if a sheet cannot be parsed or one of the named sheets is missing
+   */
+  public void readSheets(Path file, Set<String> sheetNames, Function<String, RowHandler> handlers,
+                         ForkJoinPool pool) throws IOException {
+    FileMagic fileMagic = detect(file);
+    switch (fileMagic) {
+      case OOXML:
+        readXlsxSheets(file, sheetNames, handlers, pool);
+        break;
+      case OLE2:
+        Set<String> found = new LinkedHashSet<>();
+        readXls(file, (index, name) -> {
+          if (sheetNames != null && !sheetNames.contains(name)) {
+            return null;
+          }
+          found.add(name);
+          return handlers.apply(name);
+        });
+        requireSheets(sheetNames, found);
+        break;
+      default:
+        throw new IOException("Unsupported spreadsheet format: " + fileMagic);
+    }
+  }
+
+  private static FileMagic detect(Path file) throws IOException {
+    try (InputStream in = FileMagic.prepareToCheckMagic(Files.newInputStream(file))) {
+      return FileMagic.valueOf(in);
+    }
+  }
+
+  private static void requireSheets(Set<String> sheetNames, Set<String> found) throws IOException {
+    if (sheetNames == null) {
+      return;
+    }
+    Set<String> missing = new LinkedHashSet<>(sheetNames);
+    missing.removeAll(found);
+    if (!missing.isEmpty()) {
+      throw new IOException("Sheets not found in the workbook: " + String.join(", ", missing));
+    }
+  }
+
+  private void readXlsx(Path file, RowHandler handler) throws IOException {
+    OPCPackage pkg = null;
+    try {
+      // Opened from the file, the sheet is inflated from its zip entry as it is parsed
+      pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+      XSSFReader xssfReader = new XSSFReader(pkg);
+      ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+      StylesTable styles = xssfReader.getStylesTable();
+      Iterator<InputStream> sheets = xssfReader.getSheetsData();
+      if (!sheets.hasNext()) {
+        return;
+      }
+      try (InputStream sheet = sheets.next()) {
+        parseXlsxSheet(sheet, styles, strings, handler);
+      }
+    } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+      throw new IOException(e.getMessage(), e);
+    } finally {
+      if (pkg != null) {
+        // Opened for reading only, discard without saving
+        pkg.revert();
+      }
+    }
+  }
+
+  private void readXlsxSheets(Path file, Set<String> sheetNames, Function<String, RowHandler> handlers,
+                              ForkJoinPool pool) throws IOException {
+    OPCPackage pkg = null;
+    try {
+      // Opened from the file, each sheet is inflated from its own zip entry, so sheets can be read in parallel
+      pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+      XSSFReader xssfReader = new XSSFReader(pkg);
+      ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+      StylesTable styles = xssfReader.getStylesTable();
+      XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+      Map<String, PackagePart> parts = new LinkedHashMap<>();
+      while (sheets.hasNext()) {
+        sheets.next().close();
+        if (sheetNames == null || sheetNames.contains(sheets.getSheetName())) {
+          parts.put(sheets.getSheetName(), sheets.getSheetPart());
+        }
+      }
+      requireSheets(sheetNames, parts.keySet());
+
+      // The first failure; once set, the other sheets stop at their next row
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      List<ForkJoinTask<?>> tasks = new ArrayList<>(parts.size());
+      for (Map.Entry<String, PackagePart> sheet : parts.entrySet()) {
+        RowHandler handler = stoppable(handlers.apply(sheet.getKey()), failure);
+        PackagePart part = sheet.getValue();
+        tasks.add(pool.submit(() -> {
+          if (failure.get() != null) {
+            return;
+          }
+          try (InputStream in = part.getInputStream()) {
+            parseXlsxSheet(in, styles, strings, handler);
+          } catch (Exception | Error e) {
+            // Ignored when it only reports that the sheet was stopped
+            failure.compareAndSet(null, e);
+          }
+        }));
+      }
+      awaitAll(tasks, failure);
+    } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+      throw new IOException(e.getMessage(), e);
+    } finally {
+      if (pkg != null) {
+        pkg.revert();
+      }
+    }
+  }
+
+  private static void parseXlsxSheet(InputStream sheet, StylesTable styles, ReadOnlySharedStringsTable strings,
+                                     RowHandler handler) throws IOException, SAXException, ParserConfigurationException {
+    XMLReader parser = XMLHelper.newXMLReader();
+    parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, new XlsxRowCollector(handler), false));
+    parser.parse(new InputSource(sheet));
+  }
+
+  private static RowHandler stoppable(RowHandler handler, AtomicReference<Throwable> failure) {
+    return (rowIndex, cells) -> {
+      if (failure.get() != null) {
+        throw new IllegalStateException("Sheet reading stopped");
+      }
+      handler.row(rowIndex, cells);
+    };
+  }
+
+  /**
+   * Waits until every sheet has finished, so that none is still reading when the package is
+   * closed, then rethrows the first failure. Cancelling a pool task does not interrupt it, so
+   * an interrupt is recorded as the failure, which stops the sheets at their next row, and the
+   * wait goes on until they have.
+   */
+  private static void awaitAll(List<ForkJoinTask<?>> tasks, AtomicReference<Throwable> failures) throws IOException {
+    boolean interrupted = false;
+    for (ForkJoinTask<?> task : tasks) {
+      while (true) {
+        try {
+          task.get();
+          break;
+        } catch (ExecutionException e) {
+          failures.compareAndSet(null, e.getCause());
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+          failures.compareAndSet(null, new InterruptedIOException("Interrupted while reading sheets"));
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    Throwable failure = failures.get();
+    if (failure instanceof IOException ioException) {
+      throw ioException;
+    }
+    if (failure instanceof RuntimeException runtimeException) {
+      throw runtimeException;
+    }
+    if (failure instanceof Error error) {
+      throw error;
+    }
+    if (failure != null) {
+      throw new IOException(failure.getMessage(), failure);
+    }
+  }
+
+  private void readXls(Path file, SheetHandlers handlers) throws IOException {
+    try (POIFSFileSystem fileSystem = new POIFSFileSystem(file.toFile(), true)) {
+      XlsRowCollector collector = new XlsRowCollector(handlers);
+      MissingRecordAwareHSSFListener listener = new MissingRecordAwareHSSFListener(collector.formatListener);
+      HSSFRequest request = new HSSFRequest();
+      request.addListenerForAllRecords(listener);
+      new HSSFEventFactory().processWorkbookEvents(request, fileSystem);
+    }
+  }
+
+  /**
+   * Collects the cells of one row at a time; cells may arrive with gaps.
+   */
+  private static class RowBuffer {
+    private final List<String> cells = new ArrayList<>();
+
+    void set(int column, String value) {
+      while (cells.size() <= column) {
+        cells.add(null);
+      }
+      cells.set(column, value);
+    }
+
+    void flush(int rowIndex, RowHandler handler) {
+      if (!cells.isEmpty()) {
+        handler.row(rowIndex, cells.toArray(new String[0]));
+        cells.clear();
+      }
+    }
+  }
+
+  private static class XlsxRowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+    private final RowHandler handler;
+    private final RowBuffer buffer = new RowBuffer();
+    private int nextColumn;
+
+    XlsxRowCollector(RowHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void startRow(int rowNum) {
+      nextColumn = 0;
+    }
+
+    @Override
+    public void endRow(int rowNum) {
+      buffer.flush(rowNum, handler);
+    }
+
+    @Override
+    public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+      int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+      buffer.set(column, formattedValue);
+      nextColumn = column + 1;
+    }
+  }
+
+  /**
+   * Picks the handler of an xls worksheet.
+   */
+  @FunctionalInterface
+  private interface SheetHandlers {
+    /**
+     * @return the handler of the worksheet, or null to skip it
+     */
+    RowHandler forSheet(int index, String name);
+  }
+
+  /**
+   * Turns the record stream of the selected worksheets into rows; other sheets are ignored.
+   */
+  private static class XlsRowCollector implements HSSFListener {
+    private final SheetHandlers handlers;
+    private final RowBuffer buffer = new RowBuffer();
+    private final FormatTrackingHSSFListener formatListener;
+    private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+    private BoundSheetRecord[] orderedSheets;
+    private SSTRecord sharedStrings;
+    private RowHandler handler;
+    private int worksheetIndex = -1;
+    private int pendingStringRow = -1;
+    private int pendingStringColumn = -1;
+
+    XlsRowCollector(SheetHandlers handlers) {
+      this.handlers = handlers;
+      this.formatListener = new FormatTrackingHSSFListener(this);
+    }
+
+    @Override
+    public void processRecord(Record record) {
+      if (record instanceof BoundSheetRecord) {
+        boundSheets.add((BoundSheetRecord) record);
+        return;
+      }
+      if (record instanceof BOFRecord) {
+        if (((BOFRecord) record).getType() == BOFRecord.TYPE_WORKSHEET) {
+          worksheetIndex++;
+          handler = handlers.forSheet(worksheetIndex, sheetName(worksheetIndex));
+        }
+        return;
+      }
+      if (record instanceof SSTRecord) {
+        sharedStrings = (SSTRecord) record;
+        return;
+      }
+      if (handler == null || record instanceof EOFRecord) {
+        return;
+      }
+      if (record instanceof LastCellOfRowDummyRecord) {
+        buffer.flush(((LastCellOfRowDummyRecord) record).getRow(), handler);
+        pendingStringRow = -1;
+      } else if (record instanceof LabelSSTRecord) {
+        LabelSSTRecord label = (LabelSSTRecord) record;
+        buffer.set(label.getColumn(), sharedStrings.getString(label.getSSTIndex()).getString());
+      } else if (record instanceof LabelRecord) {
+        LabelRecord label = (LabelRecord) record;
+        buffer.set(label.getColumn(), label.getValue());
+      } else if (record instanceof NumberRecord) {
+        NumberRecord number = (NumberRecord) record;
+        buffer.set(number.getColumn(), formatListener.formatNumberDateCell(number));
+      } else if (record instanceof BoolErrRecord) {
+        BoolErrRecord boolErr = (BoolErrRecord) record;
+        if (boolErr.isBoolean()) {
+          buffer.set(boolErr.getColumn(), String.valueOf(boolErr.getBooleanValue()).toUpperCase());
+        }
+      } else if (record instanceof FormulaRecord) {
+        FormulaRecord formula = (FormulaRecord) record;
+        if (Double.isNaN(formula.getValue())) {
+          // A string result follows in its own record
+          pendingStringRow = formula.getRow();
+          pendingStringColumn = formula.getColumn();
+        } else {
+          buffer.set(formula.getColumn(), formatListener.formatNumberDateCell(formula));
+        }
+      } else if (record instanceof StringRecord && pendingStringRow >= 0) {
+        buffer.set(pendingStringColumn, ((StringRecord) record).getString());
+        pendingStringRow = -1;
+      }
+    }
+
+    private String sheetName(int index) {
+      if (orderedSheets == null) {
+        // Worksheets follow in the order of their BOF positions, not of their BoundSheet records
+        orderedSheets = BoundSheetRecord.orderByBofPosition(boundSheets);
+      }
+      return index < orderedSheets.length ? orderedSheets[index].getSheetname() : String.valueOf(index);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.igot.cb.pores.upload;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads newline delimited JSON objects held in a buffer as rows. The field names of the first
+ * object, in order, are reported as the header row (row 0); every object, including the first,
+ * then becomes a row whose cells follow that column order. Fields that are not in the first
+ * object are ignored, and non scalar values are treated as empty.
+ */
+final class NdjsonReader {
+
+  private NdjsonReader() {
+  }
+
+  static void read(JsonFactory jsonFactory, ByteBuffer buffer, RowHandler handler) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(new ByteBufferInputStream(buffer))) {
+      Map<String, Integer> columns = null;
+      int rowIndex = 1;
+      JsonToken token;
+      while ((token = parser.nextToken()) != null) {
+        if (token != JsonToken.START_OBJECT) {
+          throw new IOException("Expected a JSON object at line " + parser.currentLocation().getLineNr());
+        }
+        if (columns == null) {
+          List<String> headers = new ArrayList<>();
+          List<String> cells = new ArrayList<>();
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            headers.add(parser.currentName());
+            parser.nextToken();
+            cells.add(readScalar(parser));
+          }
+          columns = new HashMap<>();
+          for (int i = 0; i < headers.size(); i++) {
+            columns.put(headers.get(i), i);
+          }
+          handler.row(0, headers.toArray(new String[0]));
+          handler.row(rowIndex++, cells.toArray(new String[0]));
+        } else {
+          String[] cells = new String[columns.size()];
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Integer column = columns.get(parser.currentName());
+            parser.nextToken();
+            String value = readScalar(parser);
+            if (column != null) {
+              cells[column] = value;
+            }
+          }
+          handler.row(rowIndex++, cells);
+        }
+      }
+    }
+  }
+
+  private static String readScalar(JsonParser parser) throws IOException {
+    JsonToken token = parser.currentToken();
+    if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+      return parser.getValueAsString();
+    }
+    parser.skipChildren();
+    return null;
+  }
+
+  /**
+   * Exposes a buffer to the parser without copying it.
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.igot.cb.pores.upload;
+
+/**
+ * Receives the rows of a sheet one at a time as they are read.
+ */
+@FunctionalInterface
+public interface RowHandler {
+
+  /**
+   * @param rowIndex the zero based index of the row in the sheet; rows without any cells are skipped
+   * @param cells    the formatted cell values by column index, null where a cell is empty
+   */
+  void row(int rowIndex, String[] cells);
+}
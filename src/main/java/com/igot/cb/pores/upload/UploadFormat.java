@@ -0,0 +1,36 @@
+package com.igot.cb.pores.upload;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The tabular file formats accepted for uploads, recognised by file extension.
+ */
+public enum UploadFormat {
+  EXCEL(List.of(".xlsx", ".xls")),
+  CSV(List.of(".csv")),
+  TSV(List.of(".tsv")),
+  NDJSON(List.of(".ndjson", ".jsonl"));
+
+  private final List<String> extensions;
+
+  UploadFormat(List<String> extensions) {
+    this.extensions = extensions;
+  }
+
+  /**
+   * @return the format for the file name's extension, or null when none matches
+   */
+  public static UploadFormat fromFileName(String fileName) {
+    if (fileName == null) {
+      return null;
+    }
+    String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+    for (UploadFormat format : values()) {
+      if (format.extensions.stream().anyMatch(lowerCaseName::endsWith)) {
+        return format;
+      }
+    }
+    return null;
+  }
+}
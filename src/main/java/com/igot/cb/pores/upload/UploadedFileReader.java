@@ -0,0 +1,148 @@
+package com.igot.cb.pores.upload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Reads the rows of an uploaded tabular file, whatever its {@link UploadFormat}. Uploads are
+ * spooled to a temporary file once. Workbooks are streamed from the file through
+ * {@link ExcelStreamReader}; text formats are parsed from a read only memory mapping, so the
+ * content is never copied onto the heap.
+ * The sheets of a multi-sheet workbook are parsed concurrently on a shared fork-join pool.
+ */
+@Component
+@Slf4j
+public class UploadedFileReader {
+
+  private static final String SPOOL_FILE_PREFIX = "upload-";
+
+  @Autowired
+  private ExcelStreamReader excelStreamReader;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${customField.upload.sheet.parallelism}")
+  private int sheetParallelism;
+
+  private ForkJoinPool sheetPool;
+
+  @PostConstruct
+  public void init() {
+    int parallelism = sheetParallelism > 0 ? sheetParallelism : Runtime.getRuntime().availableProcessors();
+    sheetPool = new ForkJoinPool(parallelism, pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName("upload-sheet-" + thread.getPoolIndex());
+      return thread;
+    }, null, false);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    sheetPool.shutdownNow();
+    try {
+      sheetPool.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public void read(MultipartFile file, UploadFormat format, RowHandler handler) throws IOException {
+    Path spoolFile = spool(file);
+    try {
+      read(spoolFile, format, handler);
+    } finally {
+      deleteSpoolFile(spoolFile);
+    }
+  }
+
+  /**
+   * Reads several sheets of an uploaded workbook, each into its own handler. The upload is
+   * spooled first, as the sheets are read from the file concurrently.
+   *
+   * @param sheetNames the sheets to read, null for all of them
+   * @param handlers   gives the handler of each sheet, called in workbook order
+   * @see ExcelStreamReader#readSheets
+   */
+  public void readSheets(MultipartFile file, Set<String> sheetNames, Function<String, RowHandler> handlers) throws IOException {
+    Path spoolFile = spool(file);
+    try {
+      readSheets(spoolFile, sheetNames, handlers);
+    } finally {
+      deleteSpoolFile(spoolFile);
+    }
+  }
+
+  public void readSheets(Path file, Set<String> sheetNames, Function<String, RowHandler> handlers) throws IOException {
+    excelStreamReader.readSheets(file, sheetNames, handlers, sheetPool);
+  }
+
+  /**
+   * Copies the upload to a temporary file that outlives the request. The caller owns the file
+   * and must remove it with {@link #deleteSpoolFile(Path)}.
+   */
+  public Path spool(MultipartFile file) throws IOException {
+    Path spoolFile = Files.createTempFile(SPOOL_FILE_PREFIX, null);
+    try {
+      file.transferTo(spoolFile);
+    } catch (IOException | RuntimeException e) {
+      deleteSpoolFile(spoolFile);
+      throw e;
+    }
+    return spoolFile;
+  }
+
+  public void read(Path file, UploadFormat format, RowHandler handler) throws IOException {
+    if (format == UploadFormat.EXCEL) {
+      excelStreamReader.readFirstSheet(file, handler);
+      return;
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File of " + size + " bytes is too large to read");
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      switch (format) {
+        case CSV:
+          DelimitedTextReader.read(buffer, (byte) ',', handler);
+          break;
+        case TSV:
+          DelimitedTextReader.read(buffer, (byte) '\t', handler);
+          break;
+        case NDJSON:
+          NdjsonReader.read(objectMapper.getFactory(), buffer, handler);
+          break;
+        default:
+          throw new IOException("Unsupported upload format: " + format);
+      }
+    }
+  }
+
+  public void deleteSpoolFile(Path spoolFile) {
+    try {
+      Files.deleteIfExists(spoolFile);
+    } catch (IOException e) {
+      log.warn("UploadedFileReader::deleteSpoolFile: Unable to delete spool file {}", spoolFile, e);
+    }
+  }
+}
@@ -22,9 +22,33 @@ public class CbServerProperties {
   @Value("${customField.Validation.File.path}")
   private String customFieldValidationFilePath;
 
+  @Value("${customField.bulk.create.max.size}")
+  private int customFieldBulkCreateMaxSize;
+
   @Value("${custom.field.max.level}")
   private int customFieldMaxLevel;
 
+  @Value("${masterList.diff.max.reported.changes}")
+  private int masterListDiffMaxReportedChanges;
+
+  @Value("${masterList.storage.nodes.enabled}")
+  private boolean masterListNodeStorage;
+
+  @Value("${masterList.storage.compact.enabled}")
+  private boolean masterListCompactStorage;
+
+  @Value("${masterList.children.page.size}")
+  private int masterListChildrenPageSize;
+
+  @Value("${masterList.children.max.page.size}")
+  private int masterListChildrenMaxPageSize;
+
+  @Value("${masterList.suggest.limit}")
+  private int masterListSuggestLimit;
+
+  @Value("${masterList.suggest.max.limit}")
+  private int masterListSuggestMaxLimit;
+
   @Value("${customField.list.validation.file.path}")
   private String customFieldListValidationFilePath;
 
@@ -34,10 +58,19 @@ public class CbServerProperties {
   @Value("${customField.upload.allowedContentTypes}")
   private String allowedContentTypes;
 
+  @Value("${customField.upload.delimited.allowedContentTypes}")
+  private String allowedDelimitedContentTypes;
+
+  @Value("${customField.upload.ndjson.allowedContentTypes}")
+  private String allowedNdjsonContentTypes;
+
   @Value("${customField.list.update.validation.file.path}")
   private String customFieldListUpdateValidationFilePath;
 
   @Value("${customField.status.update.validation.file.path}")
   private String customFieldStatusUpdateValidationFilePath;
 
+  @Value("${customField.nodes.patch.validation.file.path}")
+  private String customFieldNodesPatchValidationFilePath;
+
 }
@@ -24,6 +24,9 @@ public class Constants {
     public static final String ERROR_MESSAGE = "errmsg";
     public static final String ERROR = "ERROR";
     public static final String KEYWORD = ".keyword";
+    public static final String HIERARCHY_PATH_TOKENS = "hierarchyPathTokens";
+    public static final String HIERARCHY_PATH = "hierarchyPath";
+    public static final String HIERARCHY_VALUE = "hierarchyValue";
     public static final String ASC = "asc";
     public static final String DOT_SEPARATOR = ".";
     public static final String SHA_256_WITH_RSA = "SHA256withRSA";
@@ -32,6 +35,9 @@ public class Constants {
     public static final String SSO_URL = "sso.url";
     public static final String SSO_REALM = "sso.realm";
     public static final String ACCESS_TOKEN_PUBLICKEY_BASEPATH = "accesstoken.publickey.basepath";
+    public static final String ACCESS_TOKEN_CACHE_MAX_SIZE = "accesstoken.cache.max.size";
+    public static final String ACCESS_TOKEN_CACHE_STATS_LOG_INTERVAL = "accesstoken.cache.stats.log.interval";
+    public static final String SHA_256 = "SHA-256";
     public static final String ID = "id";
     public static final String SEARCH_OPERATION_LESS_THAN = "<";
     public static final String SEARCH_OPERATION_GREATER_THAN = ">";
@@ -58,6 +64,7 @@ public class Constants {
     public static final String EXCEPTION_MSG_UPDATE = "Exception occurred while updating record to ";
     public static final String SEARCH_RESULT_REDIS_TEMPLATE = "searchResultRedisTemplate";
     public static final String REDIS_CONNECTION_FACTORY = "redisConnectionFactory";
+    public static final String CACHE_REDIS_TEMPLATE = "cacheRedisTemplate";
     public static final String EXCEPTION_MSG_DELETE = "Exception occurred while deleting record from ";
     public static final String X_AUTH_TOKEN = "x-authenticated-user-token";
     public static final String NUMBER = "number";
@@ -75,19 +82,84 @@ public class Constants {
     public static final String UPDATED_BY = "updatedBy";
     public static final String ORGANISATION_ID = "organisationId";
     public static final String CREATE_CUSTOM_FIELD_API = "customFields.create.api";
+    public static final String BULK_CREATE_CUSTOM_FIELD_API = "customFields.bulk.create.api";
+    public static final String BULK_CREATE_PAYLOAD_NON_EMPTY = "Request body must be a non-empty array of custom fields";
+    public static final String BULK_CREATE_MAX_SIZE_EXCEEDED = "Cannot create more than %d custom fields in one request";
+    public static final String COUNT = "count";
+    public static final String CUSTOM_FIELDS = "customFields";
     public static final String IS_ENABLED = "isEnabled";
     public static final String CUSTOM_FIELD_DATA = "customFieldData";
-    public static final String ONLY_EXCEL_FILES_ALLOWED = "Only Excel files (.xlsx, .xls) are allowed";
+    public static final String UNSUPPORTED_UPLOAD_FILE = "Only Excel (.xlsx, .xls), CSV (.csv), TSV (.tsv) or NDJSON (.ndjson, .jsonl) files are allowed";
     public static final String UPLOADED_FILE_IS_EMPTY = "Uploaded file is empty";
-    public static final String EXCEL_HEADER_ROW_REQUIRED = "Excel file must have a header row";
-    public static final String EXCEL_MORE_COLUMNS_THAN_LEVELS = "Excel file has more columns (%d) than defined levels in customFieldData (%d).";
-    public static final String EXCEL_MORE_THAN_MAX_LEVELS = "Excel file cannot have more than %d columns for levels";
+    public static final String EXCEL_HEADER_ROW_REQUIRED = "Uploaded file must have a header row";
+    public static final String EXCEL_MORE_COLUMNS_THAN_LEVELS = "Uploaded file has more columns (%d) than defined levels in customFieldData (%d).";
+    public static final String EXCEL_MORE_THAN_MAX_LEVELS = "Uploaded file cannot have more than %d columns for levels";
     public static final String CUSTOM_FIELD_DATA_LEVELS_EXCEED = "customFieldData levels cannot exceed %d.";
     public static final String CUSTOM_FIELD_DATA_NON_EMPTY = "customFieldData must be a non-empty list";
-    public static final String HEADER_MISMATCH = "Header in the excel file '%s' does not match expected attributeName '%s' at level %d";
+    public static final String HEADER_MISMATCH = "Header in the uploaded file '%s' does not match expected attributeName '%s' at level %d";
     public static final String LEVEL_MISMATCH = "Level mismatch at column %d: expected %d, found %d";
-    public static final String ERROR_READING_EXCEL = "Error reading Excel file: %s";
+    public static final String ERROR_READING_UPLOADED_FILE = "Error reading uploaded file: %s";
+    public static final String NAME = "name";
+    public static final String ALL_SHEETS = "*";
+    public static final String SHEETS_REQUIRE_WORKBOOK = "Sheets can only be selected in Excel (.xlsx, .xls) uploads";
+    public static final String SHEET_ERROR = "Sheet '%s': %s";
+    public static final String SHEET_MASTER_LIST_NAME = "%s - %s";
+    public static final String MASTER_LIST_IMPORT_JOB = "MASTER_LIST_IMPORT_JOB_";
+    public static final String MASTER_LIST_IMPORT_JOB_READ_API = "customFields.masterList.job.read.api";
+    public static final String MASTER_LIST_IMPORT_JOB_NOT_FOUND = "Master list import job not found with ID: %s";
+    public static final String MASTER_LIST_IMPORT_TOO_LARGE = "Uploaded file is too large to import within the %d MB import memory budget";
+    public static final String MASTER_LIST_IMPORT_QUEUE_FULL = "Too many master list imports are queued, please retry later";
+    public static final String MASTER_LIST_IMPORT_INTERRUPTED = "Master list import was interrupted";
+    public static final String MASTER_LIST_IMPORT_FAILED = "Failed to import master list: %s";
+    public static final String MASTER_LIST_ANCESTORS_API = "customFields.masterList.ancestors.api";
+    public static final String ANCESTORS = "ancestors";
+    public static final String FORMAT_LEGACY = "legacy";
+    public static final String FORMAT_COMPACT = "compact";
+    public static final String LEVELS = "levels";
+    public static final String COMPACT_VALUE = "v";
+    public static final String COMPACT_CHILDREN = "c";
+    public static final String FIELD_VALUE_REQUIRED = "fieldValue is required";
+    public static final String NOT_A_MASTER_LIST = "Custom field %s is not a master list";
+    public static final String MASTER_LIST_VALUE_NOT_FOUND = "No master list node found with value: %s";
+    public static final String MASTER_LIST_CHILDREN_API = "customFields.masterList.children.api";
+    public static final String CHILDREN = "children";
+    public static final String CHILD_COUNT = "childCount";
+    public static final String TOTAL = "total";
+    public static final String NEXT_CURSOR = "nextCursor";
+    public static final String INVALID_CURSOR = "Invalid cursor";
+    public static final String INVALID_PAGE_LIMIT = "limit must be between 1 and %d";
+    public static final String INVALID_HIERARCHY_VALUE_FILTER = "hierarchyValue filter must have both fieldName and fieldValue";
+    public static final String STORAGE_LAYOUT = "storageLayout";
+    public static final String UPLOAD_DIGEST = "uploadDigest";
+    public static final String MASTER_LIST_SUGGEST_API = "customFields.masterList.suggest.api";
+    public static final String SUGGESTIONS = "suggestions";
+    public static final String SUGGEST_QUERY_REQUIRED = "q is required";
+    public static final String MASTER_LIST_CURSOR_EXPIRED = "Custom field %s has been modified since the cursor was issued, restart from the first page";
+    public static final String CHANGES = "changes";
+    public static final String UNCHANGED = "unchanged";
+    public static final String ADDED = "added";
+    public static final String REMOVED = "removed";
+    public static final String RENAMED = "renamed";
+    public static final String TRUNCATED = "truncated";
+    public static final String PATH = "path";
+    public static final String NODES = "nodes";
+    public static final String PREVIOUS_FIELD_VALUE = "previousFieldValue";
+    public static final String MASTER_LIST_NODES_PATCH_API = "customFields.masterList.nodes.patch.api";
+    public static final String VERSION = "version";
+    public static final String OPERATIONS = "operations";
+    public static final String OP = "op";
+    public static final String MASTER_LIST_VERSION_CONFLICT = "Custom field %s has been modified, its current version is %s";
+    public static final String MASTER_LIST_PATH_NOT_FOUND = "No master list node found at path: %s";
+    public static final String MASTER_LIST_DUPLICATE_VALUE = "A node with value '%s' already exists at path: %s";
+    public static final String MASTER_LIST_FIELD_NAME_REQUIRED = "fieldName is required to add the first child at path: %s";
+    public static final String MASTER_LIST_FIELD_NAME_MISMATCH = "fieldName '%s' does not match '%s' used by the other nodes at path: %s";
+    public static final String MASTER_LIST_PATH_TOO_DEEP = "Master list cannot have more than %d levels";
+    public static final String MASTER_LIST_PATH_REQUIRED = "path must not be empty for %s";
+    public static final String MASTER_LIST_FIELD_VALUE_REQUIRED = "fieldValue is required for %s";
+    public static final String UNSUPPORTED_MASTER_LIST_OPERATION = "Unsupported master list operation: %s";
     public static final String CUSTOM_FIELD = "CUSTOM_FIELD_";
+    public static final String SEARCH_RESULT = "SEARCH_RESULT_";
+    public static final String SEARCH_GENERATION = "SEARCH_GENERATION_";
     public static final String ATTRIBUTE_NAME = "attributeName";
     public static final String LEVEL = "level";
     public static final String INVALID_JSON_CUSTOM_FIELDS_MASTER_DATA = "Invalid JSON for customFieldsMasterData: ";
@@ -0,0 +1,43 @@
+package com.igot.cb.pores.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Collapses concurrent calls for the same key into one: the first caller runs the call and the
+ * others wait for and share its result or its exception. Nothing is kept once the call ends.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+  public V execute(K key, Callable<V> call) throws Exception {
+    CompletableFuture<V> own = new CompletableFuture<>();
+    CompletableFuture<V> running = calls.putIfAbsent(key, own);
+    if (running != null) {
+      try {
+        return running.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception cause) {
+          throw cause;
+        }
+        if (e.getCause() instanceof Error error) {
+          throw error;
+        }
+        throw e;
+      }
+    }
+    try {
+      V result = call.call();
+      own.complete(result);
+      return result;
+    } catch (Throwable t) {
+      own.completeExceptionally(t);
+      throw t;
+    } finally {
+      calls.remove(key, own);
+    }
+  }
+}